@@ -0,0 +1,100 @@
+/*
+ * BaselineSnapshotBenchmark
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The path index of a baseline snapshot: Looking up a path which exists or
+ * doesn't exist in the memory mapped snapshot, and writing a snapshot with
+ * the external sort of its entries. The snapshot is written to the temporary
+ * directory, so the write includes the disk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BaselineSnapshotBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int entries;
+
+    private Path directory;
+    private String[] paths;
+    private byte[][] digests;
+    private BaselineSnapshot snapshot;
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("gibenchmark");
+        paths = new String[entries];
+        digests = new byte[entries][16];
+        Random random = new Random(1);
+        for (int i = 0; i < entries; i++) {
+            paths[i] = SyntheticPaths.parentPath(i) + SyntheticPaths.name(i, "");
+            random.nextBytes(digests[i]);
+        }
+        snapshot = BaselineSnapshot.open(write(directory.resolve("lookup" + BaselineSnapshot.EXTENSION)));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        snapshot.close();
+        Files.deleteIfExists(directory.resolve("lookup" + BaselineSnapshot.EXTENSION));
+        Files.deleteIfExists(directory.resolve("write" + BaselineSnapshot.EXTENSION));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public int findExisting() {
+        //Strides through the snapshot, so the lookups don't hit the same pages
+        next = (next + 7919) % entries;
+        return snapshot.find(paths[next]);
+    }
+
+    @Benchmark
+    public int findMissing() {
+        next = (next + 7919) % entries;
+        return snapshot.find(paths[next] + ".missing");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public long writeSnapshot() throws IOException {
+        return Files.size(write(directory.resolve("write" + BaselineSnapshot.EXTENSION)));
+    }
+
+    private Path write(Path pTarget) throws IOException {
+        try (BaselineSnapshot.Writer writer = new BaselineSnapshot.Writer(DigestAlgorithm.MD5, BaselineEntry.NO_OBJECT_ID)) {
+            for (int i = 0; i < entries; i++) {
+                writer.add(new BaselineEntry(paths[i], i, i, i, i, i, digests[i]));
+            }
+            writer.write(pTarget);
+        }
+        return pTarget;
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * ComparisonHarness
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.sleuthkit.datamodel.ContentTag;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Compares synthetic images at scale with the comparison of the module and
+ * checks every result, so a change of the comparison can be measured and
+ * verified on the same data again:
+ * <pre>
+ * ComparisonHarness [--files n] [--seed n] [--runs n] [--mode images|snapshot]
+ *                   [--algorithm MD5|SHA256|XXHASH64] [--delete-rate r]
+ *                   [--add-rate r] [--modify-rate r] [--rename-rate r]
+ *                   [--large-rate r] [--large-size bytes] [--write directory]
+ * </pre>
+ * Each run drives the ComparisonPipeline with the ComparisonDriver, as the
+ * ingest module does: Mode images merges both images with the DiffEngine;
+ * mode snapshot writes a BaselineSnapshot of the golden image once and looks
+ * the dirty image files up in it, as a job against a baseline or manifest
+ * does. The settings are the defaults of an ingest job with the selected
+ * algorithm. Each run reports the wall time, the peak heap, the bytes read
+ * and the results by tag, and counts the results which differ from the
+ * expected ones of the generator, the files tagged twice and the pairs or
+ * tags which failed.
+ *
+ * The files of the case are SyntheticImages, the tags go to a ResultSink
+ * which only records them, so the runs measure the comparison, not the reads
+ * of a disk image or the tag writes of a case database. For a run of the
+ * module itself, --write stores the images as directory trees with a
+ * hashdeep manifest of the golden image and the expected results.
+ */
+public final class ComparisonHarness {
+
+    // Time in seconds the stages get to stop after a run
+    private static final long SHUTDOWN_TIMEOUT = 30;
+
+    private final SyntheticImages images;
+    private final GoldenImageModuleIngestJobSettings settings;
+    private final Path snapshot;
+    private final RecordingSink sink;
+
+    /**
+     * @param pSnapshot The baseline snapshot of the golden image, or null to
+     * compare both images
+     */
+    private ComparisonHarness(SyntheticImages pImages, GoldenImageModuleIngestJobSettings pSettings, Path pSnapshot) {
+        images = pImages;
+        settings = pSettings;
+        snapshot = pSnapshot;
+        sink = new RecordingSink(pImages);
+    }
+
+    public static void main(String[] pArgs) throws IOException, TskCoreException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < pArgs.length; i += 2) {
+            if (!pArgs[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unknown argument " + pArgs[i]);
+            }
+            options.put(pArgs[i].substring(2), pArgs[i + 1]);
+        }
+        SyntheticImages images = new SyntheticImages(Integer.parseInt(option(options, "files", "1000000")),
+                Long.parseLong(option(options, "seed", "1")),
+                Double.parseDouble(option(options, "delete-rate", "0.02")),
+                Double.parseDouble(option(options, "add-rate", "0.02")),
+                Double.parseDouble(option(options, "modify-rate", "0.05")),
+                Double.parseDouble(option(options, "rename-rate", "0.01")),
+                Double.parseDouble(option(options, "large-rate", "0.0001")),
+                Long.parseLong(option(options, "large-size", String.valueOf(64L << 20))));
+
+        if (options.containsKey("write")) {
+            Path directory = Paths.get(options.get("write"));
+            long startTime = System.nanoTime();
+            long bytes = images.write(directory);
+            System.out.printf("Wrote %s in %.1f s to %s%n", ComparisonProgress.formatBytes(bytes), (System.nanoTime() - startTime) / 1e9, directory);
+            return;
+        }
+
+        DigestAlgorithm algorithm = DigestAlgorithm.valueOf(option(options, "algorithm", "MD5"));
+        boolean snapshotMode = option(options, "mode", "images").equals("snapshot");
+        GoldenImageModuleIngestJobSettings settings = new GoldenImageModuleIngestJobSettings();
+        settings.setDigestAlgorithm(algorithm);
+        Map<SyntheticImages.Result, Long> expected = images.expectedCounts();
+        System.out.printf("%d golden image files, mode %s, %s, expected %s%n", images.getFileCount(), snapshotMode ? "snapshot" : "images",
+                algorithm, expected);
+
+        Path snapshot = null;
+        boolean correct = true;
+        try {
+            if (snapshotMode) {
+                long startTime = System.nanoTime();
+                snapshot = writeSnapshot(images, algorithm);
+                System.out.printf("Wrote the baseline snapshot in %.2f s%n", (System.nanoTime() - startTime) / 1e9);
+            }
+
+            int runs = Integer.parseInt(option(options, "runs", "3"));
+            double[] seconds = new double[runs];
+            for (int run = 0; run < runs; run++) {
+                ComparisonHarness harness = new ComparisonHarness(images, settings, snapshot);
+                resetPeakHeap();
+                long startTime = System.nanoTime();
+                Run result = harness.compare();
+                seconds[run] = (System.nanoTime() - startTime) / 1e9;
+                RecordingSink sink = harness.sink;
+                boolean runCorrect = sink.wrongResults == 0 && sink.duplicateResults == 0 && result.failures == 0
+                        && sink.results.equals(expected);
+                correct &= runCorrect;
+                System.out.printf("Run %d: %.2f s, peak heap %s, read %s (%s/s), results %s, wrong %d, duplicate %d, failed %d%s%n", run + 1,
+                        seconds[run], ComparisonProgress.formatBytes(peakHeap()), ComparisonProgress.formatBytes(result.readBytes),
+                        ComparisonProgress.formatBytes((long) (result.readBytes / seconds[run])), sink.results, sink.wrongResults,
+                        sink.duplicateResults, result.failures, runCorrect ? "" : " - DIFFERS FROM EXPECTED");
+            }
+            Arrays.sort(seconds);
+            System.out.printf("Median %.2f s, %s%n", seconds[runs / 2], correct ? "all results as expected" : "RESULTS DIFFER");
+        } finally {
+            if (snapshot != null) {
+                Files.deleteIfExists(snapshot);
+            }
+        }
+        if (!correct) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compares the images, or the dirty image against the snapshot, with the
+     * stages of the module.
+     */
+    private Run compare() throws IOException, TskCoreException, InterruptedException {
+        PipelineMetrics metrics = new PipelineMetrics();
+        DigestResolver digestResolver = new DigestResolver(null, null, null, null, settings.getResultBatchSize());
+        String deletedTag = GoldenImageIngestModuleFactory.giTagDeletedPrefix + "dirty";
+        ResultWriter resultWriter = new ResultWriter(sink, settings.getResultBatchSize(), settings.getResultFlushInterval(),
+                settings.getMaxPairsInFlight(), null, null, digestResolver, metrics, deletedTag);
+        BaselineSet baselines = null;
+        ComparisonPipeline pipeline = null;
+        Path deletedFilesReport = Files.createTempFile("giharness", "_deleted.txt");
+        try {
+            if (snapshot != null) {
+                baselines = new BaselineSet();
+                baselines.add(BaselineSnapshot.open(snapshot), snapshot.getFileName().toString());
+            }
+            FileLoader fileLoader = images.fileLoader();
+            pipeline = new ComparisonPipeline(settings, resultWriter, deletedTag, baselines, digestResolver, fileLoader, null, null,
+                    () -> false, metrics);
+            ComparisonProgress progress = new ComparisonProgress(null);
+            progress.start("Comparing Files", pipeline, 2L * images.getFileCount());
+            ComparisonDriver driver = new ComparisonDriver(pipeline, resultWriter, fileLoader, () -> false, progress);
+
+            if (baselines != null) {
+                driver.compareBaseline(baselines, images.dirtyImage(), true, deletedFilesReport);
+            } else {
+                driver.compareImages(new DiffEngine(images.goldenImage(), images.dirtyImage()));
+            }
+            driver.finish();
+            return new Run(pipeline.getReadBytes(), pipeline.getFailedComparisons() + resultWriter.getFailedWrites());
+        } finally {
+            if (pipeline != null) {
+                pipeline.shutdownNow();
+                pipeline.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+            }
+            resultWriter.shutdownNow();
+            resultWriter.finish(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+            if (baselines != null) {
+                baselines.close();
+            }
+            Files.deleteIfExists(deletedFilesReport);
+        }
+    }
+
+    /**
+     * Writes a baseline snapshot of the golden image, as BaselineExporter
+     * does for an image of a case.
+     */
+    private static Path writeSnapshot(SyntheticImages pImages, DigestAlgorithm pAlgorithm) throws IOException, TskCoreException {
+        MultiDigester digester = new MultiDigester(Collections.singletonList(pAlgorithm));
+        byte[][] digests = digester.createDigestBuffers();
+        byte[] buffer = new byte[Chunk.SIZE];
+        Path file = Files.createTempFile("giharness", BaselineSnapshot.EXTENSION);
+        try (BaselineSnapshot.Writer writer = new BaselineSnapshot.Writer(pAlgorithm, SyntheticImages.GOLDEN_IMAGE_ID)) {
+            FileSource goldenImage = pImages.goldenImage();
+            ImageFile goldenImageFile;
+            while ((goldenImageFile = goldenImage.next()) != null) {
+                for (long offset = 0; offset < goldenImageFile.getSize(); offset += buffer.length) {
+                    int length = goldenImageFile.read(buffer, offset, buffer.length);
+                    digester.update(buffer, 0, length);
+                }
+                digester.digest(digests);
+                writer.add(new BaselineEntry(FileCursor.getPath(goldenImageFile), goldenImageFile.getSize(), BaselineEntry.UNKNOWN,
+                        BaselineEntry.UNKNOWN, BaselineEntry.UNKNOWN, goldenImageFile.getId(), digests[0].clone()));
+            }
+            writer.write(file);
+        } catch (IOException | TskCoreException | RuntimeException ex) {
+            Files.deleteIfExists(file);
+            throw ex;
+        }
+        return file;
+    }
+
+    private static String option(Map<String, String> pOptions, String pName, String pDefault) {
+        return pOptions.containsKey(pName) ? pOptions.get(pName) : pDefault;
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return The sum of the peaks of the heap pools, an upper bound of the
+     * peak heap.
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * The counters of the pipeline after a run.
+     */
+    private static final class Run {
+
+        private final long readBytes;
+        private final long failures;
+
+        Run(long pReadBytes, long pFailures) {
+            readBytes = pReadBytes;
+            failures = pFailures;
+        }
+    }
+
+    /**
+     * Records the tags instead of writing them to a case and checks them
+     * against the expected results of the generator.
+     */
+    private static final class RecordingSink implements ResultSink {
+
+        private final SyntheticImages images;
+        private final Map<SyntheticImages.Result, Long> results = new EnumMap<>(SyntheticImages.Result.class);
+        private final BitSet taggedFiles = new BitSet();
+        private long wrongResults = 0;
+        private long duplicateResults = 0;
+
+        RecordingSink(SyntheticImages pImages) {
+            images = pImages;
+            for (SyntheticImages.Result result : SyntheticImages.Result.values()) {
+                results.put(result, 0L);
+            }
+        }
+
+        @Override
+        public synchronized void addTag(ImageFile pFile, String pTagName, String pComment) throws TskCoreException {
+            SyntheticImages.Result result = toResult(pTagName);
+            results.put(result, results.get(result) + 1);
+            if (images.expected(pFile.getId()) != result) {
+                wrongResults++;
+            }
+            if (taggedFiles.get((int) pFile.getId())) {
+                duplicateResults++;
+            }
+            taggedFiles.set((int) pFile.getId());
+        }
+
+        @Override
+        public List<ContentTag> getTags(ImageFile pFile) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void deleteTag(ContentTag pTag) {
+        }
+
+        private static SyntheticImages.Result toResult(String pTagName) throws TskCoreException {
+            if (pTagName.equals(GoldenImageIngestModuleFactory.giTagGoodName)) {
+                return SyntheticImages.Result.GOOD;
+            } else if (pTagName.equals(GoldenImageIngestModuleFactory.giTagChangedName)) {
+                return SyntheticImages.Result.CHANGED;
+            } else if (pTagName.equals(GoldenImageIngestModuleFactory.giTagNewName)) {
+                return SyntheticImages.Result.NEW;
+            } else if (pTagName.equals(GoldenImageIngestModuleFactory.giTagMovedName)) {
+                return SyntheticImages.Result.MOVED;
+            } else if (pTagName.startsWith(GoldenImageIngestModuleFactory.giTagDeletedPrefix)) {
+                return SyntheticImages.Result.DELETED;
+            }
+            throw new TskCoreException("Unknown tag name " + pTagName);
+        }
+    }
+}
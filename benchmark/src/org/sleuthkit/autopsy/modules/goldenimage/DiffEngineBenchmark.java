@@ -0,0 +1,90 @@
+/*
+ * DiffEngineBenchmark
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Throughput of the sorted merge-join of the DiffEngine over in-memory
+ * cursors: 2% of the golden image files are deleted and 2% new files are
+ * added on the dirty image, the others exist on both. With pruned set, the
+ * first top level directory (10000 files) is pruned. The files are
+ * sorted in the setup, so only the merge and the path comparisons are
+ * measured, not the page queries of the FileCursor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DiffEngineBenchmark {
+
+    // Amount of files of the golden image
+    @Param({"100000", "1000000"})
+    public int files;
+
+    @Param({"false", "true"})
+    public boolean pruned;
+
+    private ImageFile[] goldenImageFiles;
+    private ImageFile[] dirtyImageFiles;
+    private Set<String> prunedDirectories;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        List<ImageFile> golden = new ArrayList<>(files);
+        List<ImageFile> dirty = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            String parentPath = SyntheticPaths.parentPath(i);
+            golden.add(StubFiles.create(i, parentPath, SyntheticPaths.name(i, "")));
+            int change = random.nextInt(50);
+            if (change != 0) {
+                dirty.add(StubFiles.create(files + i, parentPath, SyntheticPaths.name(i, "")));
+            }
+            if (change == 1) {
+                dirty.add(StubFiles.create(2L * files + i, parentPath, SyntheticPaths.name(i, "-new")));
+            }
+        }
+        goldenImageFiles = StubFiles.sorted(golden);
+        dirtyImageFiles = StubFiles.sorted(dirty);
+        prunedDirectories = pruned ? Collections.singleton(SyntheticPaths.parentPath(0).substring(0, 9)) : Collections.<String>emptySet();
+    }
+
+    /**
+     * @return The amount of matched pairs.
+     */
+    @Benchmark
+    public int merge() throws TskCoreException {
+        DiffEngine diffEngine = new DiffEngine(new StubFiles.ArrayFileSource(goldenImageFiles), new StubFiles.ArrayFileSource(dirtyImageFiles),
+                prunedDirectories);
+        int pairs = 0;
+        FilePair pair;
+        while ((pair = diffEngine.next()) != null) {
+            if (pair.getGoldenImageFile() != null && pair.getDirtyImageFile() != null) {
+                pairs++;
+            }
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * DigestBenchmark
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Digest throughput of the digest stage: A file is fed to the MultiDigester
+ * in chunks of Chunk.SIZE bytes, as the read stage hands them over. The
+ * content comes from memory, so only the hashing is measured.
+ *
+ * The files are either of one size or "mixed", a fixed set of 256 sizes
+ * which follows the distribution of an operating system image: most files are
+ * a few KiB, a few are tens of MiB. The time of one operation is the time of
+ * all files of the set; the bytes of the set are printed by the setup, so
+ * the throughput is bytes per operation divided by the time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DigestBenchmark {
+
+    // The algorithms of a job, the first one is the one the files are compared with
+    @Param({"XXHASH64", "MD5", "SHA256", "MD5,SHA256"})
+    public String algorithms;
+
+    @Param({"4096", "65536", "1048576", "67108864", "mixed"})
+    public String fileSizes;
+
+    private MultiDigester digester;
+    private byte[][] digests;
+    private long[] sizes;
+    private final byte[] content = new byte[Chunk.SIZE];
+
+    @Setup
+    public void setUp() {
+        List<DigestAlgorithm> algorithmList = new ArrayList<>();
+        for (String algorithm : algorithms.split(",")) {
+            algorithmList.add(DigestAlgorithm.valueOf(algorithm));
+        }
+        digester = new MultiDigester(algorithmList);
+        digests = digester.createDigestBuffers();
+        new Random(1).nextBytes(content);
+
+        if (fileSizes.equals("mixed")) {
+            //Sizes from 256 bytes to 128 MiB, about one in two files below 4 KiB
+            Random random = new Random(2);
+            sizes = new long[256];
+            long total = 0;
+            for (int i = 0; i < sizes.length; i++) {
+                int exponent = 8 + (int) Math.min(18, Math.abs(random.nextGaussian() * 6));
+                sizes[i] = (1L << exponent) + random.nextInt(1 << exponent);
+                total += sizes[i];
+            }
+            System.out.println("Bytes per operation: " + total);
+        } else {
+            sizes = new long[]{Long.parseLong(fileSizes)};
+        }
+    }
+
+    @Benchmark
+    public byte digestFiles() {
+        byte result = 0;
+        for (long size : sizes) {
+            for (long offset = 0; offset < size; offset += content.length) {
+                digester.update(content, 0, (int) Math.min(content.length, size - offset));
+            }
+            digester.digest(digests);
+            result ^= digests[0][0];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * MoveDetectorBenchmark
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the move detection: Indexing the files which only exist on the
+ * dirty image and matching the golden image files without a path match
+ * against them. Half of the golden image files are found (moved), the others
+ * miss (deleted). The cost of matching is the difference of indexAndMatch
+ * and index.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MoveDetectorBenchmark {
+
+    // Amount of files on each side
+    @Param({"100000", "1000000"})
+    public int files;
+
+    private byte[][] dirtyImageDigests;
+    private long[] dirtyImageSizes;
+    private byte[][] goldenImageDigests;
+    private long[] goldenImageSizes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        dirtyImageDigests = new byte[files][16];
+        dirtyImageSizes = new long[files];
+        goldenImageDigests = new byte[files][];
+        goldenImageSizes = new long[files];
+        for (int i = 0; i < files; i++) {
+            random.nextBytes(dirtyImageDigests[i]);
+            dirtyImageSizes[i] = 1 + random.nextInt(1 << 20);
+            if (i % 2 == 0) {
+                goldenImageDigests[i] = dirtyImageDigests[i];
+                goldenImageSizes[i] = dirtyImageSizes[i];
+            } else {
+                goldenImageDigests[i] = new byte[16];
+                random.nextBytes(goldenImageDigests[i]);
+                goldenImageSizes[i] = dirtyImageSizes[i];
+            }
+        }
+    }
+
+    @Benchmark
+    public int index() {
+        return createIndex().getDirtyImageFileCount();
+    }
+
+    @Benchmark
+    public int indexAndMatch() {
+        MoveDetector detector = createIndex();
+        int moved = 0;
+        for (int i = 0; i < files; i++) {
+            if (detector.match(goldenImageDigests[i], goldenImageSizes[i]) != BaselineEntry.NO_OBJECT_ID) {
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    private MoveDetector createIndex() {
+        MoveDetector detector = new MoveDetector();
+        for (int i = 0; i < files; i++) {
+            detector.addDirtyImageFile(dirtyImageDigests[i], dirtyImageSizes[i], i);
+        }
+        return detector;
+    }
+}
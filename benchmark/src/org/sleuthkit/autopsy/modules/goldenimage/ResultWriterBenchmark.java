@@ -0,0 +1,133 @@
+/*
+ * ResultWriterBenchmark
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sleuthkit.datamodel.ContentTag;
+
+/**
+ * The result write stage by batch size and flush interval: An operation
+ * writes a burst of results into the ResultWriter and waits until the last
+ * one is tagged. The tags go to a ResultSink stand-in which only counts
+ * them, the completed files are recorded in a ComparisonJournal in the
+ * temporary directory, which is flushed after every batch. So the time is
+ * the overhead of the batching (wake-ups of the flush thread, journal
+ * flushes) plus the time the last results wait in a partial batch for the
+ * flush interval, not the cost of the tags in a case database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultWriterBenchmark {
+
+    @Param({"1", "50", "500"})
+    public int batchSize;
+
+    // Milliseconds
+    @Param({"10", "200"})
+    public long flushInterval;
+
+    // Amount of results written by an operation
+    @Param({"100", "10000"})
+    public int burst;
+
+    private Path directory;
+    private ComparisonJournal journal;
+    private CountingSink sink;
+    private ResultWriter resultWriter;
+    private ComparisonResult[] results;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("gibenchmark");
+        journal = new ComparisonJournal(directory.resolve("benchmark" + ComparisonJournal.EXTENSION), "benchmark");
+        sink = new CountingSink();
+        resultWriter = new ResultWriter(sink, batchSize, flushInterval, batchSize, journal, null, null, new PipelineMetrics(),
+                GoldenImageIngestModuleFactory.giTagDeletedPrefix + "benchmark");
+        results = new ComparisonResult[burst];
+        for (int i = 0; i < burst; i++) {
+            results[i] = new ComparisonResult(StubFiles.create(i, SyntheticPaths.parentPath(i), SyntheticPaths.name(i, "")),
+                    GoldenImageIngestModuleFactory.giTagGoodName, "The file wasn't changed.");
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException, InterruptedException {
+        resultWriter.finish(1, TimeUnit.MINUTES);
+        journal.close();
+        Files.deleteIfExists(directory.resolve("benchmark" + ComparisonJournal.EXTENSION));
+        Files.deleteIfExists(directory);
+    }
+
+    /**
+     * @return The amount of tags written so far.
+     */
+    @Benchmark
+    public long writeBurst() throws InterruptedException {
+        long target = sink.getTagCount() + burst;
+        for (ComparisonResult result : results) {
+            resultWriter.write(result);
+        }
+        sink.await(target);
+        return target;
+    }
+
+    /**
+     * Counts the tags instead of writing them to a case.
+     */
+    private static final class CountingSink implements ResultSink {
+
+        private long tags = 0;
+
+        @Override
+        public synchronized void addTag(ImageFile pFile, String pTagName, String pComment) {
+            tags++;
+            notifyAll();
+        }
+
+        @Override
+        public List<ContentTag> getTags(ImageFile pFile) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void deleteTag(ContentTag pTag) {
+        }
+
+        synchronized long getTagCount() {
+            return tags;
+        }
+
+        /**
+         * Waits until the amount of tags was written.
+         */
+        synchronized void await(long pTags) throws InterruptedException {
+            while (tags < pTags) {
+                wait();
+            }
+        }
+    }
+}
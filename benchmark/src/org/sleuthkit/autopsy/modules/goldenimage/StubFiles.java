@@ -0,0 +1,149 @@
+/*
+ * StubFiles
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * In-memory stand-ins for the files of a case, so the benchmarks run without
+ * a case database. They implement the ImageFile view the comparison works
+ * on, only the object id, name and parent path are set. Their content is
+ * empty and can't be read.
+ */
+final class StubFiles {
+
+    private StubFiles() {
+    }
+
+    static ImageFile create(long pObjectId, String pParentPath, String pName) {
+        return new StubFile(pObjectId, pParentPath, pName);
+    }
+
+    /**
+     * @return The files sorted like a FileCursor returns them.
+     */
+    static ImageFile[] sorted(List<ImageFile> pFiles) {
+        List<ImageFile> files = new ArrayList<>(pFiles);
+        files.sort(FileSource::comparePaths);
+        return files.toArray(new ImageFile[files.size()]);
+    }
+
+    /**
+     * A file of an image which isn't part of a case.
+     */
+    static final class StubFile implements ImageFile {
+
+        private final long objectId;
+        private final String parentPath;
+        private final String name;
+
+        StubFile(long pObjectId, String pParentPath, String pName) {
+            objectId = pObjectId;
+            parentPath = pParentPath;
+            name = pName;
+        }
+
+        @Override
+        public long getId() {
+            return objectId;
+        }
+
+        @Override
+        public long getDataSourceObjectId() {
+            return 0;
+        }
+
+        @Override
+        public String getParentPath() {
+            return parentPath;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getSize() {
+            return 0;
+        }
+
+        @Override
+        public long getMtime() {
+            return 0;
+        }
+
+        @Override
+        public long getCrtime() {
+            return 0;
+        }
+
+        @Override
+        public long getCtime() {
+            return 0;
+        }
+
+        @Override
+        public long getMetaAddr() {
+            return 0;
+        }
+
+        @Override
+        public boolean canRead() {
+            return false;
+        }
+
+        @Override
+        public int read(byte[] pBuffer, long pOffset, long pLength) throws TskCoreException {
+            throw new TskCoreException("The stub file " + objectId + " has no content");
+        }
+
+        @Override
+        public long getImageOffset() {
+            return 0;
+        }
+
+        @Override
+        public AbstractFile getAbstractFile() {
+            return null;
+        }
+    }
+
+    /**
+     * A FileSource over sorted stub files, skips directories like the
+     * FileCursor.
+     */
+    static final class ArrayFileSource implements FileSource {
+
+        private final ImageFile[] files;
+        private int index = 0;
+        private String skippedDirectory = null;
+
+        ArrayFileSource(ImageFile[] pFiles) {
+            files = pFiles;
+        }
+
+        @Override
+        public ImageFile next() {
+            while (index < files.length) {
+                ImageFile file = files[index++];
+                if (skippedDirectory != null && file.getParentPath().startsWith(skippedDirectory)) {
+                    continue;
+                }
+                skippedDirectory = null;
+                return file;
+            }
+            return null;
+        }
+
+        @Override
+        public void skipDirectory(String pDirectory) {
+            skippedDirectory = pDirectory;
+        }
+    }
+}
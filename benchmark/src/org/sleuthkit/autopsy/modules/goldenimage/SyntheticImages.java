@@ -0,0 +1,493 @@
+/*
+ * SyntheticImages
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import org.sleuthkit.datamodel.AbstractFile;
+
+/**
+ * A reproducible golden image and a dirty variant of it. Every golden image
+ * file is, by the configured rates, deleted, modified or renamed on the dirty
+ * image or kept; independently a new file is added next to it. A share of
+ * the files is large. Everything is derived from the seed and the index of a
+ * file, so the images are streamed in path order without being held in
+ * memory, and the same seed gives the same images and expected results.
+ *
+ * The object id of a file encodes its index and kind (see Kind), so its size,
+ * content and expected result are computed from the id. The content is
+ * generated on the fly, it isn't stored either. The files are ImageFiles
+ * whose reads return that content, so the ComparisonPipeline compares them
+ * like the files of a case; fileLoader() looks them up by their object id.
+ */
+final class SyntheticImages {
+
+    /**
+     * The kinds of files, the order of a kind is the order of its path
+     * among the files of the same index.
+     */
+    enum Kind {
+        // A file added next to a golden image file ("file000001-new.dll")
+        NEW,
+        // A golden image file under a new name ("file000001-renamed.dll")
+        RENAMED,
+        // A file of the golden image
+        GOLDEN,
+        // The file of the same path on the dirty image, unchanged or modified
+        DIRTY
+    }
+
+    /**
+     * The results of the comparison, as the module tags them.
+     */
+    enum Result {
+        GOOD, CHANGED, NEW, MOVED, DELETED
+    }
+
+    // Object ids of the images, the pipeline schedules the reads per image
+    static final long GOLDEN_IMAGE_ID = Long.MAX_VALUE - 1;
+    static final long DIRTY_IMAGE_ID = Long.MAX_VALUE;
+
+    private static final int KINDS = Kind.values().length;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    // Change of a golden image file, drawn per index
+    private static final int KEPT = 0;
+    private static final int DELETED = 1;
+    private static final int MODIFIED = 2;
+    private static final int RENAMED = 3;
+
+    private final int files;
+    private final long seed;
+    private final double deleteRate;
+    private final double addRate;
+    private final double modifyRate;
+    private final double renameRate;
+    private final double largeFileRate;
+    private final long largeFileSize;
+
+    /**
+     * @param pFiles The amount of golden image files
+     * @param pSeed The seed of the images
+     * @param pDeleteRate The share of golden image files which are deleted
+     * @param pAddRate The share of golden image files a new file is added
+     * next to
+     * @param pModifyRate The share of golden image files which are modified
+     * @param pRenameRate The share of golden image files which are renamed
+     * @param pLargeFileRate The share of files of pLargeFileSize bytes, the
+     * other files have 512 bytes to 64 KiB
+     */
+    SyntheticImages(int pFiles, long pSeed, double pDeleteRate, double pAddRate, double pModifyRate, double pRenameRate,
+            double pLargeFileRate, long pLargeFileSize) {
+        if (pDeleteRate + pModifyRate + pRenameRate > 1) {
+            throw new IllegalArgumentException("The rates of deleted, modified and renamed files exceed 1");
+        }
+        files = pFiles;
+        seed = pSeed;
+        deleteRate = pDeleteRate;
+        addRate = pAddRate;
+        modifyRate = pModifyRate;
+        renameRate = pRenameRate;
+        largeFileRate = pLargeFileRate;
+        largeFileSize = pLargeFileSize;
+    }
+
+    int getFileCount() {
+        return files;
+    }
+
+    /**
+     * @return The files of the golden image in path order.
+     */
+    FileSource goldenImage() {
+        return new ImageSource(true);
+    }
+
+    /**
+     * @return The files of the dirty image in path order.
+     */
+    FileSource dirtyImage() {
+        return new ImageSource(false);
+    }
+
+    /**
+     * @return A loader of the files of both images by their object id.
+     */
+    FileLoader fileLoader() {
+        return objectId -> objectId >= 0 && index(objectId) < files && exists(objectId) ? new SyntheticFile(objectId) : null;
+    }
+
+    static long objectId(int pIndex, Kind pKind) {
+        return (long) pIndex * KINDS + pKind.ordinal();
+    }
+
+    static int index(long pObjectId) {
+        return (int) (pObjectId / KINDS);
+    }
+
+    static Kind kind(long pObjectId) {
+        return Kind.values()[(int) (pObjectId % KINDS)];
+    }
+
+    /**
+     * @return The path of a file as FileCursor.getPath returns it.
+     */
+    static String path(long pObjectId) {
+        return SyntheticPaths.parentPath(index(pObjectId)) + name(pObjectId);
+    }
+
+    long size(long pObjectId) {
+        int index = index(pObjectId);
+        switch (kind(pObjectId)) {
+            case NEW:
+                return fileSize(random(index, 1));
+            case DIRTY:
+                //Half of the modified files change their size
+                if (change(index) == MODIFIED && unit(random(index, 2)) < 0.5) {
+                    return fileSize(random(index, 0)) + 1 + (random(index, 3) & 0xFFF);
+                }
+                return fileSize(random(index, 0));
+            default:
+                return fileSize(random(index, 0));
+        }
+    }
+
+    /**
+     * Generates a part of the content of a file.
+     *
+     * @param pOffset The offset in the file, a multiple of 8
+     */
+    void read(long pObjectId, long pOffset, byte[] pBuffer, int pLength) {
+        long contentSeed = contentSeed(pObjectId);
+        long word = pOffset / Long.BYTES;
+        for (int i = 0; i < pLength; i += Long.BYTES, word++) {
+            long value = mix(contentSeed + word * GOLDEN_RATIO);
+            for (int j = 0; j < Long.BYTES && i + j < pLength; j++) {
+                pBuffer[i + j] = (byte) (value >>> (8 * j));
+            }
+        }
+    }
+
+    /**
+     * @return The result the comparison has to tag the file with, or null if
+     * the file isn't tagged.
+     */
+    Result expected(long pObjectId) {
+        int change = change(index(pObjectId));
+        switch (kind(pObjectId)) {
+            case NEW:
+                return Result.NEW;
+            case RENAMED:
+                return Result.MOVED;
+            case GOLDEN:
+                //A renamed file is tagged on the dirty image only
+                return change == DELETED ? Result.DELETED : null;
+            default:
+                return change == MODIFIED ? Result.CHANGED : Result.GOOD;
+        }
+    }
+
+    /**
+     * @return The amount of files the comparison tags with each result.
+     */
+    Map<Result, Long> expectedCounts() {
+        Map<Result, Long> counts = new EnumMap<>(Result.class);
+        for (Result result : Result.values()) {
+            counts.put(result, 0L);
+        }
+        for (int index = 0; index < files; index++) {
+            for (Kind kind : Kind.values()) {
+                long objectId = objectId(index, kind);
+                if (exists(objectId)) {
+                    Result result = expected(objectId);
+                    if (result != null) {
+                        counts.put(result, counts.get(result) + 1);
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Writes both images as directory trees, a hashdeep manifest of the
+     * golden image and the expected results, so the images can be added to
+     * a case (e.g. as disk images created from the trees) and the results
+     * of the module checked against them.
+     *
+     * @return The amount of bytes written.
+     */
+    long write(Path pDirectory) throws IOException {
+        Path goldenImage = pDirectory.resolve("golden");
+        Path dirtyImage = pDirectory.resolve("dirty");
+        MultiDigester digester = new MultiDigester(Arrays.asList(DigestAlgorithm.MD5, DigestAlgorithm.SHA256));
+        byte[][] digests = digester.createDigestBuffers();
+        byte[] buffer = new byte[Chunk.SIZE];
+        long bytes = 0;
+        Files.createDirectories(pDirectory);
+        try (BufferedWriter manifest = Files.newBufferedWriter(pDirectory.resolve("golden.hashdeep"), StandardCharsets.UTF_8);
+                BufferedWriter expectedResults = Files.newBufferedWriter(pDirectory.resolve("expected.csv"), StandardCharsets.UTF_8)) {
+            manifest.write(String.format("%%%%%%%% HASHDEEP-1.0%n%%%%%%%% size,md5,sha256,filename%n"));
+            expectedResults.write(String.format("image,path,result%n"));
+            for (int index = 0; index < files; index++) {
+                for (Kind kind : Kind.values()) {
+                    long objectId = objectId(index, kind);
+                    if (!exists(objectId)) {
+                        continue;
+                    }
+                    boolean golden = kind == Kind.GOLDEN;
+                    String path = path(objectId);
+                    Path file = (golden ? goldenImage : dirtyImage).resolve(path.substring(1));
+                    Files.createDirectories(file.getParent());
+                    long size = size(objectId);
+                    try (OutputStream out = Files.newOutputStream(file)) {
+                        for (long offset = 0; offset < size; offset += buffer.length) {
+                            int length = (int) Math.min(buffer.length, size - offset);
+                            read(objectId, offset, buffer, length);
+                            out.write(buffer, 0, length);
+                            if (golden) {
+                                digester.update(buffer, 0, length);
+                            }
+                        }
+                    }
+                    bytes += size;
+                    if (golden) {
+                        digester.digest(digests);
+                        manifest.write(String.format("%d,%s,%s,.%s%n", size, DigestAlgorithm.toHex(digests[0]), DigestAlgorithm.toHex(digests[1]), path));
+                    }
+                    Result result = expected(objectId);
+                    if (result != null) {
+                        expectedResults.write(String.format("%s,%s,%s%n", golden ? "golden" : "dirty", path, result));
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return True if the file is part of one of the images.
+     */
+    boolean exists(long pObjectId) {
+        int index = index(pObjectId);
+        int change = change(index);
+        switch (kind(pObjectId)) {
+            case NEW:
+                return unit(random(index, 4)) < addRate;
+            case RENAMED:
+                return change == RENAMED;
+            case GOLDEN:
+                return true;
+            default:
+                return change != DELETED && change != RENAMED;
+        }
+    }
+
+    private static String name(long pObjectId) {
+        int index = index(pObjectId);
+        switch (kind(pObjectId)) {
+            case NEW:
+                return SyntheticPaths.name(index, "-new");
+            case RENAMED:
+                return SyntheticPaths.name(index, "-renamed");
+            default:
+                return SyntheticPaths.name(index, "");
+        }
+    }
+
+    /**
+     * @return The change of a golden image file on the dirty image.
+     */
+    private int change(int pIndex) {
+        double value = unit(random(pIndex, 5));
+        if (value < deleteRate) {
+            return DELETED;
+        }
+        if (value < deleteRate + modifyRate) {
+            return MODIFIED;
+        }
+        if (value < deleteRate + modifyRate + renameRate) {
+            return RENAMED;
+        }
+        return KEPT;
+    }
+
+    /**
+     * @return The seed of the content, a renamed or unchanged file has the
+     * content of its golden image file.
+     */
+    private long contentSeed(long pObjectId) {
+        int index = index(pObjectId);
+        if (kind(pObjectId) == Kind.NEW) {
+            return random(index, 6);
+        }
+        if (kind(pObjectId) == Kind.DIRTY && change(index) == MODIFIED) {
+            return random(index, 7);
+        }
+        return random(index, 8);
+    }
+
+    private long fileSize(long pRandom) {
+        if (unit(mix(pRandom)) < largeFileRate) {
+            return largeFileSize;
+        }
+        //Log-uniform from 512 bytes to 64 KiB
+        return (long) (512 * Math.pow(128, unit(pRandom)));
+    }
+
+    /**
+     * @return A random number of a file, pStream tells the numbers of a
+     * file apart.
+     */
+    private long random(int pIndex, int pStream) {
+        return mix(seed * GOLDEN_RATIO + ((long) pIndex << 4 | pStream));
+    }
+
+    /**
+     * @return A number from 0 (inclusive) to 1 (exclusive).
+     */
+    private static double unit(long pRandom) {
+        return (pRandom >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * The finalizer of SplitMix64.
+     */
+    private static long mix(long pValue) {
+        long value = pValue;
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Streams the files of one of the images in path order, one file at a
+     * time.
+     */
+    private final class ImageSource implements FileSource {
+
+        private final boolean golden;
+        private int index = 0;
+        private int kind = 0;
+        private String skippedDirectory = null;
+
+        ImageSource(boolean pGolden) {
+            golden = pGolden;
+        }
+
+        @Override
+        public ImageFile next() {
+            while (index < files) {
+                long objectId = objectId(index, Kind.values()[kind]);
+                if (++kind == KINDS) {
+                    kind = 0;
+                    index++;
+                }
+                if ((kind(objectId) == Kind.GOLDEN) != golden || !exists(objectId)) {
+                    continue;
+                }
+                String parentPath = SyntheticPaths.parentPath(index(objectId));
+                if (skippedDirectory != null && parentPath.startsWith(skippedDirectory)) {
+                    continue;
+                }
+                skippedDirectory = null;
+                return new SyntheticFile(objectId);
+            }
+            return null;
+        }
+
+        @Override
+        public void skipDirectory(String pDirectory) {
+            skippedDirectory = pDirectory;
+        }
+    }
+
+    /**
+     * A file of one of the images. Its metadata other than the size is
+     * unknown (0), like the timestamps of a file system without them.
+     */
+    private final class SyntheticFile implements ImageFile {
+
+        private final long objectId;
+
+        SyntheticFile(long pObjectId) {
+            objectId = pObjectId;
+        }
+
+        @Override
+        public long getId() {
+            return objectId;
+        }
+
+        @Override
+        public long getDataSourceObjectId() {
+            return kind(objectId) == Kind.GOLDEN ? GOLDEN_IMAGE_ID : DIRTY_IMAGE_ID;
+        }
+
+        @Override
+        public String getParentPath() {
+            return SyntheticPaths.parentPath(index(objectId));
+        }
+
+        @Override
+        public String getName() {
+            return name(objectId);
+        }
+
+        @Override
+        public long getSize() {
+            return size(objectId);
+        }
+
+        @Override
+        public long getMtime() {
+            return 0;
+        }
+
+        @Override
+        public long getCrtime() {
+            return 0;
+        }
+
+        @Override
+        public long getCtime() {
+            return 0;
+        }
+
+        @Override
+        public long getMetaAddr() {
+            return 0;
+        }
+
+        @Override
+        public boolean canRead() {
+            return true;
+        }
+
+        @Override
+        public int read(byte[] pBuffer, long pOffset, long pLength) {
+            int length = (int) Math.max(0, Math.min(pLength, size(objectId) - pOffset));
+            SyntheticImages.this.read(objectId, pOffset, pBuffer, length);
+            return length;
+        }
+
+        @Override
+        public long getImageOffset() {
+            return 0;
+        }
+
+        @Override
+        public AbstractFile getAbstractFile() {
+            return null;
+        }
+    }
+}
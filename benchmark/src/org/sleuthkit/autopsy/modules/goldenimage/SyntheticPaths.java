@@ -0,0 +1,31 @@
+/*
+ * SyntheticPaths
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+/**
+ * The paths of the synthetic files of the benchmarks: 100 files per
+ * directory and 100 directories per top level directory, so the paths are
+ * as long and share as long prefixes as on an operating system image.
+ */
+final class SyntheticPaths {
+
+    private SyntheticPaths() {
+    }
+
+    /**
+     * @return The parent path of the file pIndex, e.g. "/dir0001/sub023/".
+     */
+    static String parentPath(int pIndex) {
+        return String.format("/dir%04d/sub%03d/", pIndex / 10000, pIndex / 100 % 100);
+    }
+
+    /**
+     * @return The name of the file pIndex, a suffix tells variants of it
+     * apart (e.g. new files next to it).
+     */
+    static String name(int pIndex, String pSuffix) {
+        return String.format("file%06d%s.dll", pIndex, pSuffix);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * BaselineEntry
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+/**
+ * A file of a baseline snapshot: The path, metadata and digest of a file on
+ * the golden image at the time the snapshot was created. A file which
+ * couldn't be read has no digest, it isn't compared.
+ */
+final class BaselineEntry {
+
+    // Object id of an entry whose file isn't loaded into a case
+    static final long NO_OBJECT_ID = -1;
+
+    // Size, timestamp or metadata address which isn't known (e.g. not part of a hash manifest)
+    static final long UNKNOWN = -1;
+
+    private final String path;
+    private final long size;
+    private final long mtime;
+    private final long crtime;
+    private final long metaAddr;
+    private final long objectId;
+    private final byte[] digest;
+
+    BaselineEntry(String pPath, long pSize, long pMtime, long pCrtime, long pMetaAddr, long pObjectId, byte[] pDigest) {
+        path = pPath;
+        size = pSize;
+        mtime = pMtime;
+        crtime = pCrtime;
+        metaAddr = pMetaAddr;
+        objectId = pObjectId;
+        digest = pDigest;
+    }
+
+    /**
+     * @return The parent path and name of the file, as it is stored in the
+     * case database (e.g. "/Windows/notepad.exe").
+     */
+    String getPath() {
+        return path;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    long getMtime() {
+        return mtime;
+    }
+
+    long getCrtime() {
+        return crtime;
+    }
+
+    long getMetaAddr() {
+        return metaAddr;
+    }
+
+    /**
+     * @return The object id of the golden image file in the case the snapshot
+     * was created in, or NO_OBJECT_ID.
+     */
+    long getObjectId() {
+        return objectId;
+    }
+
+    /**
+     * @return The digest of the content with the algorithm of the snapshot,
+     * null if the file is unreadable.
+     */
+    byte[] getDigest() {
+        return digest;
+    }
+
+    /**
+     * @return True if the golden image file couldn't be read when the
+     * snapshot was created.
+     */
+    boolean isUnreadable() {
+        return digest == null;
+    }
+}
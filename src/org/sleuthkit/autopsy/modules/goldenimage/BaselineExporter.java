@@ -0,0 +1,117 @@
+/*
+ * BaselineExporter
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.datamodel.Content;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Creates a baseline snapshot of a golden image in the case. The md5 hash
+ * stored in the case database is used if md5 is the algorithm of the
+ * snapshot, otherwise every file is hashed once. Computed md5 hashes are
+ * written back to the case database.
+ */
+final class BaselineExporter {
+
+    private static final Logger logger = Logger.getLogger(BaselineExporter.class.getName());
+
+    private final SleuthkitCase sleuthkitCase;
+    private final DigestAlgorithm algorithm;
+    private final MultiDigester digester;
+    private final DigestResolver digestResolver;
+    private final byte[][] digests;
+    private final byte[] buffer = new byte[Chunk.SIZE];
+
+    BaselineExporter(SleuthkitCase pCase, DigestAlgorithm pAlgorithm) {
+        sleuthkitCase = pCase;
+        algorithm = pAlgorithm;
+        digester = new MultiDigester(Collections.singletonList(pAlgorithm));
+        digests = digester.createDigestBuffers();
+        digestResolver = new DigestResolver(pCase, null, null, null, DigestResolver.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Writes the snapshot of a data source.
+     *
+     * @param pDataSource The golden image
+     * @param pTarget The snapshot file, an existing one is replaced
+     * @param pCancelled Stops the export if it returns true
+     *
+     * @return True if the snapshot was written, false if it was cancelled.
+     */
+    boolean export(Content pDataSource, Path pTarget, BooleanSupplier pCancelled) throws TskCoreException, IOException {
+        try (BaselineSnapshot.Writer writer = new BaselineSnapshot.Writer(algorithm, pDataSource.getId())) {
+            FileCursor cursor = new FileCursor(sleuthkitCase, pDataSource);
+            int unreadableFiles = 0;
+            ImageFile file;
+            while ((file = cursor.next()) != null) {
+                if (pCancelled.getAsBoolean()) {
+                    digestResolver.flush();
+                    return false;
+                }
+                if (digestResolver.isFlushDue()) {
+                    digestResolver.flush();
+                }
+
+                //Unreadable files are kept without a digest, so their paths are skipped like in a comparison against the golden image
+                byte[] digest = null;
+                if (file.canRead() && calculateDigest(file, pCancelled)) {
+                    digest = digests[0].clone();
+                } else {
+                    unreadableFiles++;
+                }
+                writer.add(new BaselineEntry(FileCursor.getPath(file), file.getSize(), file.getMtime(), file.getCrtime(),
+                        file.getMetaAddr(), file.getId(), digest));
+            }
+
+            digestResolver.flush();
+            writer.write(pTarget);
+            if (unreadableFiles > 0) {
+                logger.log(Level.WARNING, "{0} files of {1} couldn''t be read, they are flagged as unreadable in the baseline snapshot.",
+                        new Object[]{unreadableFiles, pDataSource.getName()});
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return False if the file couldn't be read or the export was cancelled
+     * while it was read.
+     */
+    private boolean calculateDigest(ImageFile pFile, BooleanSupplier pCancelled) {
+        try {
+            if (digestResolver.resolve(pFile, digester.getAlgorithms(), digests, false, () -> false)) {
+                return true;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        digester.reset();
+        try {
+            for (long offset = 0; offset < pFile.getSize(); offset += buffer.length) {
+                int length = (int) Math.min(buffer.length, pFile.getSize() - offset);
+                //A large file is abandoned as soon as the export is cancelled
+                if (pCancelled.getAsBoolean() || pFile.read(buffer, offset, length) != length) {
+                    return false;
+                }
+                digester.update(buffer, 0, length);
+            }
+        } catch (TskCoreException ex) {
+            return false;
+        }
+        digester.digest(digests);
+        digestResolver.computed(pFile, digester.getAlgorithms(), digests, false);
+        return true;
+    }
+}
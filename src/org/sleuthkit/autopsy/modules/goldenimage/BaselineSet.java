@@ -0,0 +1,130 @@
+/*
+ * BaselineSet
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The baseline snapshots a dirty image is compared against in one pass. A
+ * file of the dirty image is looked up in all snapshots and hashed once; it
+ * is identical to every baseline with the same digest. The identical files
+ * are counted per baseline, so the closest golden image can be found.
+ */
+final class BaselineSet implements Closeable {
+
+    private final List<BaselineSnapshot> snapshots = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private AtomicLongArray matches = new AtomicLongArray(0);
+    private AtomicLongArray lookups = new AtomicLongArray(0);
+
+    /**
+     * Adds a snapshot. All snapshots must have the same digest algorithm.
+     *
+     * @param pName The name of the baseline used in the tags and the report
+     */
+    void add(BaselineSnapshot pSnapshot, String pName) {
+        if (!snapshots.isEmpty() && snapshots.get(0).getAlgorithm() != pSnapshot.getAlgorithm()) {
+            throw new IllegalArgumentException("The baseline " + pName + " uses " + pSnapshot.getAlgorithm() + " instead of " + getAlgorithm());
+        }
+        snapshots.add(pSnapshot);
+        names.add(pName);
+        matches = new AtomicLongArray(snapshots.size());
+        lookups = new AtomicLongArray(snapshots.size());
+    }
+
+    int size() {
+        return snapshots.size();
+    }
+
+    BaselineSnapshot get(int pIndex) {
+        return snapshots.get(pIndex);
+    }
+
+    String getName(int pIndex) {
+        return names.get(pIndex);
+    }
+
+    DigestAlgorithm getAlgorithm() {
+        return snapshots.get(0).getAlgorithm();
+    }
+
+    /**
+     * Looks up a path in all snapshots.
+     *
+     * @param pPath The parent path and name of the file
+     * @param pIndexes Receives the index of the entry in each snapshot or -1
+     *
+     * @return The entries of the path in the order of the snapshots (null if
+     * a snapshot doesn't contain the path) or null if no snapshot contains
+     * it.
+     */
+    BaselineEntry[] find(String pPath, int[] pIndexes) {
+        BaselineEntry[] entries = null;
+        for (int i = 0; i < snapshots.size(); i++) {
+            pIndexes[i] = snapshots.get(i).find(pPath);
+            if (pIndexes[i] >= 0) {
+                if (entries == null) {
+                    entries = new BaselineEntry[snapshots.size()];
+                }
+                entries[i] = snapshots.get(i).getEntry(pIndexes[i]);
+                lookups.incrementAndGet(i);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Counts a file of the dirty image which is identical to its entry in a
+     * baseline.
+     */
+    void recordMatch(int pIndex) {
+        matches.incrementAndGet(pIndex);
+    }
+
+    /**
+     * @return The amount of files of the dirty image which are identical to
+     * the baseline.
+     */
+    long getMatches(int pIndex) {
+        return matches.get(pIndex);
+    }
+
+    /**
+     * Describes the match score of every baseline: The identical files in
+     * relation to the files of the dirty image and of the baseline.
+     *
+     * @param pDirtyImageFiles The amount of files of the dirty image
+     */
+    String describeScores(long pDirtyImageFiles) {
+        StringBuilder scores = new StringBuilder();
+        for (int i = 0; i < snapshots.size(); i++) {
+            long identical = matches.get(i);
+            scores.append(names.get(i))
+                    .append(": ").append(identical).append(" identical files (")
+                    .append(percent(identical, pDirtyImageFiles)).append("% of the dirty image, ")
+                    .append(percent(identical, snapshots.get(i).getEntryCount())).append("% of the baseline), ")
+                    .append(lookups.get(i)).append(" paths found, ")
+                    .append(snapshots.get(i).getEntryCount() - lookups.get(i)).append(" paths missing on the dirty image")
+                    .append(System.lineSeparator());
+        }
+        return scores.toString();
+    }
+
+    private static String percent(long pPart, long pTotal) {
+        return pTotal == 0 ? "0.0" : String.format(Locale.ROOT, "%.1f", 100.0 * pPart / pTotal);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (BaselineSnapshot snapshot : snapshots) {
+            snapshot.close();
+        }
+    }
+}
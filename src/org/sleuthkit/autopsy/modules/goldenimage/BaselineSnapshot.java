@@ -0,0 +1,570 @@
+/*
+ * BaselineSnapshot
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A compact binary snapshot of a golden image: The path, metadata and digest
+ * of every file. The records are sorted by the hash of their path, so a file
+ * is found by a binary search in the memory mapped snapshot without loading
+ * it. A job which compares against a snapshot doesn't touch the golden
+ * image's rows in the case database, and the golden image doesn't even have
+ * to be loaded into the case.
+ *
+ * Layout (big endian):
+ * <pre>
+ * Header (64 bytes): magic, version, digest length, entry count,
+ *                    data source id, creation time, offset of the paths,
+ *                    name of the digest algorithm (16 bytes, ASCII)
+ * Records:           path hash, size, mtime, crtime, metadata address,
+ *                    object id, path offset, path length, flags, digest
+ * Paths:             UTF-8
+ * </pre>
+ * Golden image files which couldn't be read are flagged as unreadable, their
+ * digest is zero. Snapshots of version 1 have no flags.
+ * A snapshot is mapped as a single buffer, so it can't exceed 2 GiB (about
+ * 20 million files).
+ */
+final class BaselineSnapshot implements Closeable {
+
+    static final String EXTENSION = ".gibaseline";
+
+    private static final int MAGIC = 0x47494253; // "GIBS"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int ALGORITHM_NAME_LENGTH = 16;
+    private static final int RECORD_FIXED_SIZE = 6 * Long.BYTES + 3 * Integer.BYTES;
+    private static final int RECORD_FIXED_SIZE_V1 = 6 * Long.BYTES + 2 * Integer.BYTES;
+    private static final int FLAG_UNREADABLE = 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final DigestAlgorithm algorithm;
+    private final int digestLength;
+    private final int entryCount;
+    private final int version;
+    private final int recordFixedSize;
+    private final int recordSize;
+    private final long dataSourceId;
+    private final long creationTime;
+    private final int pathsOffset;
+
+    private BaselineSnapshot(FileChannel pChannel, MappedByteBuffer pBuffer) throws IOException {
+        channel = pChannel;
+        buffer = pBuffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a baseline snapshot");
+        }
+        version = buffer.getInt(4);
+        if (version != VERSION && version != 1) {
+            throw new IOException("Unsupported baseline snapshot version " + version);
+        }
+        digestLength = buffer.getInt(8);
+        entryCount = buffer.getInt(12);
+        dataSourceId = buffer.getLong(16);
+        creationTime = buffer.getLong(24);
+        pathsOffset = (int) buffer.getLong(32);
+        recordFixedSize = version == 1 ? RECORD_FIXED_SIZE_V1 : RECORD_FIXED_SIZE;
+        recordSize = recordFixedSize + digestLength;
+
+        byte[] name = new byte[ALGORITHM_NAME_LENGTH];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = buffer.get(40 + i);
+        }
+        try {
+            algorithm = DigestAlgorithm.valueOf(new String(name, StandardCharsets.US_ASCII).trim());
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Unknown digest algorithm in baseline snapshot", ex);
+        }
+        if (algorithm.createDigester().getLength() != digestLength
+                || (long) HEADER_SIZE + (long) entryCount * recordSize > pathsOffset || pathsOffset > buffer.capacity()) {
+            throw new IOException("Corrupt baseline snapshot");
+        }
+    }
+
+    /**
+     * Maps a snapshot into memory.
+     *
+     * @throws IOException If the file can't be read or isn't a snapshot.
+     */
+    static BaselineSnapshot open(Path pFile) throws IOException {
+        FileChannel channel = FileChannel.open(pFile, StandardOpenOption.READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Baseline snapshot is too large: " + pFile);
+            }
+            return new BaselineSnapshot(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return The algorithm the digests of the snapshot were computed with.
+     */
+    DigestAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * @return The object id of the data source the snapshot was created from
+     * or BaselineEntry.NO_OBJECT_ID.
+     */
+    long getDataSourceId() {
+        return dataSourceId;
+    }
+
+    /**
+     * @return The time the snapshot was created in milliseconds since epoch.
+     */
+    long getCreationTime() {
+        return creationTime;
+    }
+
+    /**
+     * Looks up a file by its path.
+     *
+     * @param pPath The parent path and name of the file
+     *
+     * @return The index of the entry or -1 if the snapshot doesn't contain
+     * the path.
+     */
+    int find(String pPath) {
+        byte[] path = pPath.getBytes(StandardCharsets.UTF_8);
+        long hash = pathHash(path);
+
+        //Binary search for the first record with the hash
+        int low = 0;
+        int high = entryCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(buffer.getLong(recordOffset(middle)), hash) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        //Paths with the same hash are next to each other
+        for (int index = low; index < entryCount && buffer.getLong(recordOffset(index)) == hash; index++) {
+            if (pathEquals(index, path)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads an entry of the snapshot.
+     */
+    BaselineEntry getEntry(int pIndex) {
+        int offset = recordOffset(pIndex);
+        byte[] digest = null;
+        if (!isUnreadable(pIndex)) {
+            digest = new byte[digestLength];
+            for (int i = 0; i < digestLength; i++) {
+                digest[i] = buffer.get(offset + recordFixedSize + i);
+            }
+        }
+        return new BaselineEntry(getPath(pIndex), buffer.getLong(offset + 8), buffer.getLong(offset + 16),
+                buffer.getLong(offset + 24), buffer.getLong(offset + 32), buffer.getLong(offset + 40), digest);
+    }
+
+    String getPath(int pIndex) {
+        int offset = recordOffset(pIndex);
+        byte[] path = new byte[buffer.getInt(offset + 52)];
+        int pathOffset = pathsOffset + buffer.getInt(offset + 48);
+        for (int i = 0; i < path.length; i++) {
+            path[i] = buffer.get(pathOffset + i);
+        }
+        return new String(path, StandardCharsets.UTF_8);
+    }
+
+    long getObjectId(int pIndex) {
+        return buffer.getLong(recordOffset(pIndex) + 40);
+    }
+
+    /**
+     * @return True if the golden image file of the entry couldn't be read
+     * when the snapshot was created.
+     */
+    boolean isUnreadable(int pIndex) {
+        return version != 1 && (buffer.getInt(recordOffset(pIndex) + 56) & FLAG_UNREADABLE) != 0;
+    }
+
+    /**
+     * Closes the file. The mapping itself is released by the garbage
+     * collector.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int recordOffset(int pIndex) {
+        return HEADER_SIZE + pIndex * recordSize;
+    }
+
+    private boolean pathEquals(int pIndex, byte[] pPath) {
+        int offset = recordOffset(pIndex);
+        if (buffer.getInt(offset + 52) != pPath.length) {
+            return false;
+        }
+        int pathOffset = pathsOffset + buffer.getInt(offset + 48);
+        for (int i = 0; i < pPath.length; i++) {
+            if (buffer.get(pathOffset + i) != pPath[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The xxHash64 of the UTF-8 encoded path.
+     */
+    private static long pathHash(byte[] pPath) {
+        XxHash64Digester digester = new XxHash64Digester();
+        digester.update(pPath, 0, pPath.length);
+        byte[] hash = new byte[Long.BYTES];
+        digester.digest(hash, 0);
+        return ByteBuffer.wrap(hash).getLong();
+    }
+
+    /**
+     * Collects the entries of a snapshot and writes them sorted by the hash
+     * of their path. The entries are sorted externally: Every RUN_SIZE
+     * entries are sorted and spilled to a run file in the temporary
+     * directory, and the runs are merged when the snapshot is written. So the
+     * heap only holds one run and one entry per run, no matter how large the
+     * golden image or manifest is. A snapshot which fits into one run is
+     * written without spilling.
+     */
+    static final class Writer implements Closeable {
+
+        // Amount of entries which are sorted in memory, about 50 MiB for typical paths
+        static final int RUN_SIZE = 250_000;
+
+        private final DigestAlgorithm algorithm;
+        private final int digestLength;
+        private final long dataSourceId;
+        private final int runSize;
+        private final List<SortedEntry> run = new ArrayList<>();
+        private final List<Path> runFiles = new ArrayList<>();
+        private int count = 0;
+        private long pathsLength = 0;
+
+        /**
+         * @param pAlgorithm The algorithm of the digests of the entries
+         * @param pDataSourceId The object id of the golden image or
+         * BaselineEntry.NO_OBJECT_ID
+         */
+        Writer(DigestAlgorithm pAlgorithm, long pDataSourceId) {
+            this(pAlgorithm, pDataSourceId, RUN_SIZE);
+        }
+
+        /**
+         * @param pRunSize The amount of entries which are sorted in memory
+         */
+        Writer(DigestAlgorithm pAlgorithm, long pDataSourceId, int pRunSize) {
+            algorithm = pAlgorithm;
+            digestLength = pAlgorithm.createDigester().getLength();
+            dataSourceId = pDataSourceId;
+            runSize = Math.max(1, pRunSize);
+        }
+
+        /**
+         * @throws IOException If a full run couldn't be spilled.
+         */
+        void add(BaselineEntry pEntry) throws IOException {
+            if (!pEntry.isUnreadable() && pEntry.getDigest().length != digestLength) {
+                throw new IllegalArgumentException("The digest of " + pEntry.getPath() + " isn't a " + algorithm + " digest");
+            }
+            byte[] path = pEntry.getPath().getBytes(StandardCharsets.UTF_8);
+            run.add(new SortedEntry(pathHash(path), path, pEntry));
+            count++;
+            pathsLength += path.length;
+            if (run.size() >= runSize) {
+                spill();
+            }
+        }
+
+        int size() {
+            return count;
+        }
+
+        /**
+         * Writes the snapshot to a temporary file, which replaces the target
+         * once it is complete.
+         */
+        void write(Path pTarget) throws IOException {
+            long pathsOffset = HEADER_SIZE + (long) count * (RECORD_FIXED_SIZE + digestLength);
+            if (pathsOffset + pathsLength > Integer.MAX_VALUE) {
+                throw new IOException("Too many files for a baseline snapshot: " + count);
+            }
+
+            List<RunReader> readers = new ArrayList<>();
+            if (runFiles.isEmpty()) {
+                run.sort(null);
+                readers.add(new MemoryRunReader(run));
+            } else {
+                spill();
+                for (Path runFile : runFiles) {
+                    readers.add(new FileRunReader(runFile, digestLength));
+                }
+            }
+
+            if (pTarget.getParent() != null) {
+                Files.createDirectories(pTarget.getParent());
+            }
+            Path temporary = pTarget.resolveSibling(pTarget.getFileName() + ".tmp");
+            //The paths follow the records, they are collected in a second file while the records are written
+            Path temporaryPaths = pTarget.resolveSibling(pTarget.getFileName() + ".paths.tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)));
+                        OutputStream paths = new BufferedOutputStream(Files.newOutputStream(temporaryPaths))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(digestLength);
+                    out.writeInt(count);
+                    out.writeLong(dataSourceId);
+                    out.writeLong(System.currentTimeMillis());
+                    out.writeLong(pathsOffset);
+                    out.write(Arrays.copyOf(algorithm.name().getBytes(StandardCharsets.US_ASCII), ALGORITHM_NAME_LENGTH));
+                    out.write(new byte[HEADER_SIZE - 40 - ALGORITHM_NAME_LENGTH]);
+
+                    //k-way merge of the sorted runs
+                    PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, readers.size()));
+                    for (RunReader reader : readers) {
+                        if (reader.next()) {
+                            queue.add(reader);
+                        }
+                    }
+                    int pathOffset = 0;
+                    RunReader reader;
+                    while ((reader = queue.poll()) != null) {
+                        SortedEntry entry = reader.current;
+                        out.writeLong(entry.hash);
+                        out.writeLong(entry.size);
+                        out.writeLong(entry.mtime);
+                        out.writeLong(entry.crtime);
+                        out.writeLong(entry.metaAddr);
+                        out.writeLong(entry.objectId);
+                        out.writeInt(pathOffset);
+                        out.writeInt(entry.path.length);
+                        out.writeInt(entry.digest == null ? FLAG_UNREADABLE : 0);
+                        out.write(entry.digest == null ? new byte[digestLength] : entry.digest);
+                        paths.write(entry.path);
+                        pathOffset += entry.path.length;
+                        if (reader.next()) {
+                            queue.add(reader);
+                        }
+                    }
+                    paths.flush();
+                    Files.copy(temporaryPaths, out);
+                } finally {
+                    for (RunReader runReader : readers) {
+                        runReader.close();
+                    }
+                }
+                Files.move(temporary, pTarget, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporaryPaths);
+                Files.deleteIfExists(temporary);
+                close();
+            }
+        }
+
+        /**
+         * Deletes the spilled runs, the snapshot is discarded if it wasn't
+         * written yet.
+         */
+        @Override
+        public void close() throws IOException {
+            run.clear();
+            for (Path runFile : runFiles) {
+                Files.deleteIfExists(runFile);
+            }
+            runFiles.clear();
+        }
+
+        private void spill() throws IOException {
+            if (run.isEmpty()) {
+                return;
+            }
+            run.sort(null);
+            Path runFile = Files.createTempFile("gibaseline", ".run");
+            runFiles.add(runFile);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFile)))) {
+                for (SortedEntry entry : run) {
+                    out.writeLong(entry.hash);
+                    out.writeInt(entry.path.length);
+                    out.write(entry.path);
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.mtime);
+                    out.writeLong(entry.crtime);
+                    out.writeLong(entry.metaAddr);
+                    out.writeLong(entry.objectId);
+                    out.writeBoolean(entry.digest != null);
+                    if (entry.digest != null) {
+                        out.write(entry.digest);
+                    }
+                }
+            }
+            run.clear();
+        }
+    }
+
+    /**
+     * An entry with its encoded path and path hash, ordered as in the
+     * snapshot.
+     */
+    private static final class SortedEntry implements Comparable<SortedEntry> {
+
+        final long hash;
+        final byte[] path;
+        final long size;
+        final long mtime;
+        final long crtime;
+        final long metaAddr;
+        final long objectId;
+        // Null if the file is unreadable
+        final byte[] digest;
+
+        SortedEntry(long pHash, byte[] pPath, BaselineEntry pEntry) {
+            this(pHash, pPath, pEntry.getSize(), pEntry.getMtime(), pEntry.getCrtime(), pEntry.getMetaAddr(), pEntry.getObjectId(), pEntry.getDigest());
+        }
+
+        SortedEntry(long pHash, byte[] pPath, long pSize, long pMtime, long pCrtime, long pMetaAddr, long pObjectId, byte[] pDigest) {
+            hash = pHash;
+            path = pPath;
+            size = pSize;
+            mtime = pMtime;
+            crtime = pCrtime;
+            metaAddr = pMetaAddr;
+            objectId = pObjectId;
+            digest = pDigest;
+        }
+
+        @Override
+        public int compareTo(SortedEntry pOther) {
+            int result = Long.compareUnsigned(hash, pOther.hash);
+            if (result != 0) {
+                return result;
+            }
+            //Paths with the same hash are only ordered to make the snapshot reproducible
+            for (int i = 0; i < Math.min(path.length, pOther.path.length); i++) {
+                result = Integer.compare(path[i] & 0xFF, pOther.path[i] & 0xFF);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return Integer.compare(path.length, pOther.path.length);
+        }
+    }
+
+    /**
+     * Reads a sorted run entry by entry.
+     */
+    private abstract static class RunReader implements Comparable<RunReader>, Closeable {
+
+        SortedEntry current;
+
+        /**
+         * @return False if the run is exhausted.
+         */
+        abstract boolean next() throws IOException;
+
+        @Override
+        public int compareTo(RunReader pOther) {
+            return current.compareTo(pOther.current);
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static final class MemoryRunReader extends RunReader {
+
+        private final Iterator<SortedEntry> entries;
+
+        MemoryRunReader(List<SortedEntry> pEntries) {
+            entries = pEntries.iterator();
+        }
+
+        @Override
+        boolean next() {
+            current = entries.hasNext() ? entries.next() : null;
+            return current != null;
+        }
+    }
+
+    private static final class FileRunReader extends RunReader {
+
+        private final DataInputStream in;
+        private final int digestLength;
+
+        FileRunReader(Path pRunFile, int pDigestLength) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(pRunFile)));
+            digestLength = pDigestLength;
+        }
+
+        @Override
+        boolean next() throws IOException {
+            long hash;
+            try {
+                hash = in.readLong();
+            } catch (EOFException ex) {
+                current = null;
+                return false;
+            }
+            byte[] path = new byte[in.readInt()];
+            in.readFully(path);
+            long size = in.readLong();
+            long mtime = in.readLong();
+            long crtime = in.readLong();
+            long metaAddr = in.readLong();
+            long objectId = in.readLong();
+            byte[] digest = null;
+            if (in.readBoolean()) {
+                digest = new byte[digestLength];
+                in.readFully(digest);
+            }
+            current = new SortedEntry(hash, path, size, mtime, crtime, metaAddr, objectId, digest);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
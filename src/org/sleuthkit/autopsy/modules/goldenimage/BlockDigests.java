@@ -0,0 +1,99 @@
+/*
+ * BlockDigests
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The digests of the fixed-size blocks of a file and the Merkle root over
+ * them. Two files of the same size and block size can be compared block by
+ * block to find the byte ranges which changed.
+ */
+final class BlockDigests {
+
+    // Maximum amount of ranges which are listed in a description
+    private static final int MAX_DESCRIBED_RANGES = 20;
+
+    private final DigestAlgorithm algorithm;
+    private final long fileSize;
+    private final long blockSize;
+    private final String[] blocks;
+    private final String root;
+
+    BlockDigests(DigestAlgorithm pAlgorithm, long pFileSize, long pBlockSize, String[] pBlocks) {
+        algorithm = pAlgorithm;
+        fileSize = pFileSize;
+        blockSize = pBlockSize;
+        blocks = pBlocks;
+        root = merkleRoot(pAlgorithm, pBlocks);
+    }
+
+    DigestAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    String getRoot() {
+        return root;
+    }
+
+    /**
+     * Describes the byte ranges which differ from the blocks of another file
+     * of the same size, e.g. "0x0-0x1000000, 0x3000000-0x3400000".
+     */
+    String describeChangedRanges(BlockDigests pOther) {
+        StringBuilder ranges = new StringBuilder();
+        int rangeCount = 0;
+        int i = 0;
+        while (i < blocks.length) {
+            if (i < pOther.blocks.length && blocks[i].equals(pOther.blocks[i])) {
+                i++;
+                continue;
+            }
+
+            int first = i;
+            while (i < blocks.length && (i >= pOther.blocks.length || !blocks[i].equals(pOther.blocks[i]))) {
+                i++;
+            }
+
+            if (rangeCount == MAX_DESCRIBED_RANGES) {
+                ranges.append(", ...");
+                break;
+            }
+            if (rangeCount > 0) {
+                ranges.append(", ");
+            }
+            ranges.append(String.format("0x%x-0x%x", first * blockSize, Math.min(i * blockSize, fileSize)));
+            rangeCount++;
+        }
+        return ranges.toString();
+    }
+
+    /**
+     * Combines the block digests pairwise into a binary hash tree and returns
+     * its root. A single block is its own root.
+     */
+    private static String merkleRoot(DigestAlgorithm pAlgorithm, String[] pBlocks) {
+        if (pBlocks.length == 0) {
+            return pAlgorithm.createDigester().digestToHex();
+        }
+
+        Digester digester = pAlgorithm.createDigester();
+        String[] level = pBlocks;
+        while (level.length > 1) {
+            String[] parents = new String[(level.length + 1) / 2];
+            for (int i = 0; i < parents.length; i++) {
+                byte[] left = level[i * 2].getBytes(StandardCharsets.US_ASCII);
+                digester.update(left, 0, left.length);
+                if (i * 2 + 1 < level.length) {
+                    byte[] right = level[i * 2 + 1].getBytes(StandardCharsets.US_ASCII);
+                    digester.update(right, 0, right.length);
+                }
+                parents[i] = digester.digestToHex();
+            }
+            level = parents;
+        }
+        return level[0];
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * CaseFile
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.List;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.TskCoreException;
+import org.sleuthkit.datamodel.TskFileRange;
+
+/**
+ * An ImageFile over a file of the case database.
+ */
+final class CaseFile implements ImageFile {
+
+    private final AbstractFile file;
+
+    private CaseFile(AbstractFile pFile) {
+        file = pFile;
+    }
+
+    /**
+     * @return The view of the file or null if the file is null.
+     */
+    static CaseFile of(AbstractFile pFile) {
+        return pFile != null ? new CaseFile(pFile) : null;
+    }
+
+    @Override
+    public long getId() {
+        return file.getId();
+    }
+
+    @Override
+    public long getDataSourceObjectId() {
+        return file.getDataSourceObjectId();
+    }
+
+    @Override
+    public String getParentPath() {
+        return file.getParentPath();
+    }
+
+    @Override
+    public String getName() {
+        return file.getName();
+    }
+
+    @Override
+    public long getSize() {
+        return file.getSize();
+    }
+
+    @Override
+    public long getMtime() {
+        return file.getMtime();
+    }
+
+    @Override
+    public long getCrtime() {
+        return file.getCrtime();
+    }
+
+    @Override
+    public long getCtime() {
+        return file.getCtime();
+    }
+
+    @Override
+    public long getMetaAddr() {
+        return file.getMetaAddr();
+    }
+
+    @Override
+    public boolean canRead() {
+        return file.canRead();
+    }
+
+    @Override
+    public int read(byte[] pBuffer, long pOffset, long pLength) throws TskCoreException {
+        return file.read(pBuffer, pOffset, pLength);
+    }
+
+    @Override
+    public long getImageOffset() {
+        try {
+            List<TskFileRange> ranges = file.getRanges();
+            return ranges == null || ranges.isEmpty() ? 0 : ranges.get(0).getByteStart();
+        } catch (TskCoreException ex) {
+            return 0;
+        }
+    }
+
+    @Override
+    public AbstractFile getAbstractFile() {
+        return file;
+    }
+}
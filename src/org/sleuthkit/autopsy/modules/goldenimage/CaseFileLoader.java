@@ -0,0 +1,48 @@
+/*
+ * CaseFileLoader
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * A FileLoader over the files of the case database.
+ */
+final class CaseFileLoader implements FileLoader {
+
+    private final SleuthkitCase sleuthkitCase;
+
+    CaseFileLoader(SleuthkitCase pCase) {
+        sleuthkitCase = pCase;
+    }
+
+    @Override
+    public ImageFile load(long pObjectId) throws TskCoreException {
+        return CaseFile.of(sleuthkitCase.getAbstractFileById(pObjectId));
+    }
+
+    /**
+     * Loads files by their object ids with a single query.
+     */
+    @Override
+    public List<ImageFile> load(List<Long> pObjectIds) throws TskCoreException {
+        if (pObjectIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        StringBuilder ids = new StringBuilder();
+        for (Long objectId : pObjectIds) {
+            ids.append(ids.length() == 0 ? "" : ",").append(objectId);
+        }
+        List<ImageFile> files = new ArrayList<>(pObjectIds.size());
+        for (AbstractFile file : sleuthkitCase.findAllFilesWhere("obj_id IN (" + ids + ")")) {
+            files.add(CaseFile.of(file));
+        }
+        return files;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * CaseResultSink
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.sleuthkit.autopsy.casemodule.services.TagsManager;
+import org.sleuthkit.datamodel.ContentTag;
+import org.sleuthkit.datamodel.TagName;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * A ResultSink which tags the files in the case database through the tags
+ * manager of the case.
+ */
+final class CaseResultSink implements ResultSink {
+
+    private final TagsManager tagsManager;
+    private final Map<String, TagName> tagNames = new HashMap<>();
+
+    /**
+     * @param pTagsManager The tags manager of the case
+     * @param pTagNames The tag names the results are tagged with, null if a
+     * tag name couldn't be added to the case
+     */
+    CaseResultSink(TagsManager pTagsManager, TagName... pTagNames) {
+        tagsManager = pTagsManager;
+        for (TagName tagName : pTagNames) {
+            if (tagName != null) {
+                tagNames.put(tagName.getDisplayName(), tagName);
+            }
+        }
+    }
+
+    @Override
+    public void addTag(ImageFile pFile, String pTagName, String pComment) throws TskCoreException {
+        TagName tagName = tagNames.get(pTagName);
+        if (tagName == null) {
+            throw new TskCoreException("The tag name " + pTagName + " isn't part of the case.");
+        }
+        tagsManager.addContentTag(pFile.getAbstractFile(), tagName, pComment);
+    }
+
+    @Override
+    public List<ContentTag> getTags(ImageFile pFile) throws TskCoreException {
+        return tagsManager.getContentTagsByContent(pFile.getAbstractFile());
+    }
+
+    @Override
+    public void deleteTag(ContentTag pTag) throws TskCoreException {
+        tagsManager.deleteContentTag(pTag);
+    }
+}
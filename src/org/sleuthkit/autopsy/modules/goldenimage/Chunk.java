@@ -0,0 +1,24 @@
+/*
+ * Chunk
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+/**
+ * A buffer of the ChunkPool holding a part of a file, which the read stage of
+ * the ComparisonPipeline hands over to the digest stage.
+ */
+final class Chunk {
+
+    static final int SIZE = 1024 * 1024;
+
+    final byte[] buffer;
+    int length;
+
+    // Index of the file of a pair the chunk belongs to (0 golden, 1 dirty)
+    int fileIndex;
+
+    Chunk(int pSize) {
+        buffer = new byte[pSize];
+    }
+}
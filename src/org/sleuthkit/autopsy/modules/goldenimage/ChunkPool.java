@@ -0,0 +1,64 @@
+/*
+ * ChunkPool
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounded pool of read buffers. It is the queue between the read and the
+ * digest stage of the ComparisonPipeline: The read stage blocks as soon as
+ * all chunks wait for the digest stage. Buffers are allocated lazily and
+ * reused afterwards.
+ */
+final class ChunkPool {
+
+    private final int capacity;
+    private final Semaphore available;
+    private final ConcurrentLinkedQueue<Chunk> free = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param pCapacity The maximum amount of chunks (at least 2)
+     */
+    ChunkPool(int pCapacity) {
+        capacity = Math.max(2, pCapacity);
+        available = new Semaphore(capacity);
+    }
+
+    /**
+     * Takes a chunk out of the pool, waits if none is available.
+     */
+    Chunk acquire() throws InterruptedException {
+        available.acquire();
+        return take();
+    }
+
+    /**
+     * Takes two chunks out of the pool at once, so a reader which needs two
+     * chunks can't block while holding one of them.
+     */
+    Chunk[] acquirePair() throws InterruptedException {
+        available.acquire(2);
+        return new Chunk[]{take(), take()};
+    }
+
+    void release(Chunk pChunk) {
+        free.offer(pChunk);
+        available.release();
+    }
+
+    /**
+     * @return The amount of chunks which are read or wait for the digest
+     * stage.
+     */
+    int getChunksInUse() {
+        return capacity - available.availablePermits();
+    }
+
+    private Chunk take() {
+        Chunk chunk = free.poll();
+        return chunk != null ? chunk : new Chunk(Chunk.SIZE);
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * ComparisonDriver
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Feeds the files of a comparison to the ComparisonPipeline in its phases:
+ * the pairs of the DiffEngine or the dirty image files looked up in the
+ * baseline snapshots, then the deleted and moved files, and finally waits
+ * until all results are written. Used by the ingest module and by the
+ * harness of the benchmarks, which compares synthetic images with it.
+ */
+final class ComparisonDriver {
+
+    private static final Logger logger = Logger.getLogger(ComparisonDriver.class.getName());
+
+    // Amount of files which are loaded with one query while detecting moved files
+    private static final int MOVE_BATCH_SIZE = 500;
+
+    private final ComparisonPipeline pipeline;
+    private final ResultWriter resultWriter;
+    private final FileLoader fileLoader;
+    private final BooleanSupplier jobCancelled;
+    private final ComparisonProgress progress;
+
+    /**
+     * @param pFileLoader Loads the files the MoveDetector indexed and the
+     * golden image files of a baseline snapshot
+     * @param pJobCancelled Returns true once the job is cancelled
+     */
+    ComparisonDriver(ComparisonPipeline pPipeline, ResultWriter pResultWriter, FileLoader pFileLoader, BooleanSupplier pJobCancelled,
+            ComparisonProgress pProgress) {
+        pipeline = pPipeline;
+        resultWriter = pResultWriter;
+        fileLoader = pFileLoader;
+        jobCancelled = pJobCancelled;
+        progress = pProgress;
+    }
+
+    /**
+     * Walks both images in path order and passes the pairs to the pipeline.
+     * submit() blocks while too many pairs are in flight.
+     *
+     * @return False if the job was cancelled.
+     */
+    boolean compareImages(DiffEngine pDiffEngine) throws TskCoreException, InterruptedException {
+        FilePair filePair;
+        while ((filePair = pDiffEngine.next()) != null) {
+            //Stop processing if requested
+            if (jobCancelled.getAsBoolean()) {
+                cancel();
+                return false;
+            }
+
+            pipeline.submit(filePair);
+            progress.update();
+        }
+        return true;
+    }
+
+    /**
+     * Looks up every file of the dirty image in the baseline snapshots. If
+     * the dirty image is compared against a single baseline, the entries
+     * which weren't found afterwards were deleted: They are tagged if the
+     * golden image of the snapshot is part of the case, otherwise their paths
+     * are listed in a report.
+     *
+     * @param pGoldenImageInCase True if the files of the single baseline can
+     * be loaded by their object ids
+     * @param pDeletedFilesReport The report of the deleted files which can't
+     * be tagged, it's deleted if there are none
+     *
+     * @return False if the job was cancelled.
+     */
+    boolean compareBaseline(BaselineSet pBaselines, FileSource pDirtyImage, boolean pGoldenImageInCase, Path pDeletedFilesReport)
+            throws TskCoreException, InterruptedException, IOException {
+        BitSet matched = new BitSet(pBaselines.get(0).getEntryCount());
+        int[] indexes = new int[pBaselines.size()];
+        ImageFile dirtyImageFile;
+        while ((dirtyImageFile = pDirtyImage.next()) != null) {
+            //Stop processing if requested
+            if (jobCancelled.getAsBoolean()) {
+                cancel();
+                return false;
+            }
+
+            BaselineEntry[] entries = pBaselines.find(FileCursor.getPath(dirtyImageFile), indexes);
+            if (entries == null) {
+                pipeline.submit(new FilePair((ImageFile) null, dirtyImageFile));
+            } else if (removeUnreadable(entries) && dirtyImageFile.canRead()) {
+                if (indexes[0] >= 0) {
+                    matched.set(indexes[0]);
+                }
+                pipeline.submit(new FilePair(entries, dirtyImageFile));
+            }
+            progress.update();
+        }
+
+        if (pBaselines.size() == 1) {
+            //The dirty image files have to be indexed before the deleted files can be looked up by their content
+            if (pipeline.getMoveDetector() != null && !awaitPipeline()) {
+                return false;
+            }
+            return reportDeletedFiles(pBaselines.get(0), matched, pGoldenImageInCase, pDeletedFilesReport);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until all pairs are compared, resolves the moved files and
+     * writes the remaining results.
+     *
+     * @return False if the job was cancelled.
+     */
+    boolean finish() throws TskCoreException, InterruptedException {
+        if (!awaitPipeline()) {
+            return false;
+        }
+        if (pipeline.getMoveDetector() != null && !resolveMoves()) {
+            return false;
+        }
+        pipeline.shutdown();
+
+        progress.phase("Writing Results");
+        while (!resultWriter.finish(1, TimeUnit.SECONDS)) {
+            if (jobCancelled.getAsBoolean()) {
+                cancel();
+                return false;
+            }
+        }
+        progress.update();
+        return true;
+    }
+
+    /**
+     * Waits until all submitted pairs are compared and updates the progress.
+     *
+     * @return False if the job was cancelled.
+     */
+    boolean awaitPipeline() throws InterruptedException {
+        while (!pipeline.awaitCompletion(1, TimeUnit.SECONDS)) {
+            progress.update();
+            if (jobCancelled.getAsBoolean()) {
+                cancel();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the comparison and writes the results which are already
+     * buffered.
+     */
+    void cancel() throws InterruptedException {
+        pipeline.shutdownNow();
+        progress.phase("Writing Results");
+        resultWriter.finish(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drops the entries whose golden image file couldn't be read. If none is
+     * left, the dirty image file isn't compared, as in a comparison against
+     * the golden image itself.
+     *
+     * @return True if an entry is left.
+     */
+    private static boolean removeUnreadable(BaselineEntry[] pEntries) {
+        boolean readable = false;
+        for (int i = 0; i < pEntries.length; i++) {
+            if (pEntries[i] != null && pEntries[i].isUnreadable()) {
+                pEntries[i] = null;
+            }
+            readable |= pEntries[i] != null;
+        }
+        return readable;
+    }
+
+    /**
+     * Tags or lists the entries of a baseline snapshot which don't exist on
+     * the dirty image. Entries whose content exists at another path of the
+     * dirty image are reported as moved instead.
+     *
+     * @return False if the job was cancelled.
+     */
+    private boolean reportDeletedFiles(BaselineSnapshot pBaseline, BitSet pMatched, boolean pGoldenImageInCase, Path pDeletedFilesReport)
+            throws TskCoreException, InterruptedException, IOException {
+        int reportedFiles = 0;
+        try (BufferedWriter report = Files.newBufferedWriter(pDeletedFilesReport, StandardCharsets.UTF_8)) {
+            for (int index = pMatched.nextClearBit(0); index < pBaseline.getEntryCount(); index = pMatched.nextClearBit(index + 1)) {
+                if (jobCancelled.getAsBoolean()) {
+                    cancel();
+                    return false;
+                }
+                if (pBaseline.isUnreadable(index)) {
+                    continue;
+                }
+
+                MoveDetector moveDetector = pipeline.getMoveDetector();
+                if (moveDetector != null) {
+                    BaselineEntry entry = pBaseline.getEntry(index);
+                    long dirtyImageFileId = MoveDetector.isCandidate(entry.getSize())
+                            ? moveDetector.match(entry.getDigest(), entry.getSize()) : BaselineEntry.NO_OBJECT_ID;
+                    if (dirtyImageFileId != BaselineEntry.NO_OBJECT_ID) {
+                        pipeline.submitMoved(fileLoader.load(dirtyImageFileId), entry.getPath(), entry.getObjectId());
+                        continue;
+                    }
+                }
+
+                ImageFile goldenImageFile = pGoldenImageInCase ? fileLoader.load(pBaseline.getObjectId(index)) : null;
+                if (goldenImageFile != null) {
+                    pipeline.submitDeleted(goldenImageFile);
+                } else {
+                    report.write(pBaseline.getPath(index));
+                    report.newLine();
+                    reportedFiles++;
+                }
+            }
+        }
+
+        if (reportedFiles > 0) {
+            logger.log(Level.INFO, "{0} files of the baseline snapshot don''t exist on the dirty image, see {1}",
+                    new Object[]{reportedFiles, pDeletedFilesReport});
+        } else {
+            Files.delete(pDeletedFilesReport);
+        }
+        return true;
+    }
+
+    /**
+     * Looks up the golden image files without a path match by their content
+     * and tags the dirty image files which weren't matched as new. Called
+     * once the files of both images are compared and indexed.
+     *
+     * @return False if the job was cancelled.
+     */
+    private boolean resolveMoves() throws TskCoreException, InterruptedException {
+        MoveDetector moveDetector = pipeline.getMoveDetector();
+        progress.phase("Detecting Moved Files");
+
+        List<Long> batch = new ArrayList<>(MOVE_BATCH_SIZE);
+        for (int index = 0; index < moveDetector.getGoldenImageFileCount(); index++) {
+            batch.add(moveDetector.getGoldenImageFile(index));
+            if (batch.size() == MOVE_BATCH_SIZE || index == moveDetector.getGoldenImageFileCount() - 1) {
+                if (jobCancelled.getAsBoolean()) {
+                    cancel();
+                    return false;
+                }
+                for (ImageFile goldenImageFile : fileLoader.load(batch)) {
+                    pipeline.submitMoveLookup(goldenImageFile);
+                }
+                batch.clear();
+            }
+        }
+        if (!awaitPipeline()) {
+            return false;
+        }
+
+        for (int index = moveDetector.nextUnmatched(0); index >= 0; index = moveDetector.nextUnmatched(index + 1)) {
+            batch.add(moveDetector.getDirtyImageFile(index));
+            if (batch.size() == MOVE_BATCH_SIZE) {
+                if (jobCancelled.getAsBoolean()) {
+                    cancel();
+                    return false;
+                }
+                for (ImageFile dirtyImageFile : fileLoader.load(batch)) {
+                    pipeline.submitNew(dirtyImageFile);
+                }
+                batch.clear();
+            }
+        }
+        for (ImageFile dirtyImageFile : fileLoader.load(batch)) {
+            pipeline.submitNew(dirtyImageFile);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * ComparisonJournal
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.stream.LongStream;
+import org.sleuthkit.autopsy.coreutils.Logger;
+
+/**
+ * The progress of a comparison in a small append-only file in the case
+ * folder, so an interrupted job (cancelled or crashed) resumes where it
+ * stopped instead of starting from zero. The journal records
+ * <ul>
+ * <li>the files whose result was written to the case database (after every
+ * batch of the ResultWriter), which are skipped when the job resumes</li>
+ * <li>the digests of files whose result was still pending, so they don't
+ * have to be hashed again</li>
+ * </ul>
+ * The header holds the configuration of the job. A journal of another
+ * configuration is discarded, as is the journal of a job which finished.
+ * A record cut off by a crash is ignored.
+ *
+ * Only the ids of the completed files are loaded, as a sorted array of
+ * primitives. The digests stay in the journal file, it's only indexed by
+ * the object id and offset of the pending records, and a lookup reads the
+ * record at its offset.
+ */
+final class ComparisonJournal implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(ComparisonJournal.class.getName());
+
+    static final String EXTENSION = ".journal";
+
+    private static final int MAGIC = 0x47494A31; // "GIJ1"
+    private static final byte COMPLETED = 'C';
+    private static final byte DIGESTS = 'D';
+
+    private static final long[] NONE = new long[0];
+
+    private final Path file;
+    private final DataOutputStream out;
+    //Sorted without duplicates
+    private long[] completedFiles = NONE;
+    //Sorted by object id, the offset of the last record of every file
+    private long[] pendingDigestFiles = NONE;
+    private long[] pendingDigestOffsets = NONE;
+    private FileChannel digestChannel = null;
+
+    /**
+     * Opens the journal of a job and loads its records if it was written by
+     * a job with the same configuration.
+     *
+     * @param pFile The journal file
+     * @param pConfiguration Describes everything which changes the results
+     * of the job (images, baselines, algorithms)
+     */
+    ComparisonJournal(Path pFile, String pConfiguration) throws IOException {
+        file = pFile;
+        if (Files.exists(pFile)) {
+            long validLength = load(pConfiguration);
+            if (validLength < 0) {
+                completedFiles = NONE;
+                pendingDigestFiles = NONE;
+                pendingDigestOffsets = NONE;
+                Files.delete(pFile);
+            } else {
+                //New records are appended after the last complete record
+                try (FileChannel channel = FileChannel.open(pFile, StandardOpenOption.WRITE)) {
+                    channel.truncate(validLength);
+                }
+                if (pendingDigestFiles.length > 0) {
+                    digestChannel = FileChannel.open(pFile, StandardOpenOption.READ);
+                }
+            }
+        }
+
+        boolean created = !Files.exists(pFile);
+        if (pFile.getParent() != null) {
+            Files.createDirectories(pFile.getParent());
+        }
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(pFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        if (created) {
+            out.writeInt(MAGIC);
+            out.writeUTF(pConfiguration);
+            out.flush();
+        }
+    }
+
+    /**
+     * @return True if the job resumes an interrupted job.
+     */
+    boolean isResumed() {
+        return completedFiles.length > 0 || pendingDigestFiles.length > 0;
+    }
+
+    /**
+     * @return The amount of files whose result was written by the
+     * interrupted job.
+     */
+    int getCompletedFileCount() {
+        return completedFiles.length;
+    }
+
+    /**
+     * @return True if the result of the file was written by the interrupted
+     * job.
+     */
+    boolean isCompleted(long pObjectId) {
+        return Arrays.binarySearch(completedFiles, pObjectId) >= 0;
+    }
+
+    /**
+     * Copies the digests the interrupted job computed for a file.
+     *
+     * @return True if the digests were copied.
+     */
+    boolean getDigests(long pObjectId, byte[][] pDigests) {
+        int index = Arrays.binarySearch(pendingDigestFiles, pObjectId);
+        if (index < 0) {
+            return false;
+        }
+        int recordLength = 1 + Long.BYTES + 1;
+        for (byte[] digest : pDigests) {
+            recordLength += 1 + digest.length;
+        }
+        ByteBuffer record = ByteBuffer.allocate(recordLength);
+        try {
+            long position = pendingDigestOffsets[index];
+            while (record.hasRemaining()) {
+                if (digestChannel.read(record, position + record.position()) < 0) {
+                    return false;
+                }
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Couldn't read the comparison journal " + file, ex);
+            return false;
+        }
+        record.flip();
+        if (record.get() != DIGESTS || record.getLong() != pObjectId || (record.get() & 0xFF) != pDigests.length) {
+            return false;
+        }
+        int start = record.position();
+        for (byte[] digest : pDigests) {
+            if ((record.get() & 0xFF) != digest.length) {
+                return false;
+            }
+            record.position(record.position() + digest.length);
+        }
+        record.position(start);
+        for (byte[] digest : pDigests) {
+            record.get();
+            record.get(digest);
+        }
+        return true;
+    }
+
+    /**
+     * Records the digests of a file whose result isn't written yet.
+     */
+    synchronized void recordDigests(long pObjectId, byte[][] pDigests) {
+        try {
+            out.writeByte(DIGESTS);
+            out.writeLong(pObjectId);
+            out.writeByte(pDigests.length);
+            for (byte[] digest : pDigests) {
+                out.writeByte(digest.length);
+                out.write(digest);
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Couldn't write the comparison journal " + file, ex);
+        }
+    }
+
+    /**
+     * Records a file whose result was written. Takes effect with the next
+     * flush.
+     */
+    synchronized void recordCompleted(long pObjectId) {
+        try {
+            out.writeByte(COMPLETED);
+            out.writeLong(pObjectId);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Couldn't write the comparison journal " + file, ex);
+        }
+    }
+
+    /**
+     * Writes the buffered records to the disk, called after every batch of
+     * results.
+     */
+    synchronized void flush() {
+        try {
+            out.flush();
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Couldn't write the comparison journal " + file, ex);
+        }
+    }
+
+    /**
+     * Closes the journal, it's kept for the next job.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            out.close();
+        } finally {
+            if (digestChannel != null) {
+                digestChannel.close();
+            }
+        }
+    }
+
+    /**
+     * Closes and deletes the journal of a job which finished.
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * @return The length of the header in bytes, measured with the modified
+     * UTF-8 of writeUTF, which differs from UTF-8 for \u0000 and
+     * supplementary characters.
+     */
+    private static long headerLength(String pConfiguration) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        try (DataOutputStream headerOut = new DataOutputStream(header)) {
+            headerOut.writeInt(MAGIC);
+            headerOut.writeUTF(pConfiguration);
+        }
+        return header.size();
+    }
+
+    /**
+     * @return The length of the complete records or -1 if the journal
+     * belongs to another configuration.
+     */
+    private long load(String pConfiguration) throws IOException {
+        long validLength = -1;
+        LongStream.Builder completed = LongStream.builder();
+        LongStream.Builder digestFiles = LongStream.builder();
+        LongStream.Builder digestOffsets = LongStream.builder();
+        byte[] digest = new byte[255];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || !in.readUTF().equals(pConfiguration)) {
+                return -1;
+            }
+            validLength = headerLength(pConfiguration);
+            while (true) {
+                byte type = in.readByte();
+                long objectId = in.readLong();
+                if (type == COMPLETED) {
+                    completed.add(objectId);
+                    validLength += 1 + Long.BYTES;
+                } else if (type == DIGESTS) {
+                    int count = in.readUnsignedByte();
+                    long recordLength = 1 + Long.BYTES + 1;
+                    for (int i = 0; i < count; i++) {
+                        int length = in.readUnsignedByte();
+                        in.readFully(digest, 0, length);
+                        recordLength += 1 + length;
+                    }
+                    digestFiles.add(objectId);
+                    digestOffsets.add(validLength);
+                    validLength += recordLength;
+                } else {
+                    logger.log(Level.WARNING, "The comparison journal {0} is corrupt, it''s read up to the corrupt record.", file);
+                    break;
+                }
+            }
+        } catch (EOFException ex) {
+            //The last record may be cut off by a crash
+        } finally {
+            if (validLength >= 0) {
+                index(completed.build().toArray(), digestFiles.build().toArray(), digestOffsets.build().toArray());
+            }
+        }
+        return validLength;
+    }
+
+    /**
+     * Sorts the loaded records. Only the last digest record of a file is
+     * kept, and none of a completed file.
+     */
+    private void index(long[] pCompleted, long[] pDigestFiles, long[] pDigestOffsets) {
+        Arrays.sort(pCompleted);
+        int completedCount = 0;
+        for (int i = 0; i < pCompleted.length; i++) {
+            if (completedCount == 0 || pCompleted[completedCount - 1] != pCompleted[i]) {
+                pCompleted[completedCount++] = pCompleted[i];
+            }
+        }
+        completedFiles = Arrays.copyOf(pCompleted, completedCount);
+
+        //The offsets are unique, so sorting by id and offset keeps the last record of a file at the end of its run
+        sortByFile(pDigestFiles, pDigestOffsets);
+        int digestCount = 0;
+        for (int i = 0; i < pDigestFiles.length; i++) {
+            boolean last = i + 1 == pDigestFiles.length || pDigestFiles[i + 1] != pDigestFiles[i];
+            if (last && !isCompleted(pDigestFiles[i])) {
+                pDigestFiles[digestCount] = pDigestFiles[i];
+                pDigestOffsets[digestCount] = pDigestOffsets[i];
+                digestCount++;
+            }
+        }
+        pendingDigestFiles = Arrays.copyOf(pDigestFiles, digestCount);
+        pendingDigestOffsets = Arrays.copyOf(pDigestOffsets, digestCount);
+    }
+
+    /**
+     * Heapsorts the records by object id and offset, in place and without
+     * boxing.
+     */
+    private static void sortByFile(long[] pFiles, long[] pOffsets) {
+        for (int i = pFiles.length / 2 - 1; i >= 0; i--) {
+            siftDown(pFiles, pOffsets, i, pFiles.length);
+        }
+        for (int end = pFiles.length - 1; end > 0; end--) {
+            swap(pFiles, pOffsets, 0, end);
+            siftDown(pFiles, pOffsets, 0, end);
+        }
+    }
+
+    private static void siftDown(long[] pFiles, long[] pOffsets, int pIndex, int pEnd) {
+        int parent = pIndex;
+        while (2 * parent + 1 < pEnd) {
+            int child = 2 * parent + 1;
+            if (child + 1 < pEnd && compare(pFiles, pOffsets, child + 1, child) > 0) {
+                child++;
+            }
+            if (compare(pFiles, pOffsets, child, parent) <= 0) {
+                return;
+            }
+            swap(pFiles, pOffsets, parent, child);
+            parent = child;
+        }
+    }
+
+    private static int compare(long[] pFiles, long[] pOffsets, int pFirst, int pSecond) {
+        int result = Long.compare(pFiles[pFirst], pFiles[pSecond]);
+        return result != 0 ? result : Long.compare(pOffsets[pFirst], pOffsets[pSecond]);
+    }
+
+    private static void swap(long[] pFiles, long[] pOffsets, int pFirst, int pSecond) {
+        long objectId = pFiles[pFirst];
+        pFiles[pFirst] = pFiles[pSecond];
+        pFiles[pSecond] = objectId;
+        long offset = pOffsets[pFirst];
+        pOffsets[pFirst] = pOffsets[pSecond];
+        pOffsets[pSecond] = offset;
+    }
+}
@@ -0,0 +1,1363 @@
+/*
+ * ComparisonPipeline
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Compares the file pairs of the DiffEngine in separate, independently sized
+ * stages:
+ * <ul>
+ * <li>Lookup: submit() is called by the thread walking the DiffEngine. It
+ * resolves pairs which don't need their content compared (added, deleted or
+ * metadata differs) right away.</li>
+ * <li>Read: Blocking reads of the file content into chunks of the
+ * ChunkPool, optionally ordered by their position in the image by the
+ * ReadScheduler.</li>
+ * <li>Digest: Hashing or comparing the chunks. The chunks of a file are
+ * processed in order, but chunks of different files on all threads.</li>
+ * <li>Result write: The ResultWriter tags the files.</li>
+ * </ul>
+ * The stages are connected by bounded queues (the pairs in flight, the
+ * chunk pool and the result queue), so a slow stage throttles the stages in
+ * front of it. If the job resumes an interrupted job, the files whose result
+ * is in the ComparisonJournal are skipped and the digests it recorded aren't
+ * computed again. Pairs whose result of the last run is in the
+ * ComparisonState and whose metadata didn't change are skipped as well.
+ */
+final class ComparisonPipeline {
+
+    private static final Logger logger = Logger.getLogger(ComparisonPipeline.class.getName());
+
+    // Marks the end of the chunks of a file or block
+    private static final Chunk END = new Chunk(0);
+
+    // Interval in milliseconds in which the lookup stage checks for cancellation while all pairs are in flight
+    private static final long CANCELLATION_INTERVAL = 100;
+
+    private final MetadataFilter metadataFilter;
+    private final ResultWriter resultWriter;
+    private final String deletedTag;
+    private final ExecutorService readStage;
+    private final ReadScheduler readScheduler;
+    private final ExecutorService digestStage;
+    private final ChunkPool chunkPool;
+    private final Semaphore pairsInFlight;
+    private final int maxPairsInFlight;
+
+    private final boolean directCompare;
+    private final long largeFileThreshold;
+    private final long blockSize;
+    private final List<DigestAlgorithm> algorithms;
+    private final List<DigestAlgorithm> directCompareAlgorithms;
+    private final List<DigestAlgorithm> baselineAlgorithms;
+    private final BaselineSet baselines;
+    private final DigestResolver digestResolver;
+    private final FileLoader fileLoader;
+    private final ComparisonJournal journal;
+    private final ComparisonState comparisonState;
+    private final MoveDetector moveDetector;
+    private final List<DigestAlgorithm> moveAlgorithms;
+    private final ConcurrentLinkedQueue<HashState> hashStates = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<HashState> directCompareStates = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<HashState> blockStates = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<HashState> baselineStates = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<HashState> moveStates = new ConcurrentLinkedQueue<>();
+
+    // Completed work, counted by all stages without contention
+    private final LongAdder completedFiles = new LongAdder();
+    private final LongAdder readBytes = new LongAdder();
+    private final AtomicLong failedComparisons = new AtomicLong();
+    private final BooleanSupplier jobCancelled;
+    private final PipelineMetrics metrics;
+    private volatile boolean cancelled = false;
+
+    /**
+     * @param pSettings The settings of the ingest job
+     * @param pResultWriter The result write stage
+     * @param pDeletedTag The name of the tag for golden image files which don't exist on
+     * the dirty image
+     * @param pBaselines The baseline snapshots the dirty image is compared
+     * against, or null
+     * @param pDigestResolver Finds the digests which don't have to be
+     * computed
+     * @param pFileLoader Loads the dirty image files of moved files
+     * @param pJournal The journal of the job or null
+     * @param pState The results of the last run or null
+     * @param pJobCancelled Returns true once the ingest job is cancelled,
+     * checked by the read and digest loops for every chunk
+     * @param pMetrics Receives the latencies, bytes and errors of the stages
+     */
+    ComparisonPipeline(GoldenImageModuleIngestJobSettings pSettings, ResultWriter pResultWriter, String pDeletedTag, BaselineSet pBaselines,
+            DigestResolver pDigestResolver, FileLoader pFileLoader, ComparisonJournal pJournal, ComparisonState pState, BooleanSupplier pJobCancelled, PipelineMetrics pMetrics) {
+        metadataFilter = new MetadataFilter(pSettings);
+        resultWriter = pResultWriter;
+        deletedTag = pDeletedTag;
+
+        directCompare = pSettings.isDirectCompare();
+        largeFileThreshold = pSettings.getLargeFileThreshold();
+        blockSize = pSettings.getBlockSize();
+        algorithms = pSettings.getDigestAlgorithms();
+        directCompareAlgorithms = pSettings.isRecordDigests() ? algorithms : Collections.<DigestAlgorithm>emptyList();
+        baselines = pBaselines;
+        digestResolver = pDigestResolver;
+        fileLoader = pFileLoader;
+        journal = pJournal;
+        comparisonState = pState;
+        jobCancelled = pJobCancelled;
+        metrics = pMetrics;
+        baselineAlgorithms = pBaselines != null ? pSettings.getDigestAlgorithms(pBaselines.getAlgorithm()) : algorithms;
+        //Deleted files are only reported if there is a single golden image
+        moveDetector = pSettings.isDetectMoves() && (pBaselines == null || pBaselines.size() == 1) ? new MoveDetector() : null;
+        moveAlgorithms = pBaselines != null ? baselineAlgorithms : algorithms;
+
+        maxPairsInFlight = Math.max(1, pSettings.getMaxPairsInFlight());
+        pairsInFlight = new Semaphore(maxPairsInFlight);
+        chunkPool = new ChunkPool(pSettings.getReadAheadChunks());
+        readStage = pSettings.isVirtualReadThreads() ? newVirtualThreadExecutor(pSettings.getReadThreads())
+                : Executors.newFixedThreadPool(Math.max(1, pSettings.getReadThreads()), threadFactory("GoldenImage-read"));
+        readScheduler = new ReadScheduler(readStage, pSettings.isOrderReadsByOffset());
+        digestStage = Executors.newFixedThreadPool(Math.max(1, pSettings.getDigestThreads()), threadFactory("GoldenImage-digest"));
+    }
+
+    /**
+     * Lookup stage. Resolves a pair of the DiffEngine or passes it on to the
+     * read stage. Waits while the maximum amount of pairs is in flight.
+     */
+    void submit(FilePair pPair) throws InterruptedException {
+        ImageFile goldenImageFile = pPair.getGoldenImageFile();
+        ImageFile dirtyImageFile = pPair.getDirtyImageFile();
+
+        //The interrupted job already wrote the result of the pair
+        if (isCompleted(goldenImageFile) || isCompleted(dirtyImageFile)) {
+            completedFiles.add(pPair.getFileCount());
+            return;
+        }
+
+        //The result of the last run still holds if the metadata of the files didn't change
+        if (comparisonState != null && comparisonState.keepUnchanged(goldenImageFile, dirtyImageFile)) {
+            completedFiles.add(pPair.getFileCount());
+            return;
+        }
+
+        if (pPair.isDirtyOnly()) {
+            //The file may have been moved, so it's only new if no golden image file has its content
+            if (moveDetector != null && MoveDetector.isCandidate(dirtyImageFile.getSize()) && dirtyImageFile.canRead()) {
+                PairJob job = new MoveIndexJob(pPair);
+                if (acquirePair()) {
+                    job.schedule();
+                }
+                return;
+            }
+            writeResult(pPair, newFileResult(dirtyImageFile));
+            return;
+        }
+
+        if (pPair.getBaselineEntries() != null) {
+            submitBaseline(pPair);
+            return;
+        }
+
+        //Nothing to compare if the golden image file can't be read
+        if (!goldenImageFile.canRead()) {
+            completedFiles.add(pPair.getFileCount());
+            return;
+        }
+
+        //Golden image files without a path match are looked up by their content once all dirty image files are indexed
+        if (dirtyImageFile == null && moveDetector != null && MoveDetector.isCandidate(goldenImageFile.getSize())) {
+            moveDetector.addGoldenImageFile(goldenImageFile.getId());
+            return;
+        }
+
+        //Check if dirtyImageFile exists & is readable
+        if (dirtyImageFile == null || !dirtyImageFile.canRead()) {
+            writeResult(pPair, new ComparisonResult(goldenImageFile, deletedTag, "The file exists on the Golden Image, but not on the Dirty Image."));
+            return;
+        }
+
+        //Pre-filter: Files with different metadata are changed, no need to read their content
+        String difference = metadataFilter.findDifference(goldenImageFile, dirtyImageFile);
+        if (difference != null) {
+            writeResult(pPair, new ComparisonResult(dirtyImageFile, GoldenImageIngestModuleFactory.giTagChangedName, difference, goldenImageFile, null));
+            return;
+        }
+
+        PairJob job;
+        if (directCompare) {
+            job = new DirectCompareJob(pPair);
+        } else if (goldenImageFile.getSize() >= largeFileThreshold) {
+            job = new BlockHashJob(pPair);
+        } else {
+            job = new HashJob(pPair);
+        }
+
+        if (acquirePair()) {
+            job.schedule();
+        }
+    }
+
+    /**
+     * Lookup stage of a dirty image file and its entries in the baseline
+     * snapshots. Only the dirty image file has to be read, and only once no
+     * matter how many baselines contain it.
+     */
+    private void submitBaseline(FilePair pPair) throws InterruptedException {
+        //Pre-filter: Only baselines with the same metadata can match
+        BaselineEntry[] entries = pPair.getBaselineEntries();
+        BaselineEntry[] candidates = new BaselineEntry[entries.length];
+        String difference = null;
+        boolean hasCandidate = false;
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] == null) {
+                continue;
+            }
+            String entryDifference = metadataFilter.findDifference(entries[i], pPair.getDirtyImageFile());
+            if (entryDifference == null) {
+                candidates[i] = entries[i];
+                hasCandidate = true;
+            } else if (difference == null) {
+                difference = entryDifference;
+            }
+        }
+        if (!hasCandidate) {
+            writeResult(pPair, new ComparisonResult(pPair.getDirtyImageFile(), GoldenImageIngestModuleFactory.giTagChangedName, difference));
+            return;
+        }
+
+        PairJob job = new BaselineHashJob(pPair, candidates);
+        if (acquirePair()) {
+            job.schedule();
+        }
+    }
+
+    /**
+     * Looks up a golden image file without a path match by its content. The
+     * file is tagged as deleted if no dirty image file has its content.
+     * Must only be called after all pairs were compared.
+     */
+    void submitMoveLookup(ImageFile pGoldenImageFile) throws InterruptedException {
+        PairJob job = new MoveLookupJob(new FilePair(pGoldenImageFile, null));
+        if (acquirePair()) {
+            job.schedule();
+        }
+    }
+
+    /**
+     * Tags a dirty image file which has the content of a golden image file
+     * at another path.
+     *
+     * @param pGoldenImagePath The parent path and name of the golden image
+     * file
+     * @param pGoldenImageFileId The object id of the golden image file or
+     * BaselineEntry.NO_OBJECT_ID
+     */
+    void submitMoved(ImageFile pDirtyImageFile, String pGoldenImagePath, long pGoldenImageFileId) throws InterruptedException {
+        if (!isCompleted(pDirtyImageFile)) {
+            resultWriter.write(new ComparisonResult(pDirtyImageFile, GoldenImageIngestModuleFactory.giTagMovedName,
+                    describeMove(pDirtyImageFile, pGoldenImagePath), pGoldenImageFileId));
+        }
+        completedFiles.add(2);
+    }
+
+    /**
+     * Tags a directory of the dirty image whose subtree has the same
+     * metadata as on the golden image. Its files are neither compared nor
+     * tagged one by one.
+     *
+     * @param pFileCount The amount of files below the directory on each
+     * image
+     */
+    void submitUnchangedDirectory(ImageFile pDirectory, long pFileCount) throws InterruptedException {
+        if (!isCompleted(pDirectory)) {
+            resultWriter.write(new ComparisonResult(pDirectory, GoldenImageIngestModuleFactory.giTagGoodName,
+                    "The names, sizes, timestamps and metadata addresses of all " + pFileCount
+                    + " files in this directory are the same as on the Golden Image. Their content wasn't compared."));
+        }
+        completedFiles.add(2 * pFileCount);
+    }
+
+    /**
+     * Tags the root directory of a file system which is identical on both
+     * images. Its files are neither compared nor tagged one by one.
+     *
+     * @param pFileCount The amount of files of the file system on each image
+     */
+    void submitIdenticalFileSystem(ImageFile pRootDirectory, long pFileCount, String pMatch) throws InterruptedException {
+        if (!isCompleted(pRootDirectory)) {
+            resultWriter.write(new ComparisonResult(pRootDirectory, GoldenImageIngestModuleFactory.giTagGoodName,
+                    "The file system of this directory matches its equivalent on the Golden Image. " + pMatch + ". Its " + pFileCount
+                    + " files weren't compared one by one."));
+        }
+        completedFiles.add(2 * pFileCount);
+    }
+
+    /**
+     * Tags a golden image file which doesn't exist on the dirty image.
+     */
+    void submitDeleted(ImageFile pGoldenImageFile) throws InterruptedException {
+        if (!isCompleted(pGoldenImageFile)) {
+            resultWriter.write(new ComparisonResult(pGoldenImageFile, deletedTag, "The file exists on the Golden Image, but not on the Dirty Image."));
+        }
+        completedFiles.increment();
+    }
+
+    /**
+     * Tags a dirty image file which wasn't matched to a golden image file by
+     * its content as new.
+     */
+    void submitNew(ImageFile pDirtyImageFile) throws InterruptedException {
+        if (!isCompleted(pDirtyImageFile)) {
+            resultWriter.write(newFileResult(pDirtyImageFile));
+        }
+        completedFiles.increment();
+    }
+
+    /**
+     * @return The index of moved files or null if moves aren't detected.
+     */
+    MoveDetector getMoveDetector() {
+        return moveDetector;
+    }
+
+    /**
+     * @return True if the result of the file was written by the interrupted
+     * job this job resumes.
+     */
+    boolean isCompleted(ImageFile pFile) {
+        return journal != null && pFile != null && journal.isCompleted(pFile.getId());
+    }
+
+    private static ComparisonResult newFileResult(ImageFile pDirtyImageFile) {
+        return new ComparisonResult(pDirtyImageFile, GoldenImageIngestModuleFactory.giTagNewName, "The file exists on the Dirty Image, but not on the Golden Image.");
+    }
+
+    private static String describeMove(ImageFile pDirtyImageFile, String pGoldenImagePath) {
+        int separator = pGoldenImagePath.lastIndexOf('/');
+        String parentPath = pGoldenImagePath.substring(0, separator + 1);
+        String name = pGoldenImagePath.substring(separator + 1);
+        String comment;
+        if (parentPath.equals(pDirtyImageFile.getParentPath())) {
+            comment = "The file was renamed, it has the content of " + name + " on the Golden Image.";
+        } else if (name.equals(pDirtyImageFile.getName())) {
+            comment = "The file was moved, it has the content of " + pGoldenImagePath + " on the Golden Image.";
+        } else {
+            comment = "The file was moved and renamed, it has the content of " + pGoldenImagePath + " on the Golden Image.";
+        }
+        return comment;
+    }
+
+    /**
+     * Waits until all submitted pairs are compared and their results are
+     * queued for the result write stage.
+     *
+     * @return True if all pairs are done, false if the timeout elapsed.
+     */
+    boolean awaitCompletion(long pTimeout, TimeUnit pUnit) throws InterruptedException {
+        if (pairsInFlight.tryAcquire(maxPairsInFlight, pTimeout, pUnit)) {
+            pairsInFlight.release(maxPairsInFlight);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stops the read and digest stage after all pairs are done.
+     */
+    void shutdown() {
+        readStage.shutdown();
+        digestStage.shutdown();
+    }
+
+    /**
+     * Stops all stages, pairs in flight are abandoned.
+     */
+    void shutdownNow() {
+        cancelled = true;
+        readStage.shutdownNow();
+        digestStage.shutdownNow();
+        resultWriter.shutdownNow();
+    }
+
+    /**
+     * Waits until the read and digest stage stopped after a shutdown.
+     *
+     * @return True if both stages stopped within the timeout.
+     */
+    boolean awaitTermination(long pTimeout, TimeUnit pUnit) throws InterruptedException {
+        long deadline = System.nanoTime() + pUnit.toNanos(pTimeout);
+        return readStage.awaitTermination(pTimeout, pUnit) && digestStage.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return True if the ingest job was cancelled or the pipeline was shut
+     * down.
+     */
+    boolean isCancelled() {
+        return cancelled || jobCancelled.getAsBoolean();
+    }
+
+    /**
+     * Waits until less than the maximum amount of pairs is in flight.
+     *
+     * @return False if the job was cancelled while waiting.
+     */
+    private boolean acquirePair() throws InterruptedException {
+        long startTime = System.nanoTime();
+        while (!pairsInFlight.tryAcquire(CANCELLATION_INTERVAL, TimeUnit.MILLISECONDS)) {
+            if (isCancelled()) {
+                return false;
+            }
+        }
+        metrics.record(PipelineMetrics.Stage.PAIR_WAIT, startTime, 0);
+        return true;
+    }
+
+    /**
+     * Samples the depths of the queues between the stages and the used heap.
+     */
+    void sampleQueues() {
+        metrics.sampleHeap();
+        metrics.sample(PipelineMetrics.Queue.PAIRS, maxPairsInFlight - pairsInFlight.availablePermits());
+        metrics.sample(PipelineMetrics.Queue.CHUNKS, chunkPool.getChunksInUse());
+        metrics.sample(PipelineMetrics.Queue.RESULTS, resultWriter.getBufferedResults());
+    }
+
+    /**
+     * @return The amount of bytes read from both images.
+     */
+    long getReadBytes() {
+        return readBytes.sum();
+    }
+
+    /**
+     * @return The amount of files whose comparison is done.
+     */
+    long getCompletedFiles() {
+        return completedFiles.sum();
+    }
+
+    /**
+     * @return The amount of pairs which couldn't be compared because one of
+     * the files couldn't be read.
+     */
+    long getFailedComparisons() {
+        return failedComparisons.get();
+    }
+
+    private void writeResult(FilePair pPair, ComparisonResult pResult) throws InterruptedException {
+        resultWriter.write(pResult);
+        completedFiles.add(pPair.getFileCount());
+    }
+
+    static ThreadFactory threadFactory(String pName) {
+        AtomicInteger counter = new AtomicInteger();
+        return (Runnable runnable) -> {
+            Thread thread = new Thread(runnable, pName + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Creates an executor which runs every read on its own virtual thread.
+     * Virtual threads are only available since Java 21, on older runtimes a
+     * fixed pool is used.
+     */
+    private static ExecutorService newVirtualThreadExecutor(int pFallbackThreads) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            logger.log(Level.INFO, "Virtual threads are not supported by this Java runtime, using a fixed read thread pool.");
+            return Executors.newFixedThreadPool(Math.max(1, pFallbackThreads), threadFactory("GoldenImage-read"));
+        }
+    }
+
+    /**
+     * Reusable digesters and digest buffers of one file or block, so hashing
+     * doesn't allocate anything per file.
+     */
+    private static final class HashState {
+
+        final MultiDigester digester;
+        final byte[][] digests;
+        boolean precomputed;
+
+        HashState(List<DigestAlgorithm> pAlgorithms) {
+            digester = new MultiDigester(pAlgorithms);
+            digests = digester.createDigestBuffers();
+        }
+    }
+
+    private static HashState acquireState(ConcurrentLinkedQueue<HashState> pPool, List<DigestAlgorithm> pAlgorithms) {
+        HashState state = pPool.poll();
+        if (state == null) {
+            state = new HashState(pAlgorithms);
+        }
+        state.digester.reset();
+        state.precomputed = false;
+        return state;
+    }
+
+    /**
+     * Processes the chunks of one file or block in the digest stage. The
+     * chunks are processed in the order they were offered, but not
+     * necessarily on the same thread. At most one thread processes the chunks
+     * of a stream at any time.
+     */
+    private abstract class ChunkStream implements Runnable {
+
+        private final ConcurrentLinkedQueue<Chunk> chunks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+
+        void offer(Chunk pChunk) {
+            chunks.offer(pChunk);
+            if (queued.getAndIncrement() == 0) {
+                digestStage.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            do {
+                Chunk chunk = chunks.poll();
+                if (chunk == END) {
+                    end();
+                } else {
+                    long startTime = System.nanoTime();
+                    int length = chunk.length;
+                    process(chunk);
+                    metrics.record(PipelineMetrics.Stage.DIGEST, startTime, length);
+                }
+            } while (queued.decrementAndGet() > 0);
+        }
+
+        /**
+         * Processes a chunk and returns it to the pool.
+         */
+        abstract void process(Chunk pChunk);
+
+        /**
+         * Called after the last chunk of the stream.
+         */
+        abstract void end();
+    }
+
+    /**
+     * The comparison of one pair. It is read in the read stage and completed
+     * exactly once in the digest stage.
+     */
+    private abstract class PairJob {
+
+        final FilePair pair;
+        volatile boolean failed = false;
+
+        PairJob(FilePair pPair) {
+            pair = pPair;
+        }
+
+        /**
+         * Passes the reads of the pair to the read stage. The reads offer the
+         * content of the pair to the digest stage and must end every stream
+         * they opened, even on failure.
+         */
+        abstract void schedule();
+
+        /**
+         * Reads a part of a file into a chunk, at most up to the end offset.
+         */
+        void readChunk(ImageFile pFile, long pOffset, long pEnd, Chunk pChunk, int pFileIndex) throws TskCoreException {
+            long startTime = System.nanoTime();
+            int length = (int) Math.min(Chunk.SIZE, pEnd - pOffset);
+            if (pFile.read(pChunk.buffer, pOffset, length) != length) {
+                throw new TskCoreException("Unexpected end of file at offset " + pOffset);
+            }
+            pChunk.length = length;
+            pChunk.fileIndex = pFileIndex;
+            readBytes.add(length);
+            metrics.record(PipelineMetrics.Stage.READ, startTime, length);
+        }
+
+        /**
+         * Reads a whole file chunk by chunk and offers the chunks to a stream.
+         * Doesn't end the stream.
+         */
+        void readFile(ImageFile pFile, int pFileIndex, ChunkStream pStream) throws TskCoreException, InterruptedException {
+            for (long offset = 0; offset < pFile.getSize() && !isFailed(pFileIndex) && !isCancelled(); offset += Chunk.SIZE) {
+                Chunk chunk = chunkPool.acquire();
+                try {
+                    readChunk(pFile, offset, pFile.getSize(), chunk, pFileIndex);
+                } catch (TskCoreException ex) {
+                    chunkPool.release(chunk);
+                    throw ex;
+                }
+                pStream.offer(chunk);
+            }
+        }
+
+        /**
+         * @return True if the file of the pair can't be compared any more, so
+         * it isn't read and hashed further.
+         */
+        boolean isFailed(int pFileIndex) {
+            return failed;
+        }
+
+        /**
+         * Marks the pair as failed because a file couldn't be read.
+         */
+        void fail(TskCoreException pCause) {
+            failed = true;
+            metrics.error(PipelineMetrics.Stage.READ, pCause);
+            logger.log(Level.FINE, "A file of the pair couldn't be read.", pCause);
+        }
+
+        /**
+         * Looks up the digests of a file without reading it.
+         *
+         * @return True if the digests were found.
+         */
+        boolean resolveDigests(ImageFile pFile, HashState pState, boolean pShared) throws InterruptedException {
+            long startTime = System.nanoTime();
+            boolean resolved = digestResolver.resolve(pFile, pState.digester.getAlgorithms(), pState.digests, pShared, ComparisonPipeline.this::isCancelled);
+            metrics.record(PipelineMetrics.Stage.RESOLVE, startTime, 0);
+            return resolved;
+        }
+
+        /**
+         * Looks up the digests of a file without reading it, claiming it or
+         * waiting for another job.
+         *
+         * @return True if the digests were found.
+         */
+        boolean lookupDigests(ImageFile pFile, HashState pState, boolean pShared) {
+            long startTime = System.nanoTime();
+            boolean resolved = digestResolver.lookup(pFile, pState.digester.getAlgorithms(), pState.digests, pShared);
+            metrics.record(PipelineMetrics.Stage.RESOLVE, startTime, 0);
+            return resolved;
+        }
+
+        /**
+         * Compares the pair by the digests of both files, the first
+         * algorithm decides.
+         */
+        ComparisonResult compareDigests(DigestAlgorithm[] pAlgorithms, byte[][] pGoldenDigests, byte[][] pDirtyDigests) {
+            if (Arrays.equals(pGoldenDigests[0], pDirtyDigests[0])) {
+                return good(MultiDigester.describe(pAlgorithms, pDirtyDigests), pDirtyDigests[0]);
+            }
+            return changed("The Content of this file is different from it's equivalent on the golden image. "
+                    + pAlgorithms[0] + " golden image: " + DigestAlgorithm.toHex(pGoldenDigests[0])
+                    + ", dirty image: " + DigestAlgorithm.toHex(pDirtyDigests[0]), pDirtyDigests[0]);
+        }
+
+        void complete(ComparisonResult pResult) {
+            try {
+                if (pResult == null) {
+                    failedComparisons.incrementAndGet();
+                } else {
+                    resultWriter.write(pResult);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                completedFiles.add(pair.getFileCount());
+                pairsInFlight.release();
+            }
+        }
+
+        /**
+         * Ends the job without a result, the files are resolved later.
+         */
+        void defer() {
+            pairsInFlight.release();
+        }
+
+        ComparisonResult changed(String pComment) {
+            return changed(pComment, null);
+        }
+
+        ComparisonResult good(String pComment) {
+            return good(pComment, null);
+        }
+
+        /**
+         * @param pDigest The digest of the dirty image file or null
+         */
+        ComparisonResult changed(String pComment, byte[] pDigest) {
+            return new ComparisonResult(pair.getDirtyImageFile(), GoldenImageIngestModuleFactory.giTagChangedName, pComment, pair.getGoldenImageFile(), pDigest);
+        }
+
+        /**
+         * @param pDigest The digest of the dirty image file or null
+         */
+        ComparisonResult good(String pComment, byte[] pDigest) {
+            return new ComparisonResult(pair.getDirtyImageFile(), GoldenImageIngestModuleFactory.giTagGoodName, pComment, pair.getGoldenImageFile(), pDigest);
+        }
+    }
+
+    /**
+     * Hashes both files with all algorithms of the job in one pass and
+     * compares them by the first algorithm.
+     */
+    private final class HashJob extends PairJob {
+
+        private final HashState[] states = new HashState[2];
+        private final FileStream[] streams = {new FileStream(0), new FileStream(1)};
+        private final AtomicInteger openStreams = new AtomicInteger(2);
+        // The golden image file is hashed to the end even if the dirty one failed, its digest is shared
+        private volatile boolean goldenFailed = false;
+        private volatile boolean dirtyFailed = false;
+
+        HashJob(FilePair pPair) {
+            super(pPair);
+        }
+
+        /**
+         * Both files are scheduled on their own, so each is read in the sweep
+         * over its image.
+         */
+        @Override
+        void schedule() {
+            for (int i = 0; i < 2; i++) {
+                states[i] = acquireState(hashStates, algorithms);
+            }
+            readScheduler.execute(pair.getGoldenImageFile(), () -> read(0));
+            readScheduler.execute(pair.getDirtyImageFile(), () -> read(1));
+        }
+
+        private void read(int pFileIndex) {
+            ImageFile file = pFileIndex == 0 ? pair.getGoldenImageFile() : pair.getDirtyImageFile();
+            try {
+                //The golden file may have been hashed by another job comparing against the same golden image
+                if (resolveDigests(file, states[pFileIndex], pFileIndex == 0)) {
+                    states[pFileIndex].precomputed = true;
+                    return;
+                }
+
+                readFile(file, pFileIndex, streams[pFileIndex]);
+            } catch (TskCoreException ex) {
+                markFailed(pFileIndex);
+                fail(ex);
+            } catch (InterruptedException ex) {
+                markFailed(pFileIndex);
+                failed = true;
+                Thread.currentThread().interrupt();
+            } finally {
+                streams[pFileIndex].offer(END);
+            }
+        }
+
+        @Override
+        boolean isFailed(int pFileIndex) {
+            return pFileIndex == 0 ? goldenFailed : dirtyFailed;
+        }
+
+        private void markFailed(int pFileIndex) {
+            if (pFileIndex == 0) {
+                goldenFailed = true;
+            } else {
+                dirtyFailed = true;
+            }
+        }
+
+        private void finish() {
+            try {
+                if (failed || isCancelled()) {
+                    //Only a golden image file which was hashed completely is passed to the jobs waiting for it
+                    if (goldenFailed || isCancelled()) {
+                        digestResolver.failed(pair.getGoldenImageFile(), true);
+                    } else {
+                        publishDigests(pair.getGoldenImageFile(), states[0], true);
+                    }
+                    complete(null);
+                    return;
+                }
+
+                DigestAlgorithm[] digestAlgorithms = states[0].digester.getAlgorithms();
+                publishDigests(pair.getGoldenImageFile(), states[0], true);
+                publishDigests(pair.getDirtyImageFile(), states[1], false);
+                complete(compareDigests(digestAlgorithms, states[0].digests, states[1].digests));
+            } finally {
+                hashStates.offer(states[0]);
+                hashStates.offer(states[1]);
+            }
+        }
+
+        private final class FileStream extends ChunkStream {
+
+            private final int fileIndex;
+
+            FileStream(int pFileIndex) {
+                fileIndex = pFileIndex;
+            }
+
+            @Override
+            void process(Chunk pChunk) {
+                if (!isFailed(fileIndex) && !isCancelled()) {
+                    states[fileIndex].digester.update(pChunk.buffer, 0, pChunk.length);
+                }
+                chunkPool.release(pChunk);
+            }
+
+            @Override
+            void end() {
+                if (!states[fileIndex].precomputed) {
+                    states[fileIndex].digester.digest(states[fileIndex].digests);
+                }
+                if (openStreams.decrementAndGet() == 0) {
+                    finish();
+                }
+            }
+        }
+    }
+
+    /**
+     * Hashes the dirty image file with the algorithm of the baseline
+     * snapshots and compares it with the digests of its entries. The file is
+     * identical to every baseline with the same digest.
+     */
+    private final class BaselineHashJob extends PairJob {
+
+        private final FileStream stream = new FileStream();
+        private final BaselineEntry[] candidates;
+        private HashState state;
+
+        /**
+         * @param pCandidates The entries of the baselines which passed the
+         * pre-filter, null for the others
+         */
+        BaselineHashJob(FilePair pPair, BaselineEntry[] pCandidates) {
+            super(pPair);
+            candidates = pCandidates;
+        }
+
+        @Override
+        void schedule() {
+            readScheduler.execute(pair.getDirtyImageFile(), this::read);
+        }
+
+        private void read() {
+            state = acquireState(baselineStates, baselineAlgorithms);
+            try {
+                if (resolveDigests(pair.getDirtyImageFile(), state, false)) {
+                    state.precomputed = true;
+                    return;
+                }
+                readFile(pair.getDirtyImageFile(), 1, stream);
+            } catch (TskCoreException ex) {
+                fail(ex);
+            } catch (InterruptedException ex) {
+                failed = true;
+                Thread.currentThread().interrupt();
+            } finally {
+                stream.offer(END);
+            }
+        }
+
+        private final class FileStream extends ChunkStream {
+
+            @Override
+            void process(Chunk pChunk) {
+                if (!failed && !isCancelled()) {
+                    state.digester.update(pChunk.buffer, 0, pChunk.length);
+                }
+                chunkPool.release(pChunk);
+            }
+
+            @Override
+            void end() {
+                try {
+                    if (failed || isCancelled()) {
+                        complete(null);
+                        return;
+                    }
+
+                    if (!state.precomputed) {
+                        state.digester.digest(state.digests);
+                    }
+                    DigestAlgorithm[] digestAlgorithms = state.digester.getAlgorithms();
+                    publishDigests(pair.getDirtyImageFile(), state, false);
+
+                    StringBuilder identical = new StringBuilder();
+                    BaselineEntry candidate = null;
+                    for (int i = 0; i < candidates.length; i++) {
+                        if (candidates[i] == null) {
+                            continue;
+                        }
+                        candidate = candidates[i];
+                        if (Arrays.equals(candidates[i].getDigest(), state.digests[0])) {
+                            baselines.recordMatch(i);
+                            identical.append(identical.length() == 0 ? "" : ", ").append(baselines.getName(i));
+                        }
+                    }
+
+                    if (identical.length() > 0) {
+                        String comment = MultiDigester.describe(digestAlgorithms, state.digests);
+                        complete(good(baselines.size() > 1 ? "Identical on " + identical + ". " + comment : comment, state.digests[0]));
+                    } else if (baselines.size() > 1) {
+                        complete(changed("The Content of this file is different from it's equivalents on all golden images. "
+                                + digestAlgorithms[0] + " dirty image: " + DigestAlgorithm.toHex(state.digests[0]), state.digests[0]));
+                    } else {
+                        complete(changed("The Content of this file is different from it's equivalent in the baseline snapshot. "
+                                + digestAlgorithms[0] + " baseline: " + DigestAlgorithm.toHex(candidate.getDigest())
+                                + ", dirty image: " + DigestAlgorithm.toHex(state.digests[0]), state.digests[0]));
+                    }
+                } finally {
+                    baselineStates.offer(state);
+                }
+            }
+        }
+    }
+
+    /**
+     * Hashes a file which only exists on one of the images, so it can be
+     * found by its content on the other image.
+     */
+    private abstract class MoveJob extends PairJob {
+
+        private final FileStream stream = new FileStream();
+        private final ImageFile file;
+        private HashState state;
+
+        MoveJob(FilePair pPair, ImageFile pFile) {
+            super(pPair);
+            file = pFile;
+        }
+
+        @Override
+        void schedule() {
+            readScheduler.execute(file, this::read);
+        }
+
+        private void read() {
+            state = acquireState(moveStates, moveAlgorithms);
+            try {
+                if (resolveDigests(file, state, false)) {
+                    state.precomputed = true;
+                    return;
+                }
+                readFile(file, 0, stream);
+            } catch (TskCoreException ex) {
+                fail(ex);
+            } catch (InterruptedException ex) {
+                failed = true;
+                Thread.currentThread().interrupt();
+            } finally {
+                stream.offer(END);
+            }
+        }
+
+        /**
+         * Called once the file is hashed.
+         *
+         * @param pDigest The digest of the first algorithm or null if the file
+         * couldn't be read
+         */
+        abstract void hashed(byte[] pDigest);
+
+        private final class FileStream extends ChunkStream {
+
+            @Override
+            void process(Chunk pChunk) {
+                if (!failed && !isCancelled()) {
+                    state.digester.update(pChunk.buffer, 0, pChunk.length);
+                }
+                chunkPool.release(pChunk);
+            }
+
+            @Override
+            void end() {
+                try {
+                    if (failed || isCancelled()) {
+                        hashed(null);
+                        return;
+                    }
+                    if (!state.precomputed) {
+                        state.digester.digest(state.digests);
+                        publishDigests(file, state, false);
+                    }
+                    hashed(state.digests[0]);
+                } finally {
+                    moveStates.offer(state);
+                }
+            }
+        }
+    }
+
+    /**
+     * Indexes a file which only exists on the dirty image. The result is
+     * deferred until the golden image files without a path match were looked
+     * up.
+     */
+    private final class MoveIndexJob extends MoveJob {
+
+        MoveIndexJob(FilePair pPair) {
+            super(pPair, pPair.getDirtyImageFile());
+        }
+
+        @Override
+        void hashed(byte[] pDigest) {
+            if (pDigest == null) {
+                complete(isCancelled() ? null : newFileResult(pair.getDirtyImageFile()));
+                return;
+            }
+            moveDetector.addDirtyImageFile(pDigest, pair.getDirtyImageFile().getSize(), pair.getDirtyImageFile().getId());
+            defer();
+        }
+    }
+
+    /**
+     * Looks up a golden image file without a path match in the index of the
+     * dirty image files.
+     */
+    private final class MoveLookupJob extends MoveJob {
+
+        MoveLookupJob(FilePair pPair) {
+            super(pPair, pPair.getGoldenImageFile());
+        }
+
+        @Override
+        void hashed(byte[] pDigest) {
+            ImageFile goldenImageFile = pair.getGoldenImageFile();
+            if (pDigest == null) {
+                complete(isCancelled() ? null : deleted());
+                return;
+            }
+
+            long dirtyImageFileId = moveDetector.match(pDigest, goldenImageFile.getSize());
+            if (dirtyImageFileId == BaselineEntry.NO_OBJECT_ID) {
+                complete(deleted());
+                return;
+            }
+            try {
+                ImageFile dirtyImageFile = fileLoader.load(dirtyImageFileId);
+                completedFiles.increment();
+                complete(new ComparisonResult(dirtyImageFile, GoldenImageIngestModuleFactory.giTagMovedName,
+                        describeMove(dirtyImageFile, FileCursor.getPath(goldenImageFile)), goldenImageFile, pDigest));
+            } catch (TskCoreException ex) {
+                logger.log(Level.WARNING, "The moved file " + dirtyImageFileId + " couldn't be loaded.", ex);
+                metrics.error(PipelineMetrics.Stage.QUERY, ex);
+                complete(null);
+            }
+        }
+
+        private ComparisonResult deleted() {
+            return new ComparisonResult(pair.getGoldenImageFile(), deletedTag, "The file exists on the Golden Image, but not on the Dirty Image.");
+        }
+    }
+
+    /**
+     * Splits two large files into fixed-size blocks, which are read and
+     * hashed in parallel, and compares the Merkle roots of the block digests.
+     * The tag of a changed file lists the byte ranges which differ.
+     *
+     * If the whole-file digests of both files are known already, the pair is
+     * compared by them and neither file is read. The block digests of the
+     * golden image file are shared with the other jobs comparing against the
+     * same golden image, so it's hashed at most once like the smaller files.
+     */
+    private final class BlockHashJob extends PairJob {
+
+        private final int blockCount;
+        private final byte[][][] blocks = new byte[2][][];
+        private final AtomicInteger openBlocks = new AtomicInteger();
+        // True if the block digests of the golden image file were hashed by another job
+        private volatile boolean goldenPrecomputed = false;
+
+        BlockHashJob(FilePair pPair) {
+            super(pPair);
+            blockCount = (int) ((pPair.getGoldenImageFile().getSize() + blockSize - 1) / blockSize);
+        }
+
+        /**
+         * The digests are resolved in the read stage, because the job may
+         * have to wait for another job hashing the golden image file.
+         */
+        @Override
+        void schedule() {
+            readScheduler.execute(pair.getGoldenImageFile(), this::resolve);
+        }
+
+        private void resolve() {
+            ImageFile goldenImageFile = pair.getGoldenImageFile();
+            try {
+                if (compareWholeFiles()) {
+                    return;
+                }
+
+                blocks[0] = new byte[blockCount][algorithms.get(0).createDigester().getLength()];
+                blocks[1] = new byte[blockCount][];
+                long startTime = System.nanoTime();
+                goldenPrecomputed = digestResolver.resolveBlocks(goldenImageFile, blocks[0], ComparisonPipeline.this::isCancelled);
+                metrics.record(PipelineMetrics.Stage.RESOLVE, startTime, 0);
+            } catch (InterruptedException ex) {
+                failed = true;
+                Thread.currentThread().interrupt();
+            }
+            if (failed || isCancelled()) {
+                finish();
+                return;
+            }
+
+            //Every block is scheduled on its own, assuming the file is stored contiguously from its first data run
+            ImageFile[] files = {goldenImageFile, pair.getDirtyImageFile()};
+            int firstFile = goldenPrecomputed ? 1 : 0;
+            openBlocks.set((files.length - firstFile) * blockCount);
+            if (blockCount == 0) {
+                finish();
+                return;
+            }
+            for (int i = firstFile; i < files.length; i++) {
+                long offset = readScheduler.getOffset(files[i]);
+                for (int block = 0; block < blockCount; block++) {
+                    BlockStream stream = new BlockStream(i, block);
+                    readScheduler.execute(files[i].getDataSourceObjectId(), offset + block * blockSize, () -> stream.read(files[stream.fileIndex]));
+                }
+            }
+        }
+
+        /**
+         * Compares the pair by the whole-file digests if both are known, from
+         * the case database, the journal or another job.
+         *
+         * @return True if the pair was compared.
+         */
+        private boolean compareWholeFiles() {
+            HashState golden = acquireState(hashStates, algorithms);
+            HashState dirty = acquireState(hashStates, algorithms);
+            try {
+                if (!lookupDigests(pair.getGoldenImageFile(), golden, true) || !lookupDigests(pair.getDirtyImageFile(), dirty, false)) {
+                    return false;
+                }
+                complete(compareDigests(golden.digester.getAlgorithms(), golden.digests, dirty.digests));
+                return true;
+            } finally {
+                hashStates.offer(golden);
+                hashStates.offer(dirty);
+            }
+        }
+
+        private void finish() {
+            if (failed || isCancelled()) {
+                if (!goldenPrecomputed) {
+                    digestResolver.failedBlocks(pair.getGoldenImageFile());
+                }
+                complete(null);
+                return;
+            }
+
+            if (!goldenPrecomputed) {
+                digestResolver.computedBlocks(pair.getGoldenImageFile(), blocks[0]);
+            }
+            DigestAlgorithm algorithm = algorithms.get(0);
+            BlockDigests golden = new BlockDigests(algorithm, pair.getGoldenImageFile().getSize(), blockSize, toHex(blocks[0]));
+            BlockDigests dirty = new BlockDigests(algorithm, pair.getDirtyImageFile().getSize(), blockSize, toHex(blocks[1]));
+            if (golden.getRoot().equals(dirty.getRoot())) {
+                complete(good(algorithm + " Merkle root: " + dirty.getRoot()));
+            } else {
+                complete(changed("The Content of this file is different from it's equivalent on the golden image. Changed byte ranges: "
+                        + golden.describeChangedRanges(dirty)));
+            }
+        }
+
+        private String[] toHex(byte[][] pBlocks) {
+            String[] hex = new String[pBlocks.length];
+            for (int i = 0; i < pBlocks.length; i++) {
+                hex[i] = DigestAlgorithm.toHex(pBlocks[i]);
+            }
+            return hex;
+        }
+
+        private final class BlockStream extends ChunkStream {
+
+            private final int fileIndex;
+            private final int block;
+            private HashState state;
+
+            BlockStream(int pFileIndex, int pBlock) {
+                fileIndex = pFileIndex;
+                block = pBlock;
+            }
+
+            void read(ImageFile pFile) {
+                state = acquireState(blockStates, algorithms.subList(0, 1));
+                long end = Math.min((block + 1) * blockSize, pFile.getSize());
+                try {
+                    for (long offset = block * blockSize; offset < end && !failed && !isCancelled(); offset += Chunk.SIZE) {
+                        Chunk chunk = chunkPool.acquire();
+                        try {
+                            readChunk(pFile, offset, end, chunk, fileIndex);
+                        } catch (TskCoreException ex) {
+                            chunkPool.release(chunk);
+                            throw ex;
+                        }
+                        offer(chunk);
+                    }
+                } catch (TskCoreException ex) {
+                    fail(ex);
+                } catch (InterruptedException ex) {
+                    failed = true;
+                    Thread.currentThread().interrupt();
+                } finally {
+                    offer(END);
+                }
+            }
+
+            @Override
+            void process(Chunk pChunk) {
+                if (!failed && !isCancelled()) {
+                    state.digester.update(pChunk.buffer, 0, pChunk.length);
+                }
+                chunkPool.release(pChunk);
+            }
+
+            @Override
+            void end() {
+                state.digester.digest(state.digests);
+                blocks[fileIndex][block] = state.digests[0].clone();
+                blockStates.offer(state);
+                if (openBlocks.decrementAndGet() == 0) {
+                    finish();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads both files side by side and stops at the first chunk which
+     * differs, so a changed file only costs as much I/O as it takes to find
+     * the first difference. Optionally the digests of identical files are
+     * computed in the same pass.
+     */
+    private final class DirectCompareJob extends PairJob {
+
+        private final PairStream stream = new PairStream();
+        private volatile boolean different = false;
+        private HashState state;
+
+        DirectCompareJob(FilePair pPair) {
+            super(pPair);
+        }
+
+        /**
+         * Both files are read side by side, so they are scheduled by the
+         * position of the golden image file.
+         */
+        @Override
+        void schedule() {
+            readScheduler.execute(pair.getGoldenImageFile(), this::read);
+        }
+
+        private void read() {
+            ImageFile goldenImageFile = pair.getGoldenImageFile();
+            ImageFile dirtyImageFile = pair.getDirtyImageFile();
+            state = directCompareAlgorithms.isEmpty() ? null : acquireState(directCompareStates, directCompareAlgorithms);
+            try {
+                for (long offset = 0; offset < goldenImageFile.getSize() && !different && !failed && !isCancelled(); offset += Chunk.SIZE) {
+                    //Both chunks are taken at once, the golden chunk is only released together with the dirty one
+                    Chunk[] chunks = chunkPool.acquirePair();
+                    try {
+                        readChunk(goldenImageFile, offset, goldenImageFile.getSize(), chunks[0], 0);
+                        readChunk(dirtyImageFile, offset, dirtyImageFile.getSize(), chunks[1], 1);
+                    } catch (TskCoreException ex) {
+                        chunkPool.release(chunks[0]);
+                        chunkPool.release(chunks[1]);
+                        throw ex;
+                    }
+                    stream.offer(chunks[0]);
+                    stream.offer(chunks[1]);
+                }
+            } catch (TskCoreException ex) {
+                fail(ex);
+            } catch (InterruptedException ex) {
+                failed = true;
+                Thread.currentThread().interrupt();
+            } finally {
+                stream.offer(END);
+            }
+        }
+
+        private final class PairStream extends ChunkStream {
+
+            private Chunk goldenChunk;
+
+            @Override
+            void process(Chunk pChunk) {
+                if (pChunk.fileIndex == 0) {
+                    goldenChunk = pChunk;
+                    return;
+                }
+
+                if (!different && !failed && !isCancelled()) {
+                    for (int i = 0; i < pChunk.length; i++) {
+                        if (goldenChunk.buffer[i] != pChunk.buffer[i]) {
+                            different = true;
+                            break;
+                        }
+                    }
+                    if (!different && state != null) {
+                        state.digester.update(goldenChunk.buffer, 0, goldenChunk.length);
+                    }
+                }
+                chunkPool.release(goldenChunk);
+                chunkPool.release(pChunk);
+                goldenChunk = null;
+            }
+
+            @Override
+            void end() {
+                try {
+                    if (failed || isCancelled()) {
+                        complete(null);
+                    } else if (different) {
+                        complete(changed("The Content of this file is different from it's equivalent on the golden image."));
+                    } else if (state == null) {
+                        complete(good(""));
+                    } else {
+                        state.digester.digest(state.digests);
+                        DigestAlgorithm[] digestAlgorithms = state.digester.getAlgorithms();
+                        publishDigests(pair.getGoldenImageFile(), state, false);
+                        publishDigests(pair.getDirtyImageFile(), state, false);
+                        complete(good(MultiDigester.describe(digestAlgorithms, state.digests), state.digests[0]));
+                    }
+                } finally {
+                    if (state != null) {
+                        directCompareStates.offer(state);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes the digests of a file to the DigestResolver if they were
+     * computed by this job.
+     *
+     * @param pShared True if the file is a golden image file whose digests
+     * are shared with other jobs
+     */
+    private void publishDigests(ImageFile pFile, HashState pState, boolean pShared) {
+        if (!pState.precomputed) {
+            digestResolver.computed(pFile, pState.digester.getAlgorithms(), pState.digests, pShared);
+        }
+    }
+}
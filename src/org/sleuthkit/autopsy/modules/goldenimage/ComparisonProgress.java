@@ -0,0 +1,117 @@
+/*
+ * ComparisonProgress
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import org.sleuthkit.autopsy.ingest.DataSourceIngestModuleProgress;
+
+/**
+ * Shows the progress of a comparison in the progress bar of the ingest job:
+ * The completed files as work units and, in the label, the completed and
+ * total files, the bytes read, the read throughput and the estimated time
+ * remaining. The counts are read from the counters of the pipeline, which
+ * the stages update without contention; the label is refreshed at most every
+ * UPDATE_INTERVAL, so calling update() for every file costs nothing. Every
+ * update also samples the queue depths of the pipeline for its metrics.
+ * Without a progress bar (the harness of the benchmarks) only the queue
+ * depths are sampled.
+ */
+final class ComparisonProgress {
+
+    // Minimum interval in milliseconds between two updates of the progress bar
+    private static final long UPDATE_INTERVAL = 500;
+
+    private final DataSourceIngestModuleProgress progressBar;
+    private ComparisonPipeline pipeline = null;
+    private String phase = "";
+    private long totalFiles = 0;
+    private long startTime = 0;
+    private long startFiles = 0;
+    private long startBytes = 0;
+    private long lastUpdate = 0;
+
+    /**
+     * @param pProgressBar The progress bar of the ingest job or null
+     */
+    ComparisonProgress(DataSourceIngestModuleProgress pProgressBar) {
+        progressBar = pProgressBar;
+    }
+
+    /**
+     * Starts a determinate phase, its files are counted by the pipeline.
+     *
+     * @param pTotalFiles The amount of files which are compared
+     */
+    void start(String pPhase, ComparisonPipeline pPipeline, long pTotalFiles) {
+        pipeline = pPipeline;
+        totalFiles = pTotalFiles;
+        startTime = System.nanoTime();
+        startFiles = pPipeline.getCompletedFiles();
+        startBytes = pPipeline.getReadBytes();
+        if (progressBar != null) {
+            progressBar.switchToDeterminate((int) Math.min(pTotalFiles, Integer.MAX_VALUE));
+        }
+        phase(pPhase);
+    }
+
+    /**
+     * Changes the label of the progress bar, the work units are kept.
+     */
+    void phase(String pPhase) {
+        phase = pPhase;
+        lastUpdate = 0;
+        if (progressBar != null) {
+            progressBar.progress(pPhase);
+        }
+    }
+
+    /**
+     * Updates the progress bar if the last update is older than
+     * UPDATE_INTERVAL.
+     */
+    void update() {
+        long now = System.nanoTime();
+        if (pipeline == null || now - lastUpdate < UPDATE_INTERVAL * 1_000_000L) {
+            return;
+        }
+        lastUpdate = now;
+        pipeline.sampleQueues();
+        if (progressBar == null) {
+            return;
+        }
+        long files = pipeline.getCompletedFiles();
+        long bytes = pipeline.getReadBytes();
+        double seconds = (now - startTime) / 1e9;
+
+        StringBuilder message = new StringBuilder(phase).append(": ").append(files).append(" of ").append(totalFiles).append(" files, ")
+                .append(formatBytes(bytes)).append(" read");
+        if (seconds >= 1) {
+            message.append(", ").append(formatBytes((long) ((bytes - startBytes) / seconds))).append("/s");
+            //The remaining time is estimated by files, the size of the remaining files isn't known
+            double filesPerSecond = (files - startFiles) / seconds;
+            if (filesPerSecond > 0 && files < totalFiles) {
+                message.append(", ").append(formatDuration((long) ((totalFiles - files) / filesPerSecond))).append(" remaining");
+            }
+        }
+        progressBar.progress(message.toString(), (int) Math.min(files, Integer.MAX_VALUE));
+    }
+
+    static String formatBytes(long pBytes) {
+        if (pBytes < 1024) {
+            return pBytes + " B";
+        }
+        String[] units = {"KB", "MB", "GB", "TB"};
+        double value = pBytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format("%.1f %s", value, units[unit]);
+    }
+
+    static String formatDuration(long pSeconds) {
+        return String.format("%d:%02d:%02d", pSeconds / 3600, pSeconds / 60 % 60, pSeconds % 60);
+    }
+}
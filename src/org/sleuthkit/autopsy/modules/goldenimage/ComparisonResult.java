@@ -0,0 +1,85 @@
+/*
+ * ComparisonResult
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+/**
+ * A tag which should be added to a file as result of the comparison.
+ */
+final class ComparisonResult {
+
+    private final ImageFile file;
+    private final String tagName;
+    private final String comment;
+    private final long relatedFileId;
+    private final ImageFile relatedFile;
+    private final byte[] digest;
+
+    ComparisonResult(ImageFile pFile, String pTagName, String pComment) {
+        this(pFile, pTagName, pComment, BaselineEntry.NO_OBJECT_ID);
+    }
+
+    /**
+     * @param pRelatedFileId The object id of another file which is resolved
+     * by this result (the golden image file of a moved file in a baseline
+     * snapshot)
+     */
+    ComparisonResult(ImageFile pFile, String pTagName, String pComment, long pRelatedFileId) {
+        file = pFile;
+        tagName = pTagName;
+        comment = pComment;
+        relatedFileId = pRelatedFileId;
+        relatedFile = null;
+        digest = null;
+    }
+
+    /**
+     * @param pRelatedFile The file the file was compared with, or null
+     * @param pDigest The digest of the file by the first algorithm, or null
+     */
+    ComparisonResult(ImageFile pFile, String pTagName, String pComment, ImageFile pRelatedFile, byte[] pDigest) {
+        file = pFile;
+        tagName = pTagName;
+        comment = pComment;
+        relatedFileId = pRelatedFile != null ? pRelatedFile.getId() : BaselineEntry.NO_OBJECT_ID;
+        relatedFile = pRelatedFile;
+        digest = pDigest != null ? pDigest.clone() : null;
+    }
+
+    ImageFile getFile() {
+        return file;
+    }
+
+    /**
+     * @return The display name of the tag name of the result.
+     */
+    String getTagName() {
+        return tagName;
+    }
+
+    String getComment() {
+        return comment;
+    }
+
+    /**
+     * @return The object id of the related file or BaselineEntry.NO_OBJECT_ID.
+     */
+    long getRelatedFileId() {
+        return relatedFileId;
+    }
+
+    /**
+     * @return The related file or null if it isn't known.
+     */
+    ImageFile getRelatedFile() {
+        return relatedFile;
+    }
+
+    /**
+     * @return The digest of the file or null if it wasn't computed.
+     */
+    byte[] getDigest() {
+        return digest;
+    }
+}
@@ -0,0 +1,506 @@
+/*
+ * ComparisonState
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+import org.sleuthkit.autopsy.coreutils.Logger;
+
+/**
+ * The results of the last finished comparison of a dirty image, kept in the
+ * module folder of the case, so a re-run only compares the files which have
+ * no result yet or whose metadata changed since. Per result it records the
+ * tagged file, the file it was compared with, a signature of the metadata of
+ * both, the digest of the tagged file and the tag.
+ *
+ * The records have a fixed size and are sorted by the object id of the
+ * tagged file, so the result of a file is found by a binary search in the
+ * state of the last run without loading it. The records of this run (the
+ * results it wrote and the results of the last run it kept) are appended to
+ * a pending file as they come. Once the job is finished, they are sorted
+ * externally like the entries of a BaselineSnapshot and replace the old
+ * state. So the heap doesn't grow with the amount of files of the images.
+ * The records are only reused if the last run had the same configuration.
+ *
+ * Layout (big endian):
+ * <pre>
+ * Header length
+ * Header:  magic, configuration, tag names (modified UTF-8)
+ * Records: file id, signature, related file id, related signature,
+ *          tag index, digest length, digest (MAX_DIGEST_LENGTH bytes)
+ * </pre>
+ * The state of the last run is read with positional reads instead of being
+ * mapped, because a mapped file can't be replaced on Windows until the
+ * mapping is collected.
+ */
+final class ComparisonState implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(ComparisonState.class.getName());
+
+    static final String EXTENSION = ".state";
+
+    private static final int MAGIC = 0x47495332; // "GIS2"
+    private static final int MAX_DIGEST_LENGTH = maxDigestLength();
+    private static final int RECORD_SIZE = 4 * Long.BYTES + Short.BYTES + 1 + MAX_DIGEST_LENGTH;
+
+    // Amount of records which are sorted in memory, about 16 MiB
+    static final int RUN_SIZE = 250_000;
+
+    private final Path file;
+    private final Path pendingFile;
+    private final boolean previousRun;
+    private final String configuration;
+    private final int runSize;
+    private final List<String> tagNames = new ArrayList<>();
+    private final Map<String, Integer> tagIndexes = new HashMap<>();
+    private final DataOutputStream out;
+    private FileChannel previousChannel = null;
+    private long previousOffset = 0;
+    private int previousCount = 0;
+    private String[] previousTagNames = new String[0];
+    private boolean closed = false;
+
+    /**
+     * @param pFile The state file of the dirty image
+     * @param pConfiguration Describes everything which changes the results
+     * of the job (images, baselines, algorithms)
+     * @param pKeepUnchanged False if every file is compared again, the
+     * records of the last run are ignored
+     */
+    ComparisonState(Path pFile, String pConfiguration, boolean pKeepUnchanged) throws IOException {
+        this(pFile, pConfiguration, pKeepUnchanged, RUN_SIZE);
+    }
+
+    /**
+     * @param pRunSize The amount of records which are sorted in memory
+     */
+    ComparisonState(Path pFile, String pConfiguration, boolean pKeepUnchanged, int pRunSize) throws IOException {
+        file = pFile;
+        pendingFile = pFile.resolveSibling(pFile.getFileName() + ".tmp");
+        configuration = pConfiguration;
+        runSize = Math.max(1, pRunSize);
+        previousRun = Files.exists(pFile);
+        if (previousRun && pKeepUnchanged) {
+            load();
+        }
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(pendingFile)));
+    }
+
+    /**
+     * @return True if the dirty image was compared before, so its files may
+     * already be tagged.
+     */
+    boolean hasPreviousRun() {
+        return previousRun;
+    }
+
+    /**
+     * @return The amount of results of the last run which can be reused.
+     */
+    int getPreviousResultCount() {
+        return previousCount;
+    }
+
+    /**
+     * Checks if the result of a pair from the last run still holds: It was
+     * written for the same files and their metadata didn't change. The result
+     * is kept for the next run. The results of moved files are never kept,
+     * because they depend on other pairs.
+     *
+     * @return True if the pair doesn't have to be compared.
+     */
+    boolean keepUnchanged(ImageFile pGoldenImageFile, ImageFile pDirtyImageFile) {
+        ImageFile taggedFile = pDirtyImageFile != null ? pDirtyImageFile : pGoldenImageFile;
+        ImageFile relatedFile = pDirtyImageFile != null ? pGoldenImageFile : null;
+        Record record = findPrevious(taggedFile.getId());
+        if (record == null || record.tagName.equals(GoldenImageIngestModuleFactory.giTagMovedName)
+                || record.signature != signature(taggedFile)
+                || record.relatedFileId != (relatedFile != null ? relatedFile.getId() : BaselineEntry.NO_OBJECT_ID)
+                || (relatedFile != null && record.relatedSignature != signature(relatedFile))) {
+            return false;
+        }
+        write(record);
+        return true;
+    }
+
+    /**
+     * Records a result which was written.
+     */
+    void record(ComparisonResult pResult) {
+        ImageFile relatedFile = pResult.getRelatedFile();
+        write(new Record(pResult.getFile().getId(), signature(pResult.getFile()), pResult.getRelatedFileId(),
+                relatedFile != null ? signature(relatedFile) : 0, pResult.getTagName(), pResult.getDigest()));
+    }
+
+    /**
+     * Replaces the state of the last run with the state of this run, called
+     * once the job is finished. The records are sorted by the object id of
+     * the tagged file, a file with more than one record keeps its last one.
+     */
+    synchronized void commit() throws IOException {
+        closed = true;
+        out.close();
+        closePrevious();
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".commit.tmp");
+        List<Path> runFiles = new ArrayList<>();
+        try {
+            spillRuns(runFiles);
+            try (DataOutputStream committed = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                byte[] header = header();
+                committed.writeInt(header.length);
+                committed.write(header);
+                mergeRuns(runFiles, committed);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            for (Path runFile : runFiles) {
+                Files.deleteIfExists(runFile);
+            }
+            Files.deleteIfExists(temporary);
+            Files.deleteIfExists(pendingFile);
+        }
+    }
+
+    /**
+     * Discards the state of this run if it wasn't committed, the state of the
+     * last run is kept.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        out.close();
+        closePrevious();
+        Files.deleteIfExists(pendingFile);
+    }
+
+    /**
+     * @return A signature of the metadata which changes if the file is
+     * modified or replaced.
+     */
+    static long signature(ImageFile pFile) {
+        long signature = pFile.getSize();
+        for (long value : new long[]{pFile.getMtime(), pFile.getCtime(), pFile.getCrtime(), pFile.getMetaAddr()}) {
+            signature = (signature ^ value) * 0x9E3779B97F4A7C15L;
+            signature ^= signature >>> 32;
+        }
+        return signature;
+    }
+
+    private synchronized void write(Record pRecord) {
+        if (closed) {
+            return;
+        }
+        Integer tagIndex = tagIndexes.get(pRecord.tagName);
+        if (tagIndex == null) {
+            tagIndex = tagNames.size();
+            tagNames.add(pRecord.tagName);
+            tagIndexes.put(pRecord.tagName, tagIndex);
+        }
+        //A digest which doesn't fit into the record isn't needed to keep the result
+        byte[] digest = pRecord.digest != null && pRecord.digest.length <= MAX_DIGEST_LENGTH ? pRecord.digest : new byte[0];
+        try {
+            out.writeLong(pRecord.fileId);
+            out.writeLong(pRecord.signature);
+            out.writeLong(pRecord.relatedFileId);
+            out.writeLong(pRecord.relatedSignature);
+            out.writeShort(tagIndex);
+            out.writeByte(digest.length);
+            out.write(digest);
+            out.write(new byte[MAX_DIGEST_LENGTH - digest.length]);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Couldn't write the comparison state " + pendingFile, ex);
+        }
+    }
+
+    /**
+     * @return The configuration and the tag names of this run.
+     */
+    private byte[] header() throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        try (DataOutputStream headerOut = new DataOutputStream(header)) {
+            headerOut.writeInt(MAGIC);
+            headerOut.writeUTF(configuration);
+            headerOut.writeShort(tagNames.size());
+            for (String tagName : tagNames) {
+                headerOut.writeUTF(tagName);
+            }
+        }
+        return header.toByteArray();
+    }
+
+    /**
+     * Sorts every runSize records of the pending file by their object id and
+     * writes them to a run file. Records with the same object id keep their
+     * order.
+     */
+    private void spillRuns(List<Path> pRunFiles) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(pendingFile)))) {
+            byte[] records = new byte[(int) Math.min((long) runSize * RECORD_SIZE, Files.size(pendingFile))];
+            ByteBuffer recordBuffer = ByteBuffer.wrap(records);
+            int count;
+            while ((count = readRecords(in, records)) > 0) {
+                Integer[] order = new Integer[count];
+                for (int i = 0; i < count; i++) {
+                    order[i] = i;
+                }
+                //Stable, so the later of two records of a file stays behind
+                Arrays.sort(order, (first, second) -> Long.compare(recordBuffer.getLong(first * RECORD_SIZE), recordBuffer.getLong(second * RECORD_SIZE)));
+
+                Path runFile = Files.createTempFile("gistate", ".run");
+                pRunFiles.add(runFile);
+                try (BufferedOutputStream runOut = new BufferedOutputStream(Files.newOutputStream(runFile))) {
+                    for (int index : order) {
+                        runOut.write(records, index * RECORD_SIZE, RECORD_SIZE);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The amount of complete records read into pRecords.
+     */
+    private static int readRecords(DataInputStream pIn, byte[] pRecords) throws IOException {
+        int count = 0;
+        try {
+            while ((count + 1) * RECORD_SIZE <= pRecords.length) {
+                pIn.readFully(pRecords, count * RECORD_SIZE, RECORD_SIZE);
+                count++;
+            }
+        } catch (EOFException ex) {
+            //The last run is shorter
+        }
+        return count;
+    }
+
+    /**
+     * k-way merge of the sorted runs. Of the records of a file only the one
+     * which was written last is kept: It's in the latest run, and the runs
+     * are merged in their order if the object ids are equal.
+     */
+    private static void mergeRuns(List<Path> pRunFiles, DataOutputStream pOut) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, pRunFiles.size()));
+            for (Path runFile : pRunFiles) {
+                RunReader reader = new RunReader(runFile, readers.size());
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            byte[] held = new byte[RECORD_SIZE];
+            boolean holding = false;
+            RunReader reader;
+            while ((reader = queue.poll()) != null) {
+                if (holding && ByteBuffer.wrap(held).getLong(0) != reader.fileId) {
+                    pOut.write(held);
+                }
+                System.arraycopy(reader.current, 0, held, 0, RECORD_SIZE);
+                holding = true;
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            if (holding) {
+                pOut.write(held);
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Opens the state of the last run if it has the same configuration.
+     */
+    private void load() throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            int headerLength = in.readInt();
+            if (in.readInt() != MAGIC || !in.readUTF().equals(configuration)) {
+                channel.close();
+                return;
+            }
+            String[] names = new String[in.readUnsignedShort()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = in.readUTF();
+            }
+            long recordsLength = channel.size() - Integer.BYTES - headerLength;
+            if (headerLength < 0 || recordsLength < 0 || recordsLength % RECORD_SIZE != 0 || recordsLength / RECORD_SIZE > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt comparison state");
+            }
+            previousTagNames = names;
+            previousOffset = Integer.BYTES + headerLength;
+            previousCount = (int) (recordsLength / RECORD_SIZE);
+            previousChannel = channel;
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "The comparison state " + file + " couldn't be read, all files are compared again.", ex);
+            channel.close();
+            previousCount = 0;
+        }
+    }
+
+    /**
+     * Looks up the record of the last run of a tagged file.
+     *
+     * @return The record or null if the file has none.
+     */
+    private Record findPrevious(long pFileId) {
+        FileChannel channel = previousChannel;
+        if (channel == null) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        try {
+            int low = 0;
+            int high = previousCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                readPrevious(channel, middle, record, Long.BYTES);
+                long fileId = record.getLong(0);
+                if (fileId < pFileId) {
+                    low = middle + 1;
+                } else if (fileId > pFileId) {
+                    high = middle - 1;
+                } else {
+                    readPrevious(channel, middle, record, RECORD_SIZE);
+                    int tagIndex = record.getShort(4 * Long.BYTES) & 0xFFFF;
+                    int digestLength = record.get(4 * Long.BYTES + Short.BYTES) & 0xFF;
+                    if (tagIndex >= previousTagNames.length || digestLength > MAX_DIGEST_LENGTH) {
+                        return null;
+                    }
+                    byte[] digest = null;
+                    if (digestLength > 0) {
+                        digest = new byte[digestLength];
+                        record.position(4 * Long.BYTES + Short.BYTES + 1);
+                        record.get(digest);
+                    }
+                    return new Record(fileId, record.getLong(8), record.getLong(16), record.getLong(24), previousTagNames[tagIndex], digest);
+                }
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Couldn't read the comparison state " + file, ex);
+        }
+        return null;
+    }
+
+    /**
+     * Reads the first pLength bytes of a record of the last run.
+     */
+    private void readPrevious(FileChannel pChannel, int pIndex, ByteBuffer pRecord, int pLength) throws IOException {
+        pRecord.clear();
+        pRecord.limit(pLength);
+        long position = previousOffset + (long) pIndex * RECORD_SIZE;
+        while (pRecord.hasRemaining()) {
+            if (pChannel.read(pRecord, position + pRecord.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private void closePrevious() throws IOException {
+        if (previousChannel != null) {
+            previousChannel.close();
+            previousChannel = null;
+        }
+    }
+
+    private static int maxDigestLength() {
+        int length = 0;
+        for (DigestAlgorithm algorithm : DigestAlgorithm.values()) {
+            length = Math.max(length, algorithm.createDigester().getLength());
+        }
+        return length;
+    }
+
+    /**
+     * The result of one pair.
+     */
+    private static final class Record {
+
+        final long fileId;
+        final long signature;
+        final long relatedFileId;
+        final long relatedSignature;
+        final String tagName;
+        final byte[] digest;
+
+        Record(long pFileId, long pSignature, long pRelatedFileId, long pRelatedSignature, String pTagName, byte[] pDigest) {
+            fileId = pFileId;
+            signature = pSignature;
+            relatedFileId = pRelatedFileId;
+            relatedSignature = pRelatedSignature;
+            tagName = pTagName;
+            digest = pDigest;
+        }
+    }
+
+    /**
+     * Reads a sorted run record by record.
+     */
+    private static final class RunReader implements Comparable<RunReader>, Closeable {
+
+        private final DataInputStream in;
+        private final int runIndex;
+        final byte[] current = new byte[RECORD_SIZE];
+        long fileId;
+
+        RunReader(Path pRunFile, int pRunIndex) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(pRunFile)));
+            runIndex = pRunIndex;
+        }
+
+        /**
+         * @return False if the run is exhausted.
+         */
+        boolean next() throws IOException {
+            try {
+                in.readFully(current);
+            } catch (EOFException ex) {
+                return false;
+            }
+            fileId = ByteBuffer.wrap(current).getLong(0);
+            return true;
+        }
+
+        @Override
+        public int compareTo(RunReader pOther) {
+            int result = Long.compare(fileId, pOther.fileId);
+            return result != 0 ? result : Integer.compare(runIndex, pOther.runIndex);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * DiffEngine
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.Collections;
+import java.util.Set;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Compares the file lists of the golden and the dirty image with a sorted
+ * merge-join. Both images are read sequentially through a path ordered
+ * FileSource (the FileCursor of the case database) and walked in one linear
+ * pass, which emits every path either as matched pair, golden-only (deleted)
+ * or dirty-only (added) file.
+ *
+ * If a path exists several times on an image (e.g. deleted and reallocated
+ * entries), the files are paired in order of their object ids and the
+ * remaining ones are emitted as single files.
+ *
+ * Files below pruned directories aren't emitted at all; both cursors skip
+ * them without loading them.
+ */
+final class DiffEngine {
+
+    private final FileSource goldenImageFiles;
+    private final FileSource dirtyImageFiles;
+    private ImageFile nextGolden;
+    private ImageFile nextDirty;
+    private boolean started = false;
+    private final Set<String> prunedDirectories;
+
+    DiffEngine(FileSource pGoldenImageFiles, FileSource pDirtyImageFiles) {
+        this(pGoldenImageFiles, pDirtyImageFiles, Collections.<String>emptySet());
+    }
+
+    /**
+     * @param pPrunedDirectories The paths of the directories whose files are
+     * skipped (e.g. "/Windows/WinSxS/")
+     */
+    DiffEngine(FileSource pGoldenImageFiles, FileSource pDirtyImageFiles, Set<String> pPrunedDirectories) {
+        goldenImageFiles = pGoldenImageFiles;
+        dirtyImageFiles = pDirtyImageFiles;
+        prunedDirectories = pPrunedDirectories;
+    }
+
+    /**
+     * Returns the next pair of the comparison.
+     *
+     * @return The next pair or null if both images are processed completely.
+     *
+     * @throws TskCoreException If the files couldn't be read from the case
+     * database.
+     */
+    FilePair next() throws TskCoreException {
+        if (!started) {
+            nextGolden = nextFile(goldenImageFiles);
+            nextDirty = nextFile(dirtyImageFiles);
+            started = true;
+        }
+
+        if (nextGolden == null && nextDirty == null) {
+            return null;
+        }
+
+        int order;
+        if (nextGolden == null) {
+            order = 1;
+        } else if (nextDirty == null) {
+            order = -1;
+        } else {
+            order = FileSource.comparePaths(nextGolden, nextDirty);
+        }
+
+        FilePair pair;
+        if (order < 0) {
+            pair = new FilePair(nextGolden, null);
+            nextGolden = nextFile(goldenImageFiles);
+        } else if (order > 0) {
+            pair = new FilePair((ImageFile) null, nextDirty);
+            nextDirty = nextFile(dirtyImageFiles);
+        } else {
+            pair = new FilePair(nextGolden, nextDirty);
+            nextGolden = nextFile(goldenImageFiles);
+            nextDirty = nextFile(dirtyImageFiles);
+        }
+        return pair;
+    }
+
+    /**
+     * Returns the next file of a cursor which isn't below a pruned directory.
+     */
+    private ImageFile nextFile(FileSource pCursor) throws TskCoreException {
+        ImageFile file = pCursor.next();
+        while (file != null && !prunedDirectories.isEmpty()) {
+            String prunedDirectory = findPrunedDirectory(file.getParentPath());
+            if (prunedDirectory == null) {
+                break;
+            }
+            pCursor.skipDirectory(prunedDirectory);
+            file = pCursor.next();
+        }
+        return file;
+    }
+
+    private String findPrunedDirectory(String pParentPath) {
+        for (int end = pParentPath.indexOf('/', 1); end > 0; end = pParentPath.indexOf('/', end + 1)) {
+            String directory = pParentPath.substring(0, end + 1);
+            if (prunedDirectories.contains(directory)) {
+                return directory;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * DigestAlgorithm
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The digest algorithms the files of both images can be compared with.
+ * XXHASH64 is a fast non-cryptographic hash for plain equality checks, MD5
+ * and SHA256 are suitable for evidentiary output.
+ */
+enum DigestAlgorithm {
+
+    MD5("MD5", "MD5"),
+    SHA256("SHA-256", "SHA-256"),
+    XXHASH64("xxHash64", null);
+
+    private final String displayName;
+    private final String jcaName;
+
+    DigestAlgorithm(String pDisplayName, String pJcaName) {
+        displayName = pDisplayName;
+        jcaName = pJcaName;
+    }
+
+    /**
+     * Creates a new digester for this algorithm.
+     */
+    Digester createDigester() {
+        if (jcaName == null) {
+            return new XxHash64Digester();
+        }
+
+        try {
+            return new MessageDigester(MessageDigest.getInstance(jcaName));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(jcaName + " is not supported by the JRE", ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+
+    /**
+     * Formats a digest as lower case hex string.
+     */
+    static String toHex(byte[] pDigest) {
+        char[] hex = new char[pDigest.length * 2];
+        for (int i = 0; i < pDigest.length; i++) {
+            hex[i * 2] = Character.forDigit((pDigest[i] >> 4) & 0xF, 16);
+            hex[i * 2 + 1] = Character.forDigit(pDigest[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Parses a hex string into an existing digest buffer.
+     *
+     * @return False if the string isn't a hex digest of the buffer length.
+     */
+    static boolean fromHex(String pHex, byte[] pTarget) {
+        if (pHex == null || pHex.length() != pTarget.length * 2) {
+            return false;
+        }
+        for (int i = 0; i < pTarget.length; i++) {
+            int high = Character.digit(pHex.charAt(i * 2), 16);
+            int low = Character.digit(pHex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return false;
+            }
+            pTarget[i] = (byte) ((high << 4) | low);
+        }
+        return true;
+    }
+
+    /**
+     * Digester backed by a JCA MessageDigest.
+     */
+    private static final class MessageDigester implements Digester {
+
+        private final MessageDigest messageDigest;
+
+        MessageDigester(MessageDigest pMessageDigest) {
+            messageDigest = pMessageDigest;
+        }
+
+        @Override
+        public void update(byte[] pBuffer, int pOffset, int pLength) {
+            messageDigest.update(pBuffer, pOffset, pLength);
+        }
+
+        @Override
+        public int getLength() {
+            return messageDigest.getDigestLength();
+        }
+
+        @Override
+        public void digest(byte[] pTarget, int pOffset) {
+            try {
+                messageDigest.digest(pTarget, pOffset, messageDigest.getDigestLength());
+            } catch (DigestException ex) {
+                throw new IllegalArgumentException("The digest buffer is too small", ex);
+            }
+        }
+
+        @Override
+        public void reset() {
+            messageDigest.reset();
+        }
+    }
+}
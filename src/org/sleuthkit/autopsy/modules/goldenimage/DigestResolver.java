@@ -0,0 +1,268 @@
+/*
+ * DigestResolver
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Finds the digests of a file without reading it if they are known already,
+ * in this order:
+ * <ul>
+ * <li>The hash persisted in the case database, e.g. by the Hash Lookup
+ * module or an earlier run (only md5, so only if md5 is the only algorithm
+ * which is needed)</li>
+ * <li>The digests of the module: the journal of an interrupted job and the
+ * golden image digests shared by concurrent jobs</li>
+ * </ul>
+ * Otherwise the file has to be hashed. The block digests of large golden
+ * image files, which are hashed in blocks, are shared the same way. Computed md5 hashes are written back
+ * to the case database in batches, so later modules and re-runs don't read
+ * the file again. Files which aren't part of a case (the stand-ins of the
+ * benchmarks) only use the digests of the module.
+ */
+final class DigestResolver {
+
+    private static final Logger logger = Logger.getLogger(DigestResolver.class.getName());
+
+    // Amount of files whose hashes are written with one transaction, if the job doesn't set it
+    static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final SleuthkitCase sleuthkitCase;
+    private final ComparisonJournal journal;
+    private final GoldenIndexCache.Lease goldenIndex;
+    private final GoldenIndexCache.Lease blockIndex;
+    private final int batchSize;
+    private final ConcurrentLinkedQueue<AbstractFile> pendingFiles = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final AtomicLong persistedHits = new AtomicLong();
+    private final AtomicLong cachedHits = new AtomicLong();
+    private final AtomicLong writtenHashes = new AtomicLong();
+
+    /**
+     * @param pCase The case the computed hashes are written to, or null if
+     * the files aren't part of a case
+     * @param pJournal The journal of the job or null
+     * @param pGoldenIndex The shared digests of the golden image files, or
+     * null
+     * @param pBlockIndex The shared block digests of the large golden image
+     * files, or null
+     * @param pBatchSize The amount of files whose hashes are written at once
+     */
+    DigestResolver(SleuthkitCase pCase, ComparisonJournal pJournal, GoldenIndexCache.Lease pGoldenIndex, GoldenIndexCache.Lease pBlockIndex, int pBatchSize) {
+        sleuthkitCase = pCase;
+        journal = pJournal;
+        goldenIndex = pGoldenIndex;
+        blockIndex = pBlockIndex;
+        batchSize = Math.max(1, pBatchSize);
+    }
+
+    /**
+     * Looks up the digests of a file. A golden image file which isn't in the
+     * shared index is claimed: It must be passed to computed() or failed()
+     * once it was hashed.
+     *
+     * @param pAlgorithms The algorithms of the digests
+     * @param pDigests Receives the digests
+     * @param pShared True if the file is a golden image file whose digests
+     * are shared with other jobs
+     * @param pCancelled Stops waiting for another job if it returns true
+     *
+     * @return True if the digests were found, false if the file has to be
+     * hashed.
+     */
+    boolean resolve(ImageFile pFile, DigestAlgorithm[] pAlgorithms, byte[][] pDigests, boolean pShared, BooleanSupplier pCancelled) throws InterruptedException {
+        if (findKnown(pFile, pAlgorithms, pDigests)) {
+            return true;
+        }
+        if (pShared && goldenIndex != null && goldenIndex.getOrClaim(pFile.getId(), pDigests, pCancelled)) {
+            cachedHits.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Looks up the digests of a file like resolve(), but doesn't claim a
+     * golden image file or wait for the job which hashes it. Used for large
+     * files, which are hashed in blocks if their digests aren't known.
+     *
+     * @return True if the digests were found.
+     */
+    boolean lookup(ImageFile pFile, DigestAlgorithm[] pAlgorithms, byte[][] pDigests, boolean pShared) {
+        if (findKnown(pFile, pAlgorithms, pDigests)) {
+            return true;
+        }
+        if (pShared && goldenIndex != null && goldenIndex.get(pFile.getId(), pDigests)) {
+            cachedHits.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Looks up the block digests of a large golden image file or claims
+     * them. Claimed block digests must be passed to computedBlocks() or
+     * failedBlocks() once the file was hashed.
+     *
+     * @param pBlocks Receives the digests of the blocks
+     * @param pCancelled Stops waiting for another job if it returns true
+     *
+     * @return True if the block digests were found, false if the file has to
+     * be hashed.
+     */
+    boolean resolveBlocks(ImageFile pFile, byte[][] pBlocks, BooleanSupplier pCancelled) throws InterruptedException {
+        if (blockIndex != null && blockIndex.getOrClaim(pFile.getId(), pBlocks, pCancelled)) {
+            cachedHits.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Publishes the block digests of a large golden image file to the other
+     * jobs.
+     */
+    void computedBlocks(ImageFile pFile, byte[][] pBlocks) {
+        if (blockIndex != null) {
+            blockIndex.publish(pFile.getId(), pBlocks);
+        }
+    }
+
+    /**
+     * Gives up the claim of the block digests of a file which couldn't be
+     * hashed.
+     */
+    void failedBlocks(ImageFile pFile) {
+        if (blockIndex != null) {
+            blockIndex.abandon(pFile.getId());
+        }
+    }
+
+    /**
+     * Publishes the digests of a file which was hashed: To the other jobs if
+     * it's shared, to the journal and, if the md5 hash isn't in the case
+     * database yet, to the next batch of hashes which are written.
+     */
+    void computed(ImageFile pFile, DigestAlgorithm[] pAlgorithms, byte[][] pDigests, boolean pShared) {
+        if (pShared && goldenIndex != null) {
+            goldenIndex.publish(pFile.getId(), pDigests);
+        }
+        if (journal != null) {
+            journal.recordDigests(pFile.getId(), pDigests);
+        }
+        AbstractFile file = pFile.getAbstractFile();
+        if (file == null) {
+            return;
+        }
+        for (int i = 0; i < pAlgorithms.length; i++) {
+            if (pAlgorithms[i] == DigestAlgorithm.MD5) {
+                String md5 = file.getMd5Hash();
+                if (md5 == null || md5.isEmpty()) {
+                    file.setMd5Hash(DigestAlgorithm.toHex(pDigests[i]));
+                    pendingFiles.offer(file);
+                    pendingCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives up the claim of a file which couldn't be hashed.
+     */
+    void failed(ImageFile pFile, boolean pShared) {
+        if (pShared && goldenIndex != null) {
+            goldenIndex.abandon(pFile.getId());
+        }
+    }
+
+    /**
+     * @return True if a full batch of hashes is waiting to be written.
+     */
+    boolean isFlushDue() {
+        return pendingCount.get() >= batchSize;
+    }
+
+    /**
+     * Writes the pending hashes to the case database, one transaction per
+     * batch. Called by a single thread (the ResultWriter), so the hashes
+     * aren't written concurrently with the tags.
+     */
+    synchronized void flush() {
+        List<AbstractFile> batch = new ArrayList<>(batchSize);
+        AbstractFile file;
+        while ((file = pendingFiles.poll()) != null) {
+            pendingCount.decrementAndGet();
+            batch.add(file);
+            if (batch.size() == batchSize) {
+                save(batch);
+                batch.clear();
+            }
+        }
+        save(batch);
+    }
+
+    long getPersistedHits() {
+        return persistedHits.get();
+    }
+
+    long getCachedHits() {
+        return cachedHits.get();
+    }
+
+    long getWrittenHashes() {
+        return writtenHashes.get();
+    }
+
+    /**
+     * Looks up the digests of a file in the case database and the journal.
+     */
+    private boolean findKnown(ImageFile pFile, DigestAlgorithm[] pAlgorithms, byte[][] pDigests) {
+        AbstractFile file = pFile.getAbstractFile();
+        if (file != null && pAlgorithms.length == 1 && pAlgorithms[0] == DigestAlgorithm.MD5 && DigestAlgorithm.fromHex(file.getMd5Hash(), pDigests[0])) {
+            persistedHits.incrementAndGet();
+            return true;
+        }
+        if (journal != null && journal.getDigests(pFile.getId(), pDigests)) {
+            cachedHits.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private void save(List<AbstractFile> pBatch) {
+        if (pBatch.isEmpty()) {
+            return;
+        }
+        SleuthkitCase.CaseDbTransaction transaction = null;
+        try {
+            transaction = sleuthkitCase.beginTransaction();
+            for (AbstractFile file : pBatch) {
+                file.save(transaction);
+            }
+            transaction.commit();
+            writtenHashes.addAndGet(pBatch.size());
+        } catch (TskCoreException ex) {
+            logger.log(Level.WARNING, "The hashes of " + pBatch.size() + " files couldn't be written to the case database.", ex);
+            if (transaction != null) {
+                try {
+                    transaction.rollback();
+                } catch (TskCoreException ex1) {
+                    logger.log(Level.WARNING, "The transaction couldn't be rolled back.", ex1);
+                }
+            }
+        }
+    }
+}
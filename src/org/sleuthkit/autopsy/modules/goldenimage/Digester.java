@@ -0,0 +1,49 @@
+/*
+ * Digester
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+/**
+ * Incremental digest of a file content, used by the comparison. Instances are
+ * reusable after digest() and not thread safe. Completing a digest writes into
+ * a buffer of the caller, so hashing a file doesn't allocate anything.
+ */
+interface Digester {
+
+    /**
+     * Adds a part of the content to the digest.
+     */
+    void update(byte[] pBuffer, int pOffset, int pLength);
+
+    /**
+     * @return The length of the digest in bytes.
+     */
+    int getLength();
+
+    /**
+     * Completes the digest and resets the digester for the next file.
+     *
+     * @param pTarget The buffer the digest is written to
+     * @param pOffset The offset in the buffer
+     */
+    void digest(byte[] pTarget, int pOffset);
+
+    /**
+     * Completes the digest and resets the digester for the next file. Only
+     * for paths which aren't performance critical, as it allocates the
+     * result.
+     *
+     * @return The digest as lower case hex string.
+     */
+    default String digestToHex() {
+        byte[] digest = new byte[getLength()];
+        digest(digest, 0);
+        return DigestAlgorithm.toHex(digest);
+    }
+
+    /**
+     * Discards the content added so far.
+     */
+    void reset();
+}
@@ -0,0 +1,124 @@
+/*
+ * DirectoryRollup
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Rolled-up metadata digests of the directory subtrees of an image. The
+ * digest of a directory combines the path, size, timestamps and metadata
+ * address of every file below it, so two directories with the same digest
+ * contain the same files with the same metadata. The content isn't part of
+ * the digest: Unchanged subtrees are found by reading the metadata of the
+ * case database only.
+ */
+final class DirectoryRollup {
+
+    private static final String ROOT = "/";
+
+    // Sum of the file digests and amount of files per directory path (e.g. "/Windows/WinSxS/")
+    private final Map<String, long[]> directories = new HashMap<>();
+    private final XxHash64Digester digester = new XxHash64Digester();
+    private final byte[] digest = new byte[Long.BYTES];
+    private final ByteBuffer metadata = ByteBuffer.allocate(4 * Long.BYTES);
+
+    /**
+     * Reads the metadata of all files of a cursor.
+     *
+     * @param pCancelled Stops reading if it returns true
+     *
+     * @return The rollup or null if it was cancelled.
+     */
+    static DirectoryRollup create(FileCursor pCursor, BooleanSupplier pCancelled) throws TskCoreException {
+        DirectoryRollup rollup = new DirectoryRollup();
+        ImageFile file;
+        while ((file = pCursor.next()) != null) {
+            if (pCancelled.getAsBoolean()) {
+                return null;
+            }
+            rollup.add(file);
+        }
+        return rollup;
+    }
+
+    /**
+     * Adds a file to all of its parent directories.
+     */
+    void add(ImageFile pFile) {
+        long fileDigest = digest(FileCursor.getPath(pFile), pFile.getSize(), pFile.getMtime(), pFile.getCrtime(), pFile.getMetaAddr());
+        String parentPath = pFile.getParentPath();
+        for (int end = parentPath.lastIndexOf('/'); end > 0; end = parentPath.lastIndexOf('/', end - 1)) {
+            long[] directory = directories.get(parentPath.substring(0, end + 1));
+            if (directory == null) {
+                directory = new long[2];
+                directories.put(parentPath.substring(0, end + 1), directory);
+            }
+            directory[0] += fileDigest;
+            directory[1]++;
+        }
+    }
+
+    /**
+     * @return The amount of files below a directory.
+     */
+    long getFileCount(String pDirectory) {
+        long[] directory = directories.get(pDirectory);
+        return directory != null ? directory[1] : 0;
+    }
+
+    /**
+     * Finds the outermost directories with the same digest on both images.
+     * The root directory is never returned.
+     *
+     * @return The paths of the directories, sorted.
+     */
+    static List<String> findUnchangedDirectories(DirectoryRollup pGoldenImage, DirectoryRollup pDirtyImage) {
+        List<String> unchanged = new ArrayList<>();
+        for (Map.Entry<String, long[]> directory : pGoldenImage.directories.entrySet()) {
+            String path = directory.getKey();
+            if (pGoldenImage.isUnchanged(path, pDirtyImage) && !pGoldenImage.isUnchanged(getParent(path), pDirtyImage)) {
+                unchanged.add(path);
+            }
+        }
+        Collections.sort(unchanged);
+        return unchanged;
+    }
+
+    /**
+     * @return The parent directory of a directory (e.g. "/Windows/" for
+     * "/Windows/WinSxS/").
+     */
+    static String getParent(String pDirectory) {
+        return pDirectory.substring(0, pDirectory.lastIndexOf('/', pDirectory.length() - 2) + 1);
+    }
+
+    private boolean isUnchanged(String pDirectory, DirectoryRollup pDirtyImage) {
+        if (ROOT.equals(pDirectory)) {
+            return false;
+        }
+        long[] golden = directories.get(pDirectory);
+        long[] dirty = pDirtyImage.directories.get(pDirectory);
+        return golden != null && dirty != null && golden[0] == dirty[0] && golden[1] == dirty[1];
+    }
+
+    private long digest(String pPath, long pSize, long pMtime, long pCrtime, long pMetaAddr) {
+        byte[] path = pPath.getBytes(StandardCharsets.UTF_8);
+        digester.reset();
+        digester.update(path, 0, path.length);
+        metadata.clear();
+        metadata.putLong(pSize).putLong(pMtime).putLong(pCrtime).putLong(pMetaAddr);
+        digester.update(metadata.array(), 0, metadata.position());
+        digester.digest(digest, 0);
+        return ByteBuffer.wrap(digest).getLong();
+    }
+}
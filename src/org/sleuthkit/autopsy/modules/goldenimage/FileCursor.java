@@ -0,0 +1,192 @@
+/*
+ * FileCursor
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.Content;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.TskCoreException;
+import org.sleuthkit.datamodel.TskData;
+
+/**
+ * Streams the regular files of a datasource out of the case database, ordered
+ * by parent path, name and object id. The files are loaded in pages using the
+ * last returned file as key for the next page (no OFFSET rescans), so only
+ * one page is held in memory at a time no matter how many files the
+ * datasource contains.
+ *
+ * The database orders by binary collation (PostgreSQL is forced to the "C"
+ * collation), which is the same order as FileSource.comparePaths uses.
+ */
+final class FileCursor implements FileSource {
+
+    static final int DEFAULT_PAGE_SIZE = 10000;
+
+    private final SleuthkitCase sleuthkitCase;
+    private final long dataSourceId;
+    private final int pageSize;
+    private final String collate;
+    private Iterator<AbstractFile> page = Collections.emptyIterator();
+    private AbstractFile lastFile = null;
+    private boolean exhausted = false;
+    private String skippedDirectory = null;
+    private String excludedFileSystems = "";
+    private PipelineMetrics metrics = null;
+
+    FileCursor(SleuthkitCase pCase, Content pDataSource) {
+        this(pCase, pDataSource, DEFAULT_PAGE_SIZE);
+    }
+
+    FileCursor(SleuthkitCase pCase, Content pDataSource, int pPageSize) {
+        sleuthkitCase = pCase;
+        dataSourceId = pDataSource.getId();
+        pageSize = pPageSize;
+        collate = pCase.getDatabaseType() == TskData.DbType.POSTGRESQL ? " COLLATE \"C\"" : "";
+    }
+
+    /**
+     * Returns the next file of the datasource.
+     *
+     * @return The next file or null if all files were returned.
+     *
+     * @throws TskCoreException If the next page couldn't be queried.
+     */
+    @Override
+    public ImageFile next() throws TskCoreException {
+        while (true) {
+            if (!page.hasNext()) {
+                if (exhausted) {
+                    return null;
+                }
+                long startTime = System.nanoTime();
+                List<AbstractFile> files = sleuthkitCase.findAllFilesWhere(filesWhere(dataSourceId)
+                        + excludedFileSystems + keyCondition()
+                        + " ORDER BY parent_path" + collate + ", name" + collate + ", obj_id LIMIT " + pageSize);
+                if (metrics != null) {
+                    metrics.record(PipelineMetrics.Stage.QUERY, startTime, 0);
+                }
+                exhausted = files.size() < pageSize;
+                page = files.iterator();
+                if (!page.hasNext()) {
+                    return null;
+                }
+            }
+
+            lastFile = page.next();
+            if (skippedDirectory != null && nullToEmpty(lastFile.getParentPath()).startsWith(skippedDirectory)) {
+                continue;
+            }
+            skippedDirectory = null;
+            return CaseFile.of(lastFile);
+        }
+    }
+
+    /**
+     * Records the latency of the page queries.
+     */
+    void setMetrics(PipelineMetrics pMetrics) {
+        metrics = pMetrics;
+    }
+
+    /**
+     * Leaves out the files of file systems, e.g. file systems which are
+     * identical on both images. Must be called before the first file is
+     * returned.
+     */
+    void excludeFileSystems(Collection<Long> pFileSystemIds) {
+        StringBuilder ids = new StringBuilder();
+        for (Long fileSystemId : pFileSystemIds) {
+            ids.append(ids.length() == 0 ? "" : ",").append(fileSystemId);
+        }
+        excludedFileSystems = ids.length() == 0 ? "" : " AND fs_obj_id NOT IN (" + ids + ")";
+    }
+
+    /**
+     * Skips the files below a directory. The paths of the files are
+     * contiguous in the order of the cursor, so the next page starts after
+     * the directory without loading its files. Must be called when the last
+     * returned file is in the directory or directly in front of it.
+     *
+     * @param pDirectory The path of the directory (e.g. "/Windows/WinSxS/")
+     */
+    @Override
+    public void skipDirectory(String pDirectory) {
+        skippedDirectory = pDirectory;
+    }
+
+    /**
+     * Counts the files the cursor of the datasource returns without loading
+     * them.
+     */
+    static long count(SleuthkitCase pCase, Content pDataSource) throws TskCoreException {
+        return pCase.countFilesWhere(filesWhere(pDataSource.getId()));
+    }
+
+    /**
+     * Counts the files of a file system the cursor of its datasource
+     * returns.
+     */
+    static long count(SleuthkitCase pCase, Content pDataSource, long pFileSystemId) throws TskCoreException {
+        return pCase.countFilesWhere(filesWhere(pDataSource.getId()) + " AND fs_obj_id = " + pFileSystemId);
+    }
+
+    /**
+     * @return The parent path and name of a file (e.g.
+     * "/Windows/notepad.exe").
+     */
+    static String getPath(ImageFile pFile) {
+        return nullToEmpty(pFile.getParentPath()) + nullToEmpty(pFile.getName());
+    }
+
+    /**
+     * Looks up a directory of a datasource.
+     *
+     * @param pDirectory The path of the directory (e.g. "/Windows/WinSxS/")
+     *
+     * @return The directory or null if it doesn't exist.
+     */
+    static AbstractFile findDirectory(SleuthkitCase pCase, Content pDataSource, String pDirectory) throws TskCoreException {
+        int separator = pDirectory.lastIndexOf('/', pDirectory.length() - 2);
+        List<AbstractFile> directories = pCase.findAllFilesWhere("data_source_obj_id = " + pDataSource.getId()
+                + " AND meta_type = " + TskData.TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR.getValue()
+                + " AND parent_path = '" + escape(pDirectory.substring(0, separator + 1)) + "'"
+                + " AND name = '" + escape(pDirectory.substring(separator + 1, pDirectory.length() - 1)) + "'");
+        return directories.isEmpty() ? null : directories.get(0);
+    }
+
+    private static String filesWhere(long pDataSourceId) {
+        return "data_source_obj_id = " + pDataSourceId
+                + " AND meta_type = " + TskData.TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_REG.getValue()
+                + " AND parent_path IS NOT NULL AND name IS NOT NULL";
+    }
+
+    private String keyCondition() {
+        if (skippedDirectory != null) {
+            //All paths in the directory are less than the path with the next character after the trailing slash
+            String end = skippedDirectory.substring(0, skippedDirectory.length() - 1) + (char) (skippedDirectory.charAt(skippedDirectory.length() - 1) + 1);
+            return " AND parent_path" + collate + " >= '" + escape(end) + "'" + collate;
+        }
+        if (lastFile == null) {
+            return "";
+        }
+        String parentPath = "'" + escape(lastFile.getParentPath()) + "'" + collate;
+        String name = "'" + escape(lastFile.getName()) + "'" + collate;
+        return " AND (parent_path" + collate + " > " + parentPath
+                + " OR (parent_path = " + parentPath + " AND (name" + collate + " > " + name
+                + " OR (name = " + name + " AND obj_id > " + lastFile.getId() + "))))";
+    }
+
+    private static String escape(String pValue) {
+        return nullToEmpty(pValue).replace("'", "''");
+    }
+
+    private static String nullToEmpty(String pValue) {
+        return pValue == null ? "" : pValue;
+    }
+}
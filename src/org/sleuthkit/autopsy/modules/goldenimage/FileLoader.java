@@ -0,0 +1,43 @@
+/*
+ * FileLoader
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Loads files the comparison only knows by their object ids: the files the
+ * MoveDetector indexed, moved files and the golden image files of a baseline
+ * snapshot. Implemented by the CaseFileLoader over the case database and by
+ * the stand-ins of the benchmarks.
+ */
+interface FileLoader {
+
+    /**
+     * @return The file or null if it doesn't exist.
+     *
+     * @throws TskCoreException If the file couldn't be loaded.
+     */
+    ImageFile load(long pObjectId) throws TskCoreException;
+
+    /**
+     * Loads several files at once, by default one by one.
+     *
+     * @return The files which exist, in no particular order.
+     *
+     * @throws TskCoreException If the files couldn't be loaded.
+     */
+    default List<ImageFile> load(List<Long> pObjectIds) throws TskCoreException {
+        List<ImageFile> files = new ArrayList<>(pObjectIds.size());
+        for (Long objectId : pObjectIds) {
+            ImageFile file = load(objectId);
+            if (file != null) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+}
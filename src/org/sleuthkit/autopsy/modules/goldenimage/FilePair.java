@@ -0,0 +1,67 @@
+/*
+ * FilePair
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+
+/**
+ * A result of the DiffEngine: A golden image file with the file of the same
+ * path on the dirty image. One of the files is null if the path only exists
+ * on one of the images. If the dirty image is compared against a baseline
+ * snapshot, the golden image file is replaced by its snapshot entries (one
+ * per baseline, null if a baseline doesn't contain the path).
+ */
+final class FilePair {
+
+    private final ImageFile goldenImageFile;
+    private final ImageFile dirtyImageFile;
+    private final BaselineEntry[] baselineEntries;
+
+    FilePair(ImageFile pGoldenImageFile, ImageFile pDirtyImageFile) {
+        goldenImageFile = pGoldenImageFile;
+        dirtyImageFile = pDirtyImageFile;
+        baselineEntries = null;
+    }
+
+    FilePair(BaselineEntry[] pBaselineEntries, ImageFile pDirtyImageFile) {
+        goldenImageFile = null;
+        dirtyImageFile = pDirtyImageFile;
+        baselineEntries = pBaselineEntries;
+    }
+
+    ImageFile getGoldenImageFile() {
+        return goldenImageFile;
+    }
+
+    ImageFile getDirtyImageFile() {
+        return dirtyImageFile;
+    }
+
+    /**
+     * @return The snapshot entries of the golden image file or null if the
+     * dirty image is compared against the golden image itself.
+     */
+    BaselineEntry[] getBaselineEntries() {
+        return baselineEntries;
+    }
+
+    boolean isMatched() {
+        return (goldenImageFile != null || baselineEntries != null) && dirtyImageFile != null;
+    }
+
+    boolean isGoldenOnly() {
+        return dirtyImageFile == null;
+    }
+
+    boolean isDirtyOnly() {
+        return goldenImageFile == null && baselineEntries == null;
+    }
+
+    /**
+     * @return The amount of files contained in this pair (1 or 2).
+     */
+    int getFileCount() {
+        return isMatched() ? 2 : 1;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * FileSource
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * The regular files of an image in the order of comparePaths, as the
+ * DiffEngine merges them. Implemented by the FileCursor of the case database
+ * and by the in-memory cursors of the benchmarks.
+ */
+interface FileSource {
+
+    /**
+     * Returns the next file of the image.
+     *
+     * @return The next file or null if all files were returned.
+     *
+     * @throws TskCoreException If the next files couldn't be loaded.
+     */
+    ImageFile next() throws TskCoreException;
+
+    /**
+     * Skips the files below a directory. Must be called when the last
+     * returned file is in the directory or directly in front of it.
+     *
+     * @param pDirectory The path of the directory (e.g. "/Windows/WinSxS/")
+     */
+    void skipDirectory(String pDirectory);
+
+    /**
+     * Compares the paths of two files in the order the files are returned.
+     *
+     * @return A negative number, zero or a positive number if the path of the
+     * first file is less than, equal to or greater than the second one.
+     */
+    static int comparePaths(ImageFile pFirst, ImageFile pSecond) {
+        int result = compareCodePoints(nullToEmpty(pFirst.getParentPath()), nullToEmpty(pSecond.getParentPath()));
+        if (result != 0) {
+            return result;
+        }
+        return compareCodePoints(nullToEmpty(pFirst.getName()), nullToEmpty(pSecond.getName()));
+    }
+
+    /**
+     * Compares by unicode code points, which is the order of the binary
+     * collation of UTF-8 strings (String.compareTo orders surrogate pairs
+     * differently).
+     */
+    static int compareCodePoints(String pFirst, String pSecond) {
+        int i = 0;
+        int j = 0;
+        while (i < pFirst.length() && j < pSecond.length()) {
+            int first = pFirst.codePointAt(i);
+            int second = pSecond.codePointAt(j);
+            if (first != second) {
+                return first < second ? -1 : 1;
+            }
+            i += Character.charCount(first);
+            j += Character.charCount(second);
+        }
+        return (pFirst.length() - i) - (pSecond.length() - j);
+    }
+
+    static String nullToEmpty(String pValue) {
+        return pValue == null ? "" : pValue;
+    }
+}
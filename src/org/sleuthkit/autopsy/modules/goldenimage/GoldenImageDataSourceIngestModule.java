@@ -4,49 +4,67 @@
  */
 package org.sleuthkit.autopsy.modules.goldenimage;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ForkJoinPool;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import org.openide.util.Exceptions;
 import org.sleuthkit.autopsy.casemodule.Case;
-import org.sleuthkit.autopsy.casemodule.services.FileManager;
 import org.sleuthkit.autopsy.casemodule.services.TagsManager;
+import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.autopsy.ingest.DataSourceIngestModule;
 import org.sleuthkit.autopsy.ingest.DataSourceIngestModuleProgress;
 import org.sleuthkit.autopsy.ingest.IngestJobContext;
 import org.sleuthkit.autopsy.ingest.IngestModule;
 import org.sleuthkit.datamodel.AbstractFile;
 import org.sleuthkit.datamodel.Content;
-import org.sleuthkit.datamodel.HashUtility;
+import org.sleuthkit.datamodel.FileSystem;
+import org.sleuthkit.datamodel.SleuthkitCase;
 import org.sleuthkit.datamodel.TagName;
 import org.sleuthkit.datamodel.TskCoreException;
 
 /**
- * Golden Image Ingest Module. This module iterates through every file of an
- * (dirty) image. It checks if the file is contained in another (golden) image.
- * In a next steps it creates an md5-hash of each file and compares them.
- * Depending on its result, it will tag the file either as Safe, Changed or
- * Deleted (Or leaves it untagged).
+ * Golden Image Ingest Module. This module walks through the files of an
+ * (dirty) image and another (golden) image in path order and pairs the files
+ * with the same path, or looks up the files of the dirty image in a baseline
+ * snapshot of the golden image. In a next steps the ComparisonPipeline
+ * creates a digest (md5, sha-256 or xxHash64) of each pair and compares them.
+ * Depending on its result, it will tag the file either as Safe, Changed,
+ * Deleted or New (Or leaves it untagged).
  */
 class GoldenImageDataSourceIngestModule implements DataSourceIngestModule {
 
+    private static final Logger logger = Logger.getLogger(GoldenImageDataSourceIngestModule.class.getName());
+
+    // Time in seconds the stages get to stop when the job ends with an error
+    private static final long SHUTDOWN_TIMEOUT = 30;
+
     // private final boolean skipKnownFiles;
     private IngestJobContext context = null;
     private final GoldenImageModuleIngestJobSettings settings;
-    private final ArrayList<AbstractFile> comparisonFailFiles;
     private TagName giCustomDeletedTag = null;
-    private ForkJoinPool executor;
+    private final List<Long> excludedFileSystems = new ArrayList<>();
+    private volatile ComparisonPipeline pipeline = null;
+    private ComparisonDriver driver = null;
     private Content dirtyImageDS = null;
     private Content goldenImageDS = null;
     private DataSourceIngestModuleProgress progressBar = null;
-    private FileManager fileManager = null;
+    private ComparisonProgress progress = null;
+    private PipelineMetrics metrics = null;
     private TagsManager tagsManager = null;
+    private SleuthkitCase sleuthkitCase = null;
 
     GoldenImageDataSourceIngestModule(GoldenImageModuleIngestJobSettings pSettings) {
         settings = pSettings;
-        comparisonFailFiles = new ArrayList<>();
-        executor = new ForkJoinPool();
     }
 
     @Override
@@ -55,194 +73,487 @@ class GoldenImageDataSourceIngestModule implements DataSourceIngestModule {
 
     }
 
+    @Override
+    public void shutDown() {
+        if (pipeline != null) {
+            pipeline.shutdownNow();
+        }
+    }
+
     @Override
     public ProcessResult process(Content dataSource, DataSourceIngestModuleProgress pProgressBar) {
         dirtyImageDS = dataSource;
         progressBar = pProgressBar;
+        progress = new ComparisonProgress(pProgressBar);
+        metrics = new PipelineMetrics();
 
         tagsManager = Case.getCurrentCase().getServices().getTagsManager();
         goldenImageDS = settings.getSelectedDatasource();
 
-        if (goldenImageDS == null) {
+        if (goldenImageDS == null && (!settings.isBaselineComparison() || settings.isExportBaseline())) {
             throw new IllegalStateException("Golden Image DS Ingest Module: The Golden Image Datasource is null.");
         }
 
+        //Multiple golden images are compared against their baseline snapshots in one pass
+        boolean multipleGoldenImages = !settings.isBaselineComparison() && settings.getGoldenDataSourceIds().size() > 1;
+
+        BaselineSet baselines = null;
+        GoldenIndexCache.Lease goldenIndex = null;
+        GoldenIndexCache.Lease blockIndex = null;
+        ComparisonJournal journal = null;
+        ComparisonState state = null;
+        ResultWriter resultWriter = null;
         try {
-            fileManager = Case.getCurrentCase().getServices().getFileManager();
-            List<AbstractFile> allFiles = fileManager.findFiles(goldenImageDS, "%");
-            if (!allFiles.isEmpty()) {
-                ArrayList<FileWorkerThread> taskList = new ArrayList<>();
-                progressBar.switchToDeterminate(allFiles.size());
-                for (AbstractFile aFile : allFiles) {
-
-                    //Check if the AbstractFile is a File. Continue if it's a directory or similar.
-                    if (!aFile.isFile() || !aFile.canRead()) {
-                        progressBar.progress("Jumping over Non-File.");
-                        continue;
-                    }
+            sleuthkitCase = Case.getCurrentCase().getSleuthkitCase();
+
+            if (settings.isExportBaseline() && !multipleGoldenImages) {
+                progressBar.progress("Exporting Baseline Snapshot");
+                if (!new BaselineExporter(sleuthkitCase, settings.getDigestAlgorithm()).export(goldenImageDS, getBaselinePath(), context::dataSourceIngestIsCancelled)) {
+                    return IngestModule.ProcessResult.OK;
+                }
+            }
 
-                    FileWorkerThread fileWorkerThread = new FileWorkerThread(aFile);
-                    executor.submit(fileWorkerThread);
+            if (!settings.getManifestPath().isEmpty()) {
+                progressBar.progress("Importing Hash Manifest");
+                newManifestImporter().importIfChanged(Paths.get(settings.getManifestPath()), getBaselinePath());
+            }
 
+            if (settings.isBaselineComparison()) {
+                baselines = new BaselineSet();
+                Path baselinePath = getBaselinePath();
+                baselines.add(BaselineSnapshot.open(baselinePath), baselinePath.getFileName().toString());
+            } else if (multipleGoldenImages) {
+                baselines = openGoldenImageBaselines();
+                if (baselines == null) {
+                    return IngestModule.ProcessResult.OK;
+                }
+            } else {
+                //Jobs comparing against the same golden image share its digests
+                goldenIndex = GoldenImageIngestModuleFactory.getGoldenIndexCache().acquire(Case.getCurrentCase().getCaseDirectory(),
+                        goldenImageDS.getId(), settings.getDigestAlgorithms(), settings.getGoldenIndexCacheSize() * 1024L * 1024L);
+                if (!settings.isDirectCompare()) {
+                    blockIndex = GoldenImageIngestModuleFactory.getGoldenIndexCache().acquireBlocks(Case.getCurrentCase().getCaseDirectory(),
+                            goldenImageDS.getId(), settings.getDigestAlgorithms().get(0), settings.getBlockSize(), settings.getGoldenIndexCacheSize() * 1024L * 1024L);
                 }
             }
 
-            //Stop processing if requested
-            if (context.dataSourceIngestIsCancelled()) {
+            String configuration = getConfiguration(baselines);
+            journal = openJournal(baselines, configuration);
+            state = openState(baselines, configuration);
+            DigestResolver digestResolver = new DigestResolver(sleuthkitCase, journal, goldenIndex, blockIndex, settings.getResultBatchSize());
+            String deletedTag = GoldenImageIngestModuleFactory.giTagDeletedPrefix + dirtyImageDS.getName();
+            ResultSink resultSink = new CaseResultSink(tagsManager, GoldenImageIngestModuleFactory.giTagChanged, GoldenImageIngestModuleFactory.giTagGood,
+                    GoldenImageIngestModuleFactory.giTagNew, GoldenImageIngestModuleFactory.giTagMoved, getCustomDeletedTag(dirtyImageDS.getName()));
+            resultWriter = new ResultWriter(resultSink, settings.getResultBatchSize(), settings.getResultFlushInterval(), settings.getMaxPairsInFlight(),
+                    journal, state, digestResolver, metrics, deletedTag);
+            FileLoader fileLoader = new CaseFileLoader(sleuthkitCase);
+            pipeline = new ComparisonPipeline(settings, resultWriter, deletedTag, baselines, digestResolver, fileLoader, journal, state,
+                    context::dataSourceIngestIsCancelled, metrics);
+            driver = new ComparisonDriver(pipeline, resultWriter, fileLoader, context::dataSourceIngestIsCancelled, progress);
+            if (!(baselines != null ? compareBaseline(baselines) : compareImages())) {
+                return IngestModule.ProcessResult.OK;
+            }
+            if (!driver.finish()) {
                 return IngestModule.ProcessResult.OK;
             }
 
-            int amountOfTasks = executor.getQueuedSubmissionCount();
-            progressBar.switchToDeterminate(amountOfTasks);
+            if (baselines != null && baselines.size() > 1) {
+                reportScores(baselines);
+            }
 
-            executor.shutdown();
-            try {
-                while (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
-                    progressBar.progress(amountOfTasks - executor.getQueuedSubmissionCount());
-                    progressBar.progress("Comparing Files");
-                }
+            //The job is finished, so there is nothing to resume
+            state.commit();
+            if (journal != null) {
+                journal.delete();
+                journal = null;
+            }
 
-            } catch (InterruptedException ex) {
-                Exceptions.printStackTrace(ex);
+            logger.log(Level.INFO, "{0} digests were taken from the case database and {1} from the module''s caches, {2} computed md5 hashes were written to the case database.",
+                    new Object[]{digestResolver.getPersistedHits(), digestResolver.getCachedHits(), digestResolver.getWrittenHashes()});
+            if (pipeline.getFailedComparisons() > 0 || resultWriter.getFailedWrites() > 0) {
+                logger.log(Level.WARNING, "{0} file pairs couldn''t be compared and {1} results couldn''t be written.",
+                        new Object[]{pipeline.getFailedComparisons(), resultWriter.getFailedWrites()});
             }
 
             return IngestModule.ProcessResult.OK;
 
-        } catch (TskCoreException ex) {
+        } catch (TskCoreException | IOException ex) {
             Exceptions.printStackTrace(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            //The stages write to the journal and the state, so they are stopped before both are closed
+            if (resultWriter != null) {
+                stopStages(resultWriter);
+            }
+            if (pipeline != null) {
+                writeMetrics();
+            }
+            if (goldenIndex != null) {
+                goldenIndex.close();
+            }
+            if (blockIndex != null) {
+                blockIndex.close();
+            }
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException ex) {
+                    Exceptions.printStackTrace(ex);
+                }
+            }
+            if (state != null) {
+                try {
+                    state.close();
+                } catch (IOException ex) {
+                    Exceptions.printStackTrace(ex);
+                }
+            }
+            if (baselines != null) {
+                try {
+                    baselines.close();
+                } catch (IOException ex) {
+                    Exceptions.printStackTrace(ex);
+                }
+            }
         }
-
         return IngestModule.ProcessResult.ERROR;
     }
 
-    private TagName getCustomDeletedTag(String pDirtyImageName) {
-        if (giCustomDeletedTag != null) {
-            return giCustomDeletedTag;
+    /**
+     * Compares the partitions and directories of both images if enabled and
+     * passes the pairs of the remaining files to the pipeline.
+     *
+     * @return False if the job was cancelled.
+     */
+    private boolean compareImages() throws TskCoreException, InterruptedException {
+        long amountOfFiles = FileCursor.count(sleuthkitCase, goldenImageDS) + FileCursor.count(sleuthkitCase, dirtyImageDS);
+        progress.start("Comparing Files", pipeline, amountOfFiles);
+
+        if (settings.isSkipIdenticalPartitions() && !skipIdenticalFileSystems()) {
+            return false;
         }
 
-        TagsManager tagsManager = Case.getCurrentCase().getServices().getTagsManager();
-        try {
-            giCustomDeletedTag = tagsManager.addTagName("DI_DELETED_" + pDirtyImageName, "The file exists on the Golden Image, but not on the Dirty Image.", TagName.HTML_COLOR.LIME);
-        } catch (TagsManager.TagNameAlreadyExistsException ex) {
-            try {
-                for (TagName tagName : tagsManager.getAllTagNames()) {
-                    if (giCustomDeletedTag != null) {
-                        break;
-                    }
+        Set<String> prunedDirectories = Collections.emptySet();
+        if (settings.isPruneUnchangedDirectories() && !settings.isStrictVerification()) {
+            prunedDirectories = pruneUnchangedDirectories();
+            if (prunedDirectories == null) {
+                return false;
+            }
+        }
 
-                    if (tagName.getDisplayName().equals("DI_DELETED_" + pDirtyImageName)) {
-                        giCustomDeletedTag = tagName;
-                    }
+        progress.phase("Comparing Files");
+        return driver.compareImages(new DiffEngine(newFileCursor(goldenImageDS), newFileCursor(dirtyImageDS), prunedDirectories));
+    }
+
+    /**
+     * Compares the partition layout and content of both images and tags the
+     * root directories of the file systems which are identical. Their files
+     * are left out of the comparison.
+     *
+     * @return False if the job was cancelled.
+     */
+    private boolean skipIdenticalFileSystems() throws TskCoreException, InterruptedException {
+        progress.phase("Comparing Partitions");
+        PartitionMatcher partitionMatcher = new PartitionMatcher(settings.isStrictVerification());
+        Map<FileSystem, FileSystem> identicalFileSystems = partitionMatcher.findIdenticalFileSystems(goldenImageDS, dirtyImageDS, context::dataSourceIngestIsCancelled);
+        if (identicalFileSystems == null) {
+            driver.cancel();
+            return false;
+        }
+
+        for (Map.Entry<FileSystem, FileSystem> fileSystems : identicalFileSystems.entrySet()) {
+            AbstractFile rootDirectory = null;
+            for (Content child : fileSystems.getKey().getChildren()) {
+                if (child instanceof AbstractFile) {
+                    rootDirectory = (AbstractFile) child;
+                    break;
                 }
-            } catch (TskCoreException ex1) {
-                Exceptions.printStackTrace(ex1);
             }
-        } catch (TskCoreException ex) {
-            Exceptions.printStackTrace(ex);
+            if (rootDirectory == null) {
+                continue;
+            }
+
+            long fileCount = FileCursor.count(sleuthkitCase, dirtyImageDS, fileSystems.getKey().getId());
+            pipeline.submitIdenticalFileSystem(CaseFile.of(rootDirectory), fileCount, partitionMatcher.describeMatch());
+            excludedFileSystems.add(fileSystems.getKey().getId());
+            excludedFileSystems.add(fileSystems.getValue().getId());
+            logger.log(Level.INFO, "The file system {0} with {1} files of {2} matches the golden image and isn''t compared. {3}.",
+                    new Object[]{fileSystems.getKey().getName(), fileCount, dirtyImageDS.getName(), partitionMatcher.describeMatch()});
         }
+        return true;
+    }
 
-        return giCustomDeletedTag;
+    /**
+     * @return A cursor over the files of an image, without the files of
+     * identical file systems.
+     */
+    private FileCursor newFileCursor(Content pImage) {
+        FileCursor cursor = new FileCursor(sleuthkitCase, pImage);
+        cursor.excludeFileSystems(excludedFileSystems);
+        cursor.setMetrics(metrics);
+        return cursor;
     }
 
     /**
-     * This method searches for a file by filename and filepath in the given
-     * Datasource.
+     * Compares the rolled-up metadata of the directories of both images and
+     * tags the outermost unchanged directories of the dirty image.
      *
-     * @param pDataSource The Datasource in which the file should be searched in
-     * @param pFile The File which should be found in the Datasource
-     *
-     * @return Returns an AbstractFile if the file was found in the datasource.
-     * Returns Null if it wasn't found.
+     * @return The unchanged directories, whose files don't have to be
+     * compared, or null if the job was cancelled.
      */
-    private AbstractFile findFile(Content pDataSource, AbstractFile pFile) {
-        if (pFile.getName() == null || pFile.getName().equals("") || pFile.getParentPath() == null || pFile.getParentPath().equals("")) {
+    private Set<String> pruneUnchangedDirectories() throws TskCoreException, InterruptedException {
+        progress.phase("Comparing Directories");
+        DirectoryRollup goldenImageRollup = DirectoryRollup.create(newFileCursor(goldenImageDS), context::dataSourceIngestIsCancelled);
+        DirectoryRollup dirtyImageRollup = goldenImageRollup != null
+                ? DirectoryRollup.create(newFileCursor(dirtyImageDS), context::dataSourceIngestIsCancelled) : null;
+        if (dirtyImageRollup == null) {
+            driver.cancel();
             return null;
         }
 
-        try {
-            ArrayList<AbstractFile> foundFiles = new ArrayList<>(fileManager.findFiles(pDataSource, (pFile.getName() != null ? pFile.getName() : ""), (pFile.getParentPath() != null ? pFile.getParentPath() : "")));
-            if (foundFiles.size() > 0) {
-                return foundFiles.get(0);
+        Set<String> prunedDirectories = new HashSet<>();
+        long prunedFiles = 0;
+        for (String directory : DirectoryRollup.findUnchangedDirectories(goldenImageRollup, dirtyImageRollup)) {
+            AbstractFile dirtyImageDirectory = FileCursor.findDirectory(sleuthkitCase, dirtyImageDS, directory);
+            if (dirtyImageDirectory != null) {
+                pipeline.submitUnchangedDirectory(CaseFile.of(dirtyImageDirectory), dirtyImageRollup.getFileCount(directory));
+                prunedDirectories.add(directory);
+                prunedFiles += dirtyImageRollup.getFileCount(directory);
             }
+        }
+        logger.log(Level.INFO, "{0} directories with {1} files of {2} are unchanged and aren''t compared.",
+                new Object[]{prunedDirectories.size(), prunedFiles, dirtyImageDS.getName()});
+        return prunedDirectories;
+    }
 
-        } catch (TskCoreException ex) {
-            Exceptions.printStackTrace(ex);
+    /**
+     * Looks up every file of the dirty image in the baseline snapshots. If
+     * the dirty image is compared against a single baseline, the entries
+     * which weren't found afterwards were deleted: They are tagged if the
+     * snapshot belongs to the golden image selected in this case, otherwise
+     * their paths are listed in the module folder of the case.
+     *
+     * @return False if the job was cancelled.
+     */
+    private boolean compareBaseline(BaselineSet pBaselines) throws TskCoreException, InterruptedException, IOException {
+        long amountOfFiles = FileCursor.count(sleuthkitCase, dirtyImageDS);
+        for (int i = 0; i < pBaselines.size(); i++) {
+            amountOfFiles += pBaselines.get(i).getEntryCount();
         }
+        progress.start("Comparing Files", pipeline, amountOfFiles);
 
-        return null;
+        FileCursor dirtyImageCursor = new FileCursor(sleuthkitCase, dirtyImageDS);
+        dirtyImageCursor.setMetrics(metrics);
+        boolean goldenImageInCase = goldenImageDS != null && goldenImageDS.getId() == pBaselines.get(0).getDataSourceId();
+        return driver.compareBaseline(pBaselines, dirtyImageCursor, goldenImageInCase, getReportPath("_deleted.txt"));
     }
 
     /**
-     * This method takes an Abstract File, checks if its hash is already
-     * calculated, if not it tries to calculate it.
-     *
-     * @param AbstractFile The Abstract File of which the hash should be checked
-     * & calculated.
-     * @return boolean true if the hash was calculated, false if it already
-     * exists or an error occured.
+     * Opens the baseline snapshots of all selected golden images. A snapshot
+     * is exported first if it doesn't exist yet, uses another digest
+     * algorithm or a new export is requested.
      *
+     * @return The baselines or null if the job was cancelled.
      */
-    private boolean calculateHash(AbstractFile pFile) {
-        if (pFile.isFile() && pFile.canRead() && (pFile.getMd5Hash() == null || pFile.getMd5Hash().isEmpty())) {
-            try {
-                HashUtility.calculateMd5(pFile);
-                return true;
-            } catch (Exception ex) {
-                String uniquePath = "";
-                try {
-                    uniquePath = pFile.getUniquePath();
-                } catch (TskCoreException ex1) {
-                    return false;
+    private BaselineSet openGoldenImageBaselines() throws TskCoreException, IOException {
+        BaselineSet baselines = new BaselineSet();
+        try {
+            BaselineExporter exporter = new BaselineExporter(sleuthkitCase, settings.getDigestAlgorithm());
+            for (long goldenImageId : settings.getGoldenDataSourceIds()) {
+                //The dirty image can't be its own golden image
+                if (goldenImageId == dirtyImageDS.getId()) {
+                    continue;
                 }
-                return false;
+                Content goldenImage = settings.getDatasourceById(goldenImageId);
+                if (goldenImage == null) {
+                    logger.log(Level.WARNING, "The golden image with the id {0} doesn''t exist in the case.", goldenImageId);
+                    continue;
+                }
+
+                Path snapshotPath = getSnapshotPath(goldenImage);
+                BaselineSnapshot snapshot = Files.exists(snapshotPath) && !settings.isExportBaseline() ? BaselineSnapshot.open(snapshotPath) : null;
+                if (snapshot != null && snapshot.getAlgorithm() != settings.getDigestAlgorithm()) {
+                    snapshot.close();
+                    snapshot = null;
+                }
+                if (snapshot == null) {
+                    progressBar.progress("Exporting Baseline Snapshot of " + goldenImage.getName());
+                    if (!exporter.export(goldenImage, snapshotPath, context::dataSourceIngestIsCancelled)) {
+                        baselines.close();
+                        return null;
+                    }
+                    snapshot = BaselineSnapshot.open(snapshotPath);
+                }
+                baselines.add(snapshot, goldenImage.getName());
             }
+        } catch (TskCoreException | IOException | RuntimeException ex) {
+            baselines.close();
+            throw ex;
         }
-        return false;
+        return baselines;
     }
 
-    private class FileWorkerThread implements Runnable {
+    /**
+     * Opens the journal of the job. If an interrupted job with the same
+     * images and settings left a journal behind, the job resumes where it
+     * stopped.
+     *
+     * @return The journal or null if the job can't be resumed.
+     */
+    private ComparisonJournal openJournal(BaselineSet pBaselines, String pConfiguration) throws IOException {
+        //The match scores of multiple golden images can't be resumed
+        if (!settings.isResumeInterruptedJobs() || (pBaselines != null && pBaselines.size() > 1)) {
+            return null;
+        }
 
-        private final AbstractFile goldenImageFile;
+        ComparisonJournal journal = new ComparisonJournal(getReportPath(ComparisonJournal.EXTENSION), pConfiguration);
+        if (journal.isResumed()) {
+            logger.log(Level.INFO, "Resuming the interrupted comparison of {0}, the results of {1} files were already written.",
+                    new Object[]{dirtyImageDS.getName(), journal.getCompletedFileCount()});
+        }
+        return journal;
+    }
 
-        public FileWorkerThread(AbstractFile pGoldenImageFile) {
-            goldenImageFile = pGoldenImageFile;
+    /**
+     * Opens the results of the last comparison of the dirty image. If it had
+     * the same configuration, the files whose metadata didn't change aren't
+     * compared again.
+     */
+    private ComparisonState openState(BaselineSet pBaselines, String pConfiguration) throws IOException {
+        //The match scores of multiple golden images need every file
+        boolean keepUnchanged = settings.isIncrementalComparison() && (pBaselines == null || pBaselines.size() == 1);
+        ComparisonState state = new ComparisonState(getReportPath(ComparisonState.EXTENSION), pConfiguration, keepUnchanged);
+        if (state.getPreviousResultCount() > 0) {
+            logger.log(Level.INFO, "{0} was compared before, {1} results are kept if the metadata of their files didn''t change.",
+                    new Object[]{dirtyImageDS.getName(), state.getPreviousResultCount()});
         }
+        return state;
+    }
 
-        @Override
-        public void run() {
-            AbstractFile dirtyImageFile = findFile(dirtyImageDS, goldenImageFile);
+    /**
+     * @return A description of everything which changes the results of the
+     * job, the journal and the state of another configuration aren't reused.
+     */
+    private String getConfiguration(BaselineSet pBaselines) throws IOException {
+        String golden;
+        if (pBaselines == null) {
+            golden = "image:" + goldenImageDS.getId();
+        } else if (!settings.getManifestPath().isEmpty()) {
+            //The snapshot is imported again if the manifest changes, its modification time isn't stable
+            golden = "manifest:" + newManifestImporter().describeSource(Paths.get(settings.getManifestPath()));
+        } else if (settings.isBaselineComparison()) {
+            golden = "baseline:" + getBaselinePath() + "@" + Files.getLastModifiedTime(getBaselinePath()).toMillis();
+        } else {
+            golden = "images:" + settings.getGoldenDataSourceIds();
+        }
+        return golden + "|dirty:" + dirtyImageDS.getId() + "|" + settings.getDigestAlgorithms()
+                + "|directCompare:" + settings.isDirectCompare() + "|largeFiles:" + settings.getLargeFileThreshold() + "/" + settings.getBlockSize()
+                + "|timestamps:" + settings.isCompareTimestamps() + "|metaAddr:" + settings.isCompareMetadataAddress()
+                + "|moves:" + settings.isDetectMoves() + "|prune:" + settings.isPruneUnchangedDirectories()
+                + "|partitions:" + settings.isSkipIdenticalPartitions() + "|strict:" + settings.isStrictVerification();
+    }
 
+    private ManifestImporter newManifestImporter() {
+        return new ManifestImporter(settings.getDigestAlgorithm(), settings.getManifestRootPrefix());
+    }
 
-            //Check if dirtyImageFile exists & is readable
-            if (dirtyImageFile != null && dirtyImageFile.isFile() && dirtyImageFile.canRead()) {
-                calculateHash(dirtyImageFile);
-                calculateHash(goldenImageFile);
+    /**
+     * Writes the match scores of the baselines to the log and the module
+     * folder of the case.
+     */
+    private void reportScores(BaselineSet pBaselines) throws TskCoreException, IOException {
+        String scores = pBaselines.describeScores(FileCursor.count(sleuthkitCase, dirtyImageDS));
+        Path scoresReport = getReportPath("_scores.txt");
+        Files.write(scoresReport, scores.getBytes(StandardCharsets.UTF_8));
+        logger.log(Level.INFO, "Match scores of the golden images for {0}:{1}{2}",
+                new Object[]{dirtyImageDS.getName(), System.lineSeparator(), scores});
+    }
 
-                if (dirtyImageFile.getMd5Hash() == null || goldenImageFile.getMd5Hash() == null) {
-                    //Can't compare - One of the hashes is missing
-                    comparisonFailFiles.add(goldenImageFile);
-                } else if (dirtyImageFile.getMd5Hash().equals(goldenImageFile.getMd5Hash())) {
-                    try {
-                        tagsManager.addContentTag(dirtyImageFile, GoldenImageIngestModuleFactory.giTagGood, "");
-                    } catch (TskCoreException ex) {
-                        return;
-                    }
+    /**
+     * Writes the summary of the stage metrics to the log and next to the
+     * reports of the dirty image, also if the job was cancelled.
+     */
+    private void writeMetrics() {
+        String summary = metrics.summary();
+        logger.log(Level.INFO, "Stage metrics of the comparison of {0}:\n{1}", new Object[]{dirtyImageDS.getName(), summary});
+        try {
+            Files.write(getReportPath("_metrics.txt"), summary.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "The stage metrics couldn't be written.", ex);
+        }
+    }
 
-                } else {
-                    try {
-                        tagsManager.addContentTag(dirtyImageFile, GoldenImageIngestModuleFactory.giTagChanged, "The Content of this file is different from it's equivalent on the golden image.");
-                    } catch (TskCoreException ex) {
-                        return;
-                    }
+    /**
+     * @return A report file of the dirty image in the module folder of the
+     * case.
+     */
+    private Path getReportPath(String pSuffix) throws IOException {
+        Path report = Paths.get(Case.getCurrentCase().getModuleDirectory(), "GoldenImage", dirtyImageDS.getName() + "_" + dirtyImageDS.getId() + pSuffix);
+        Files.createDirectories(report.getParent());
+        return report;
+    }
 
-                }
+    /**
+     * @return The baseline snapshot file of the settings or the one of the
+     * manifest or golden image in the module folder of the case.
+     */
+    private Path getBaselinePath() {
+        if (!settings.getBaselinePath().isEmpty()) {
+            return Paths.get(settings.getBaselinePath());
+        }
+        if (!settings.getManifestPath().isEmpty()) {
+            return Paths.get(Case.getCurrentCase().getModuleDirectory(), "GoldenImage", Paths.get(settings.getManifestPath()).getFileName() + BaselineSnapshot.EXTENSION);
+        }
+        if (goldenImageDS == null) {
+            throw new IllegalStateException("Golden Image DS Ingest Module: Neither a baseline snapshot nor a Golden Image Datasource is selected.");
+        }
+        return getSnapshotPath(goldenImageDS);
+    }
+
+    /**
+     * @return The baseline snapshot file of a golden image in the module
+     * folder of the case.
+     */
+    private static Path getSnapshotPath(Content pGoldenImage) {
+        return Paths.get(Case.getCurrentCase().getModuleDirectory(), "GoldenImage", pGoldenImage.getName() + "_" + pGoldenImage.getId() + BaselineSnapshot.EXTENSION);
+    }
+
+    /**
+     * Stops all stages and waits a bounded time until the read and digest
+     * threads ended and the result writer flushed the buffered results. Once
+     * the job finished or was cancelled they are already stopped, after an
+     * error they may still be running.
+     */
+    private void stopStages(ResultWriter pResultWriter) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            boolean stopped = true;
+            if (pipeline != null) {
+                pipeline.shutdownNow();
+                stopped = pipeline.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
             } else {
-                try {
-                    tagsManager.addContentTag(goldenImageFile, getCustomDeletedTag(dirtyImageDS.getName()), "The file exists on the Golden Image, but not on the Dirty Image.");
-                } catch (TskCoreException ex) {
-                    return;
-                }
+                pResultWriter.shutdownNow();
+            }
+            stopped &= pResultWriter.finish(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+            if (!stopped) {
+                logger.log(Level.WARNING, "The comparison of {0} didn''t stop within {1} seconds, the journal may miss its last results.",
+                        new Object[]{dirtyImageDS.getName(), SHUTDOWN_TIMEOUT});
             }
+        } catch (InterruptedException ex) {
+            interrupted = true;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized TagName getCustomDeletedTag(String pDirtyImageName) {
+        if (giCustomDeletedTag == null) {
+            giCustomDeletedTag = GoldenImageIngestModuleFactory.getOrAddTagName(tagsManager, GoldenImageIngestModuleFactory.giTagDeletedPrefix + pDirtyImageName, "The file exists on the Golden Image, but not on the Dirty Image.");
         }
+
+        return giCustomDeletedTag;
     }
 }
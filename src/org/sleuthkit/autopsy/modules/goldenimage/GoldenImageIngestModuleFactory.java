@@ -26,29 +26,42 @@ public class GoldenImageIngestModuleFactory  extends IngestModuleFactoryAdapter{
     private static final String VERSION_NUMBER = "1.0.0";
     public static String giTagChangedName = "DI_Changed";
     public static String giTagGoodName = "DI_Good";
+    public static String giTagNewName = "DI_New";
+    public static String giTagMovedName = "DI_Moved";
+    public static String giTagDeletedPrefix = "DI_DELETED_";
     public static TagName giTagChanged;
     public static TagName giTagGood;
+    public static TagName giTagNew;
+    public static TagName giTagMoved;
+    
+    // Shared by all ingest jobs, the budget is replaced by the settings of each job
+    private static final GoldenIndexCache goldenIndexCache = new GoldenIndexCache(256 * 1024L * 1024L);
     
     public GoldenImageIngestModuleFactory(){
 	   super();
 	   
 	   //Register Tags
 	    TagsManager tagsManager = Case.getCurrentCase().getServices().getTagsManager();
+	    giTagChanged = getOrAddTagName(tagsManager, giTagChangedName, "The file exists on the golden image, but the content was changed.");
+	    giTagGood = getOrAddTagName(tagsManager, giTagGoodName, "The file exists on the golden image and wasn't changed.");
+	    giTagNew = getOrAddTagName(tagsManager, giTagNewName, "The file exists on the dirty image, but not on the golden image.");
+	    giTagMoved = getOrAddTagName(tagsManager, giTagMovedName, "The file exists on the golden image at another path, but wasn't changed.");
+    }
+    
+    /**
+     * Adds a tag name to the case or returns the existing one if a tag with
+     * this name was already added (e.g. by a previous ingest job).
+     * 
+     * @return The tag name or null if it couldn't be added.
+     */
+    static TagName getOrAddTagName(TagsManager pTagsManager, String pName, String pDescription){
 	    try {
-		    giTagChanged = tagsManager.addTagName(giTagChangedName, "The file exists on the golden image, but the content was changed.", TagName.HTML_COLOR.LIME);
-		    giTagGood = tagsManager.addTagName(giTagGoodName, "The file exists on the golden image and wasn't changed.", TagName.HTML_COLOR.LIME);
+		    return pTagsManager.addTagName(pName, pDescription, TagName.HTML_COLOR.LIME);
 	    } catch (TagsManager.TagNameAlreadyExistsException ex) {
 		    try {
-			for (TagName tagName : tagsManager.getAllTagNames()) {
-				if(giTagChanged != null && giTagGood != null)
-					break;
-				
-				if (tagName.getDisplayName().equals(giTagChangedName)) {
-				    giTagChanged = tagName;
-				}
-				
-				if (tagName.getDisplayName().equals(giTagGoodName)) {
-				    giTagGood = tagName;
+			for (TagName tagName : pTagsManager.getAllTagNames()) {
+				if (tagName.getDisplayName().equals(pName)) {
+				    return tagName;
 				}
 			}
 		    } catch (TskCoreException ex1) {
@@ -57,6 +70,24 @@ public class GoldenImageIngestModuleFactory  extends IngestModuleFactoryAdapter{
 	    } catch (TskCoreException ex) {
 		    Exceptions.printStackTrace(ex);
 	    }
+	    return null;
+    }
+
+    /**
+     * @return True if the tag is one of the tags this module adds to dirty
+     * image files. The deleted tags of golden image files are named after
+     * their dirty image, so they don't belong to every comparison.
+     */
+    static boolean isDirtyImageTag(String pTagName){
+	    return pTagName.equals(giTagChangedName) || pTagName.equals(giTagGoodName) || pTagName.equals(giTagNewName)
+		    || pTagName.equals(giTagMovedName);
+    }
+
+    /**
+     * @return The digests of golden image files shared by the ingest jobs.
+     */
+    static GoldenIndexCache getGoldenIndexCache(){
+	    return goldenIndexCache;
     }
 
     // This class method allows the ingest module instances created by this 
@@ -2,8 +2,15 @@ package org.sleuthkit.autopsy.modules.goldenimage;
 
 import java.awt.event.ActionEvent;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import javax.swing.DefaultComboBoxModel;
+import javax.swing.DefaultListModel;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.ListSelectionEvent;
 import org.sleuthkit.autopsy.casemodule.Case;
 import org.sleuthkit.autopsy.ingest.IngestJobSettingsPanel;
 import org.sleuthkit.autopsy.ingest.IngestModuleIngestJobSettings;
@@ -17,6 +24,9 @@ import org.sleuthkit.datamodel.TskCoreException;
 public class GoldenImageIngestModuleIngestJobSettingsPanel extends IngestModuleIngestJobSettingsPanel {
 	
 
+	// Unit of the sizes in the panel
+	private static final long MIB = 1024L * 1024;
+	
 	public IngestJobSettingsPanel ingestJobSettingsPanel;
 	public static int counter = 0;
 	
@@ -81,6 +91,214 @@ public class GoldenImageIngestModuleIngestJobSettingsPanel extends IngestModuleI
 		settings.setSelectedDatasource(dsTmpWrapper.getContent());
 	});
 	
+	/*** Pre-filter options ***/
+	chkCompareTimestamps.setSelected(settings.isCompareTimestamps());
+	chkCompareTimestamps.addActionListener((ActionEvent e) -> {
+		settings.setCompareTimestamps(chkCompareTimestamps.isSelected());
+	});
+	
+	chkCompareMetadataAddress.setSelected(settings.isCompareMetadataAddress());
+	chkCompareMetadataAddress.addActionListener((ActionEvent e) -> {
+		settings.setCompareMetadataAddress(chkCompareMetadataAddress.isSelected());
+	});
+	
+	/*** Content comparison options ***/
+	chkDirectCompare.setSelected(settings.isDirectCompare());
+	chkDirectCompare.addActionListener((ActionEvent e) -> {
+		settings.setDirectCompare(chkDirectCompare.isSelected());
+	});
+	
+	chkRecordDigests.setSelected(settings.isRecordDigests());
+	chkRecordDigests.addActionListener((ActionEvent e) -> {
+		settings.setRecordDigests(chkRecordDigests.isSelected());
+	});
+	
+	chkDetectMoves.setSelected(settings.isDetectMoves());
+	chkDetectMoves.addActionListener((ActionEvent e) -> {
+		settings.setDetectMoves(chkDetectMoves.isSelected());
+	});
+	
+	chkSkipIdenticalPartitions.setSelected(settings.isSkipIdenticalPartitions());
+	chkSkipIdenticalPartitions.addActionListener((ActionEvent e) -> {
+		settings.setSkipIdenticalPartitions(chkSkipIdenticalPartitions.isSelected());
+	});
+	
+	chkPruneUnchangedDirectories.setSelected(settings.isPruneUnchangedDirectories());
+	chkPruneUnchangedDirectories.addActionListener((ActionEvent e) -> {
+		settings.setPruneUnchangedDirectories(chkPruneUnchangedDirectories.isSelected());
+	});
+	
+	chkStrictVerification.setSelected(settings.isStrictVerification());
+	chkStrictVerification.addActionListener((ActionEvent e) -> {
+		settings.setStrictVerification(chkStrictVerification.isSelected());
+	});
+	
+	chkResumeInterruptedJobs.setSelected(settings.isResumeInterruptedJobs());
+	chkResumeInterruptedJobs.addActionListener((ActionEvent e) -> {
+		settings.setResumeInterruptedJobs(chkResumeInterruptedJobs.isSelected());
+	});
+	
+	chkIncrementalComparison.setSelected(settings.isIncrementalComparison());
+	chkIncrementalComparison.addActionListener((ActionEvent e) -> {
+		settings.setIncrementalComparison(chkIncrementalComparison.isSelected());
+	});
+	
+	cbDigestAlgorithm.setModel(new DefaultComboBoxModel<>(DigestAlgorithm.values()));
+	cbDigestAlgorithm.setSelectedItem(settings.getDigestAlgorithm());
+	cbDigestAlgorithm.addActionListener((ActionEvent e) -> {
+		DigestAlgorithm algorithm = (DigestAlgorithm)cbDigestAlgorithm.getSelectedItem();
+		
+		if(algorithm != null)
+		settings.setDigestAlgorithm(algorithm);
+	});
+	
+	/*** Read and pipeline options ***/
+	chkOrderReadsByOffset.setSelected(settings.isOrderReadsByOffset());
+	chkOrderReadsByOffset.addActionListener((ActionEvent e) -> {
+		settings.setOrderReadsByOffset(chkOrderReadsByOffset.isSelected());
+	});
+	
+	spnReadThreads.setModel(new SpinnerNumberModel(settings.getReadThreads(), 1, 256, 1));
+	spnReadThreads.addChangeListener((ChangeEvent e) -> {
+		settings.setReadThreads((Integer)spnReadThreads.getValue());
+	});
+	
+	chkVirtualReadThreads.setSelected(settings.isVirtualReadThreads());
+	chkVirtualReadThreads.addActionListener((ActionEvent e) -> {
+		settings.setVirtualReadThreads(chkVirtualReadThreads.isSelected());
+	});
+	
+	spnDigestThreads.setModel(new SpinnerNumberModel(Math.min(settings.getDigestThreads(), 256), 1, 256, 1));
+	spnDigestThreads.addChangeListener((ChangeEvent e) -> {
+		settings.setDigestThreads((Integer)spnDigestThreads.getValue());
+	});
+	
+	spnMaxPairsInFlight.setModel(new SpinnerNumberModel(settings.getMaxPairsInFlight(), 1, 1000000, 256));
+	spnMaxPairsInFlight.addChangeListener((ChangeEvent e) -> {
+		settings.setMaxPairsInFlight((Integer)spnMaxPairsInFlight.getValue());
+	});
+	
+	//Direct compares take two chunks at once
+	spnReadAheadChunks.setModel(new SpinnerNumberModel(settings.getReadAheadChunks(), 2, 4096, 16));
+	spnReadAheadChunks.addChangeListener((ChangeEvent e) -> {
+		settings.setReadAheadChunks((Integer)spnReadAheadChunks.getValue());
+	});
+	
+	spnResultBatchSize.setModel(new SpinnerNumberModel(settings.getResultBatchSize(), 1, 100000, 100));
+	spnResultBatchSize.addChangeListener((ChangeEvent e) -> {
+		settings.setResultBatchSize((Integer)spnResultBatchSize.getValue());
+	});
+	
+	spnResultFlushInterval.setModel(new SpinnerNumberModel((int)Math.min(settings.getResultFlushInterval(), 600000), 1, 600000, 100));
+	spnResultFlushInterval.addChangeListener((ChangeEvent e) -> {
+		settings.setResultFlushInterval((Integer)spnResultFlushInterval.getValue());
+	});
+	
+	spnLargeFileThreshold.setModel(new SpinnerNumberModel((int)Math.min(settings.getLargeFileThreshold() / MIB, 1048576), 1, 1048576, 64));
+	spnLargeFileThreshold.addChangeListener((ChangeEvent e) -> {
+		settings.setLargeFileThreshold((Integer)spnLargeFileThreshold.getValue() * MIB);
+	});
+	
+	spnBlockSize.setModel(new SpinnerNumberModel((int)Math.min(Math.max(settings.getBlockSize() / MIB, 1), 4096), 1, 4096, 1));
+	spnBlockSize.addChangeListener((ChangeEvent e) -> {
+		settings.setBlockSize((Integer)spnBlockSize.getValue() * MIB);
+	});
+	
+	spnGoldenIndexCacheSize.setModel(new SpinnerNumberModel(Math.min(settings.getGoldenIndexCacheSize(), 65536), 1, 65536, 64));
+	spnGoldenIndexCacheSize.addChangeListener((ChangeEvent e) -> {
+		settings.setGoldenIndexCacheSize((Integer)spnGoldenIndexCacheSize.getValue());
+	});
+	
+	/*** Baseline snapshot options ***/
+	chkExportBaseline.setSelected(settings.isExportBaseline());
+	chkExportBaseline.addActionListener((ActionEvent e) -> {
+		settings.setExportBaseline(chkExportBaseline.isSelected());
+	});
+	
+	chkUseBaseline.setSelected(settings.isUseBaseline());
+	chkUseBaseline.addActionListener((ActionEvent e) -> {
+		settings.setUseBaseline(chkUseBaseline.isSelected());
+	});
+	
+	tfBaselinePath.setText(settings.getBaselinePath());
+	tfBaselinePath.getDocument().addDocumentListener(new DocumentListener() {
+		@Override
+		public void insertUpdate(DocumentEvent e) {
+			settings.setBaselinePath(tfBaselinePath.getText().trim());
+		}
+
+		@Override
+		public void removeUpdate(DocumentEvent e) {
+			settings.setBaselinePath(tfBaselinePath.getText().trim());
+		}
+
+		@Override
+		public void changedUpdate(DocumentEvent e) {
+			settings.setBaselinePath(tfBaselinePath.getText().trim());
+		}
+	});
+	
+	/*** Hash manifest options ***/
+	tfManifestPath.setText(settings.getManifestPath());
+	tfManifestPath.getDocument().addDocumentListener(new DocumentListener() {
+		@Override
+		public void insertUpdate(DocumentEvent e) {
+			settings.setManifestPath(tfManifestPath.getText().trim());
+		}
+
+		@Override
+		public void removeUpdate(DocumentEvent e) {
+			settings.setManifestPath(tfManifestPath.getText().trim());
+		}
+
+		@Override
+		public void changedUpdate(DocumentEvent e) {
+			settings.setManifestPath(tfManifestPath.getText().trim());
+		}
+	});
+	
+	tfManifestRootPrefix.setText(settings.getManifestRootPrefix());
+	tfManifestRootPrefix.getDocument().addDocumentListener(new DocumentListener() {
+		@Override
+		public void insertUpdate(DocumentEvent e) {
+			settings.setManifestRootPrefix(tfManifestRootPrefix.getText().trim());
+		}
+
+		@Override
+		public void removeUpdate(DocumentEvent e) {
+			settings.setManifestRootPrefix(tfManifestRootPrefix.getText().trim());
+		}
+
+		@Override
+		public void changedUpdate(DocumentEvent e) {
+			settings.setManifestRootPrefix(tfManifestRootPrefix.getText().trim());
+		}
+	});
+	
+	/*** Additional golden image options ***/
+	if(datasources != null && !datasources.isEmpty()){
+		DefaultListModel<DataSourceCBWrapper> listModel = new DefaultListModel<>();
+		for(Content c : datasources){
+			listModel.addElement(new DataSourceCBWrapper(c));
+		}
+		lstAdditionalGoldenImages.setModel(listModel);
+		
+		//Select the additional golden images given in the Settings
+		for(int i = 0; i < listModel.size(); i++){
+			if(settings.getAdditionalDataSourceIds().contains(listModel.get(i).getContent().getId())){
+				lstAdditionalGoldenImages.addSelectionInterval(i, i);
+			}
+		}
+	}
+	
+	lstAdditionalGoldenImages.addListSelectionListener((ListSelectionEvent e) -> {
+		List<Long> ids = new ArrayList<>();
+		for(DataSourceCBWrapper dsTmpWrapper : lstAdditionalGoldenImages.getSelectedValuesList()){
+			ids.add(dsTmpWrapper.getContent().getId());
+		}
+		settings.setAdditionalDataSourceIds(ids);
+	});
+
     }
 
     /**
@@ -107,6 +325,49 @@ public class GoldenImageIngestModuleIngestJobSettingsPanel extends IngestModuleI
                 cbGoldenImage = new javax.swing.JComboBox<DataSourceCBWrapper>();
                 jScrollPane1 = new javax.swing.JScrollPane();
                 jTextArea1 = new javax.swing.JTextArea();
+                chkCompareTimestamps = new javax.swing.JCheckBox();
+                chkCompareMetadataAddress = new javax.swing.JCheckBox();
+                chkDirectCompare = new javax.swing.JCheckBox();
+                chkRecordDigests = new javax.swing.JCheckBox();
+                txtDigestAlgorithm = new javax.swing.JLabel();
+                cbDigestAlgorithm = new javax.swing.JComboBox<DigestAlgorithm>();
+                chkExportBaseline = new javax.swing.JCheckBox();
+                chkUseBaseline = new javax.swing.JCheckBox();
+                txtBaselinePath = new javax.swing.JLabel();
+                tfBaselinePath = new javax.swing.JTextField();
+                txtManifestPath = new javax.swing.JLabel();
+                tfManifestPath = new javax.swing.JTextField();
+                txtManifestRootPrefix = new javax.swing.JLabel();
+                tfManifestRootPrefix = new javax.swing.JTextField();
+                txtAdditionalGoldenImages = new javax.swing.JLabel();
+                spAdditionalGoldenImages = new javax.swing.JScrollPane();
+                lstAdditionalGoldenImages = new javax.swing.JList<>();
+                chkDetectMoves = new javax.swing.JCheckBox();
+                chkPruneUnchangedDirectories = new javax.swing.JCheckBox();
+                chkStrictVerification = new javax.swing.JCheckBox();
+                chkSkipIdenticalPartitions = new javax.swing.JCheckBox();
+                chkResumeInterruptedJobs = new javax.swing.JCheckBox();
+                chkIncrementalComparison = new javax.swing.JCheckBox();
+                chkOrderReadsByOffset = new javax.swing.JCheckBox();
+                txtReadThreads = new javax.swing.JLabel();
+                spnReadThreads = new javax.swing.JSpinner();
+                chkVirtualReadThreads = new javax.swing.JCheckBox();
+                txtDigestThreads = new javax.swing.JLabel();
+                spnDigestThreads = new javax.swing.JSpinner();
+                txtMaxPairsInFlight = new javax.swing.JLabel();
+                spnMaxPairsInFlight = new javax.swing.JSpinner();
+                txtReadAheadChunks = new javax.swing.JLabel();
+                spnReadAheadChunks = new javax.swing.JSpinner();
+                txtResultBatchSize = new javax.swing.JLabel();
+                spnResultBatchSize = new javax.swing.JSpinner();
+                txtResultFlushInterval = new javax.swing.JLabel();
+                spnResultFlushInterval = new javax.swing.JSpinner();
+                txtLargeFileThreshold = new javax.swing.JLabel();
+                spnLargeFileThreshold = new javax.swing.JSpinner();
+                txtBlockSize = new javax.swing.JLabel();
+                spnBlockSize = new javax.swing.JSpinner();
+                txtGoldenIndexCacheSize = new javax.swing.JLabel();
+                spnGoldenIndexCacheSize = new javax.swing.JSpinner();
 
                 txtTitle.setFont(new java.awt.Font("Dialog", 1, 18)); // NOI18N
                 org.openide.awt.Mnemonics.setLocalizedText(txtTitle, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.txtTitle.text")); // NOI18N
@@ -120,6 +381,65 @@ public class GoldenImageIngestModuleIngestJobSettingsPanel extends IngestModuleI
                 jTextArea1.setText(org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.jTextArea1.text")); // NOI18N
                 jScrollPane1.setViewportView(jTextArea1);
 
+                org.openide.awt.Mnemonics.setLocalizedText(chkCompareTimestamps, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.chkCompareTimestamps.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(chkCompareMetadataAddress, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.chkCompareMetadataAddress.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(chkDirectCompare, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.chkDirectCompare.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(chkRecordDigests, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.chkRecordDigests.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(txtDigestAlgorithm, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.txtDigestAlgorithm.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(chkExportBaseline, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.chkExportBaseline.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(chkUseBaseline, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.chkUseBaseline.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(txtBaselinePath, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.txtBaselinePath.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(txtManifestPath, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.txtManifestPath.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(txtManifestRootPrefix, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.txtManifestRootPrefix.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(txtAdditionalGoldenImages, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.txtAdditionalGoldenImages.text")); // NOI18N
+
+                lstAdditionalGoldenImages.setVisibleRowCount(4);
+                spAdditionalGoldenImages.setViewportView(lstAdditionalGoldenImages);
+
+                org.openide.awt.Mnemonics.setLocalizedText(chkDetectMoves, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.chkDetectMoves.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(chkPruneUnchangedDirectories, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.chkPruneUnchangedDirectories.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(chkStrictVerification, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.chkStrictVerification.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(chkSkipIdenticalPartitions, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.chkSkipIdenticalPartitions.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(chkResumeInterruptedJobs, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.chkResumeInterruptedJobs.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(chkIncrementalComparison, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.chkIncrementalComparison.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(chkOrderReadsByOffset, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.chkOrderReadsByOffset.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(txtReadThreads, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.txtReadThreads.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(chkVirtualReadThreads, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.chkVirtualReadThreads.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(txtDigestThreads, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.txtDigestThreads.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(txtMaxPairsInFlight, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.txtMaxPairsInFlight.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(txtReadAheadChunks, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.txtReadAheadChunks.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(txtResultBatchSize, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.txtResultBatchSize.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(txtResultFlushInterval, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.txtResultFlushInterval.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(txtLargeFileThreshold, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.txtLargeFileThreshold.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(txtBlockSize, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.txtBlockSize.text")); // NOI18N
+
+                org.openide.awt.Mnemonics.setLocalizedText(txtGoldenIndexCacheSize, org.openide.util.NbBundle.getMessage(GoldenImageIngestModuleIngestJobSettingsPanel.class, "GoldenImageIngestModuleIngestJobSettingsPanel.txtGoldenIndexCacheSize.text")); // NOI18N
+
                 javax.swing.GroupLayout layout = new javax.swing.GroupLayout(this);
                 this.setLayout(layout);
                 layout.setHorizontalGroup(
@@ -128,11 +448,73 @@ public class GoldenImageIngestModuleIngestJobSettingsPanel extends IngestModuleI
                                 .addContainerGap()
                                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.TRAILING)
                                         .addComponent(cbGoldenImage, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                                        .addComponent(spAdditionalGoldenImages, javax.swing.GroupLayout.Alignment.LEADING)
+                                        .addComponent(tfManifestRootPrefix, javax.swing.GroupLayout.Alignment.LEADING)
+                                        .addComponent(tfManifestPath, javax.swing.GroupLayout.Alignment.LEADING)
+                                        .addComponent(tfBaselinePath, javax.swing.GroupLayout.Alignment.LEADING)
                                         .addComponent(jScrollPane1, javax.swing.GroupLayout.Alignment.LEADING, javax.swing.GroupLayout.DEFAULT_SIZE, 279, Short.MAX_VALUE)
                                         .addGroup(javax.swing.GroupLayout.Alignment.LEADING, layout.createSequentialGroup()
                                                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.TRAILING)
                                                         .addComponent(txtTitle, javax.swing.GroupLayout.Alignment.LEADING)
-                                                        .addComponent(txtSelectGI, javax.swing.GroupLayout.Alignment.LEADING))
+                                                        .addComponent(txtSelectGI, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addComponent(chkCompareTimestamps, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addComponent(chkCompareMetadataAddress, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addComponent(chkDirectCompare, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addComponent(chkRecordDigests, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addComponent(chkDetectMoves, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addComponent(chkSkipIdenticalPartitions, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addComponent(chkPruneUnchangedDirectories, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addComponent(chkStrictVerification, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addComponent(chkResumeInterruptedJobs, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addComponent(chkIncrementalComparison, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addGroup(javax.swing.GroupLayout.Alignment.LEADING, layout.createSequentialGroup()
+                                                                .addComponent(txtDigestAlgorithm)
+                                                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                                                .addComponent(cbDigestAlgorithm, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                                        .addComponent(chkOrderReadsByOffset, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addGroup(javax.swing.GroupLayout.Alignment.LEADING, layout.createSequentialGroup()
+                                                                .addComponent(txtReadThreads)
+                                                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                                                .addComponent(spnReadThreads, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                                        .addComponent(chkVirtualReadThreads, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addGroup(javax.swing.GroupLayout.Alignment.LEADING, layout.createSequentialGroup()
+                                                                .addComponent(txtDigestThreads)
+                                                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                                                .addComponent(spnDigestThreads, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                                        .addGroup(javax.swing.GroupLayout.Alignment.LEADING, layout.createSequentialGroup()
+                                                                .addComponent(txtMaxPairsInFlight)
+                                                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                                                .addComponent(spnMaxPairsInFlight, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                                        .addGroup(javax.swing.GroupLayout.Alignment.LEADING, layout.createSequentialGroup()
+                                                                .addComponent(txtReadAheadChunks)
+                                                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                                                .addComponent(spnReadAheadChunks, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                                        .addGroup(javax.swing.GroupLayout.Alignment.LEADING, layout.createSequentialGroup()
+                                                                .addComponent(txtResultBatchSize)
+                                                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                                                .addComponent(spnResultBatchSize, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                                        .addGroup(javax.swing.GroupLayout.Alignment.LEADING, layout.createSequentialGroup()
+                                                                .addComponent(txtResultFlushInterval)
+                                                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                                                .addComponent(spnResultFlushInterval, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                                        .addGroup(javax.swing.GroupLayout.Alignment.LEADING, layout.createSequentialGroup()
+                                                                .addComponent(txtLargeFileThreshold)
+                                                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                                                .addComponent(spnLargeFileThreshold, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                                        .addGroup(javax.swing.GroupLayout.Alignment.LEADING, layout.createSequentialGroup()
+                                                                .addComponent(txtBlockSize)
+                                                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                                                .addComponent(spnBlockSize, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                                        .addGroup(javax.swing.GroupLayout.Alignment.LEADING, layout.createSequentialGroup()
+                                                                .addComponent(txtGoldenIndexCacheSize)
+                                                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                                                .addComponent(spnGoldenIndexCacheSize, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                                        .addComponent(chkExportBaseline, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addComponent(chkUseBaseline, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addComponent(txtBaselinePath, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addComponent(txtManifestPath, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addComponent(txtManifestRootPrefix, javax.swing.GroupLayout.Alignment.LEADING)
+                                                        .addComponent(txtAdditionalGoldenImages, javax.swing.GroupLayout.Alignment.LEADING))
                                                 .addGap(0, 0, Short.MAX_VALUE)))
                                 .addGap(22, 22, 22))
                 );
@@ -146,13 +528,140 @@ public class GoldenImageIngestModuleIngestJobSettingsPanel extends IngestModuleI
                                 .addComponent(txtSelectGI)
                                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                                 .addComponent(cbGoldenImage, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                                .addComponent(chkCompareTimestamps)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(chkCompareMetadataAddress)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(chkDirectCompare)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(chkRecordDigests)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(chkDetectMoves)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(chkSkipIdenticalPartitions)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(chkPruneUnchangedDirectories)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(chkStrictVerification)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(chkResumeInterruptedJobs)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(chkIncrementalComparison)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                                        .addComponent(txtDigestAlgorithm)
+                                        .addComponent(cbDigestAlgorithm, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(chkOrderReadsByOffset)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                                        .addComponent(txtReadThreads)
+                                        .addComponent(spnReadThreads, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(chkVirtualReadThreads)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                                        .addComponent(txtDigestThreads)
+                                        .addComponent(spnDigestThreads, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                                        .addComponent(txtMaxPairsInFlight)
+                                        .addComponent(spnMaxPairsInFlight, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                                        .addComponent(txtReadAheadChunks)
+                                        .addComponent(spnReadAheadChunks, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                                        .addComponent(txtResultBatchSize)
+                                        .addComponent(spnResultBatchSize, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                                        .addComponent(txtResultFlushInterval)
+                                        .addComponent(spnResultFlushInterval, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                                        .addComponent(txtLargeFileThreshold)
+                                        .addComponent(spnLargeFileThreshold, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                                        .addComponent(txtBlockSize)
+                                        .addComponent(spnBlockSize, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                                        .addComponent(txtGoldenIndexCacheSize)
+                                        .addComponent(spnGoldenIndexCacheSize, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                                .addComponent(chkExportBaseline)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(chkUseBaseline)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(txtBaselinePath)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(tfBaselinePath, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                                .addComponent(txtManifestPath)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(tfManifestPath, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                                .addComponent(txtManifestRootPrefix)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(tfManifestRootPrefix, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                                .addComponent(txtAdditionalGoldenImages)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(spAdditionalGoldenImages, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
                                 .addContainerGap())
                 );
         }// </editor-fold>//GEN-END:initComponents
         // Variables declaration - do not modify//GEN-BEGIN:variables
+        private javax.swing.JComboBox<DigestAlgorithm> cbDigestAlgorithm;
         private javax.swing.JComboBox<DataSourceCBWrapper> cbGoldenImage;
+        private javax.swing.JCheckBox chkCompareMetadataAddress;
+        private javax.swing.JCheckBox chkCompareTimestamps;
+        private javax.swing.JCheckBox chkDetectMoves;
+        private javax.swing.JCheckBox chkDirectCompare;
+        private javax.swing.JCheckBox chkExportBaseline;
+        private javax.swing.JCheckBox chkIncrementalComparison;
+        private javax.swing.JCheckBox chkOrderReadsByOffset;
+        private javax.swing.JCheckBox chkPruneUnchangedDirectories;
+        private javax.swing.JCheckBox chkRecordDigests;
+        private javax.swing.JCheckBox chkResumeInterruptedJobs;
+        private javax.swing.JCheckBox chkSkipIdenticalPartitions;
+        private javax.swing.JCheckBox chkStrictVerification;
+        private javax.swing.JCheckBox chkUseBaseline;
+        private javax.swing.JCheckBox chkVirtualReadThreads;
         private javax.swing.JScrollPane jScrollPane1;
         private javax.swing.JTextArea jTextArea1;
+        private javax.swing.JList<DataSourceCBWrapper> lstAdditionalGoldenImages;
+        private javax.swing.JScrollPane spAdditionalGoldenImages;
+        private javax.swing.JSpinner spnBlockSize;
+        private javax.swing.JSpinner spnDigestThreads;
+        private javax.swing.JSpinner spnGoldenIndexCacheSize;
+        private javax.swing.JSpinner spnLargeFileThreshold;
+        private javax.swing.JSpinner spnMaxPairsInFlight;
+        private javax.swing.JSpinner spnReadAheadChunks;
+        private javax.swing.JSpinner spnReadThreads;
+        private javax.swing.JSpinner spnResultBatchSize;
+        private javax.swing.JSpinner spnResultFlushInterval;
+        private javax.swing.JTextField tfBaselinePath;
+        private javax.swing.JTextField tfManifestPath;
+        private javax.swing.JTextField tfManifestRootPrefix;
+        private javax.swing.JLabel txtAdditionalGoldenImages;
+        private javax.swing.JLabel txtBaselinePath;
+        private javax.swing.JLabel txtBlockSize;
+        private javax.swing.JLabel txtDigestAlgorithm;
+        private javax.swing.JLabel txtDigestThreads;
+        private javax.swing.JLabel txtGoldenIndexCacheSize;
+        private javax.swing.JLabel txtLargeFileThreshold;
+        private javax.swing.JLabel txtManifestPath;
+        private javax.swing.JLabel txtManifestRootPrefix;
+        private javax.swing.JLabel txtMaxPairsInFlight;
+        private javax.swing.JLabel txtReadAheadChunks;
+        private javax.swing.JLabel txtReadThreads;
+        private javax.swing.JLabel txtResultBatchSize;
+        private javax.swing.JLabel txtResultFlushInterval;
         private javax.swing.JLabel txtSelectGI;
         private javax.swing.JLabel txtTitle;
         // End of variables declaration//GEN-END:variables
@@ -29,7 +29,10 @@
  */
 package org.sleuthkit.autopsy.modules.goldenimage;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import org.sleuthkit.autopsy.casemodule.Case;
 import org.sleuthkit.autopsy.ingest.IngestModuleIngestJobSettings;
@@ -43,15 +46,107 @@ public class GoldenImageModuleIngestJobSettings implements IngestModuleIngestJob
 
     private static final long serialVersionUID = 1L;
     
+    // Defaults of the options, also for settings saved by an older version which didn't have them
+    private static final boolean DEFAULT_COMPARE_TIMESTAMPS = false;
+    private static final boolean DEFAULT_COMPARE_METADATA_ADDRESS = false;
+    private static final boolean DEFAULT_DIRECT_COMPARE = false;
+    private static final boolean DEFAULT_RECORD_DIGESTS = true;
+    private static final DigestAlgorithm DEFAULT_DIGEST_ALGORITHM = DigestAlgorithm.MD5;
+    private static final long DEFAULT_LARGE_FILE_THRESHOLD = 256L * 1024 * 1024;
+    private static final long DEFAULT_BLOCK_SIZE = 16L * 1024 * 1024;
+    private static final int DEFAULT_READ_THREADS = 4;
+    private static final int DEFAULT_DIGEST_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_RESULT_BATCH_SIZE = 500;
+    private static final long DEFAULT_RESULT_FLUSH_INTERVAL = 1000;
+    private static final int DEFAULT_MAX_PAIRS_IN_FLIGHT = 1024;
+    private static final int DEFAULT_READ_AHEAD_CHUNKS = 64;
+    private static final boolean DEFAULT_VIRTUAL_READ_THREADS = false;
+    private static final boolean DEFAULT_ORDER_READS_BY_OFFSET = false;
+    private static final int DEFAULT_GOLDEN_INDEX_CACHE_SIZE = 256;
+    private static final boolean DEFAULT_DETECT_MOVES = true;
+    private static final boolean DEFAULT_PRUNE_UNCHANGED_DIRECTORIES = false;
+    private static final boolean DEFAULT_SKIP_IDENTICAL_PARTITIONS = false;
+    private static final boolean DEFAULT_STRICT_VERIFICATION = false;
+    private static final boolean DEFAULT_RESUME_INTERRUPTED_JOBS = true;
+    private static final boolean DEFAULT_INCREMENTAL_COMPARISON = true;
+    private static final boolean DEFAULT_EXPORT_BASELINE = false;
+    private static final boolean DEFAULT_USE_BASELINE = false;
+    
     private transient Content selectedDatasource;
     private long dataSourceID;
-    
+    private ArrayList<Long> additionalDataSourceIDs = new ArrayList<>();
+    private boolean compareTimestamps = DEFAULT_COMPARE_TIMESTAMPS;
+    private boolean compareMetadataAddress = DEFAULT_COMPARE_METADATA_ADDRESS;
+    private boolean directCompare = DEFAULT_DIRECT_COMPARE;
+    private boolean recordDigests = DEFAULT_RECORD_DIGESTS;
+    private DigestAlgorithm digestAlgorithm = DEFAULT_DIGEST_ALGORITHM;
+    private long largeFileThreshold = DEFAULT_LARGE_FILE_THRESHOLD;
+    private long blockSize = DEFAULT_BLOCK_SIZE;
+    private int readThreads = DEFAULT_READ_THREADS;
+    private int digestThreads = DEFAULT_DIGEST_THREADS;
+    private int resultBatchSize = DEFAULT_RESULT_BATCH_SIZE;
+    private long resultFlushInterval = DEFAULT_RESULT_FLUSH_INTERVAL;
+    private int maxPairsInFlight = DEFAULT_MAX_PAIRS_IN_FLIGHT;
+    private int readAheadChunks = DEFAULT_READ_AHEAD_CHUNKS;
+    private boolean virtualReadThreads = DEFAULT_VIRTUAL_READ_THREADS;
+    private boolean orderReadsByOffset = DEFAULT_ORDER_READS_BY_OFFSET;
+    private int goldenIndexCacheSize = DEFAULT_GOLDEN_INDEX_CACHE_SIZE;
+    private boolean detectMoves = DEFAULT_DETECT_MOVES;
+    private boolean pruneUnchangedDirectories = DEFAULT_PRUNE_UNCHANGED_DIRECTORIES;
+    private boolean skipIdenticalPartitions = DEFAULT_SKIP_IDENTICAL_PARTITIONS;
+    private boolean strictVerification = DEFAULT_STRICT_VERIFICATION;
+    private boolean resumeInterruptedJobs = DEFAULT_RESUME_INTERRUPTED_JOBS;
+    private boolean incrementalComparison = DEFAULT_INCREMENTAL_COMPARISON;
+    private boolean exportBaseline = DEFAULT_EXPORT_BASELINE;
+    private boolean useBaseline = DEFAULT_USE_BASELINE;
+    private String baselinePath = "";
+    private String manifestPath = "";
+    private String manifestRootPrefix = "";
     
 
     GoldenImageModuleIngestJobSettings() {
 	    
     }
 
+    /**
+     * Reads settings which were saved by an older version of the module. The
+     * fields it didn't know get their defaults instead of 0 and false, which
+     * would e.g. turn off the options which are on by default.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream pIn) throws IOException, ClassNotFoundException {
+	    ObjectInputStream.GetField fields = pIn.readFields();
+	    dataSourceID = fields.get("dataSourceID", 0L);
+	    additionalDataSourceIDs = (ArrayList<Long>) fields.get("additionalDataSourceIDs", new ArrayList<Long>());
+	    compareTimestamps = fields.get("compareTimestamps", DEFAULT_COMPARE_TIMESTAMPS);
+	    compareMetadataAddress = fields.get("compareMetadataAddress", DEFAULT_COMPARE_METADATA_ADDRESS);
+	    directCompare = fields.get("directCompare", DEFAULT_DIRECT_COMPARE);
+	    recordDigests = fields.get("recordDigests", DEFAULT_RECORD_DIGESTS);
+	    digestAlgorithm = (DigestAlgorithm) fields.get("digestAlgorithm", DEFAULT_DIGEST_ALGORITHM);
+	    largeFileThreshold = fields.get("largeFileThreshold", DEFAULT_LARGE_FILE_THRESHOLD);
+	    blockSize = fields.get("blockSize", DEFAULT_BLOCK_SIZE);
+	    readThreads = fields.get("readThreads", DEFAULT_READ_THREADS);
+	    digestThreads = fields.get("digestThreads", DEFAULT_DIGEST_THREADS);
+	    resultBatchSize = fields.get("resultBatchSize", DEFAULT_RESULT_BATCH_SIZE);
+	    resultFlushInterval = fields.get("resultFlushInterval", DEFAULT_RESULT_FLUSH_INTERVAL);
+	    maxPairsInFlight = fields.get("maxPairsInFlight", DEFAULT_MAX_PAIRS_IN_FLIGHT);
+	    readAheadChunks = fields.get("readAheadChunks", DEFAULT_READ_AHEAD_CHUNKS);
+	    virtualReadThreads = fields.get("virtualReadThreads", DEFAULT_VIRTUAL_READ_THREADS);
+	    orderReadsByOffset = fields.get("orderReadsByOffset", DEFAULT_ORDER_READS_BY_OFFSET);
+	    goldenIndexCacheSize = fields.get("goldenIndexCacheSize", DEFAULT_GOLDEN_INDEX_CACHE_SIZE);
+	    detectMoves = fields.get("detectMoves", DEFAULT_DETECT_MOVES);
+	    pruneUnchangedDirectories = fields.get("pruneUnchangedDirectories", DEFAULT_PRUNE_UNCHANGED_DIRECTORIES);
+	    skipIdenticalPartitions = fields.get("skipIdenticalPartitions", DEFAULT_SKIP_IDENTICAL_PARTITIONS);
+	    strictVerification = fields.get("strictVerification", DEFAULT_STRICT_VERIFICATION);
+	    resumeInterruptedJobs = fields.get("resumeInterruptedJobs", DEFAULT_RESUME_INTERRUPTED_JOBS);
+	    incrementalComparison = fields.get("incrementalComparison", DEFAULT_INCREMENTAL_COMPARISON);
+	    exportBaseline = fields.get("exportBaseline", DEFAULT_EXPORT_BASELINE);
+	    useBaseline = fields.get("useBaseline", DEFAULT_USE_BASELINE);
+	    baselinePath = (String) fields.get("baselinePath", "");
+	    manifestPath = (String) fields.get("manifestPath", "");
+	    manifestRootPrefix = (String) fields.get("manifestRootPrefix", "");
+    }
+
     @Override
     public long getVersionNumber() {
         return serialVersionUID;
@@ -67,6 +162,31 @@ public class GoldenImageModuleIngestJobSettings implements IngestModuleIngestJob
 	    selectedDatasource = getDatasourceById(pDataSourceID);
     }
     
+    /**
+     * @return The ids of the golden images the dirty image is compared
+     * against in one pass, the selected golden image first.
+     */
+    public List<Long> getGoldenDataSourceIds(){
+	    List<Long> ids = new ArrayList<>();
+	    ids.add(dataSourceID);
+	    if(additionalDataSourceIDs != null){
+		    for(Long id : additionalDataSourceIDs){
+			    if(!ids.contains(id)){
+				    ids.add(id);
+			    }
+		    }
+	    }
+	    return ids;
+    }
+    
+    public List<Long> getAdditionalDataSourceIds(){
+	    return additionalDataSourceIDs != null ? additionalDataSourceIDs : new ArrayList<>();
+    }
+    
+    public void setAdditionalDataSourceIds(List<Long> pDataSourceIds){
+	    additionalDataSourceIDs = new ArrayList<>(pDataSourceIds);
+    }
+    
     public void setSelectedDatasource(Content pContent){
 	    selectedDatasource = pContent;
 	    setDataSourceID(pContent.getId());
@@ -76,6 +196,358 @@ public class GoldenImageModuleIngestJobSettings implements IngestModuleIngestJob
 	    return selectedDatasource;
     }
     
+    /**
+     * @return True if files with different modified or created timestamps
+     * should be tagged as changed without comparing their content.
+     */
+    public boolean isCompareTimestamps(){
+	    return compareTimestamps;
+    }
+    
+    public void setCompareTimestamps(boolean pCompareTimestamps){
+	    compareTimestamps = pCompareTimestamps;
+    }
+    
+    /**
+     * @return True if files with a different metadata address (e.g. MFT
+     * entry) should be tagged as changed without comparing their content.
+     */
+    public boolean isCompareMetadataAddress(){
+	    return compareMetadataAddress;
+    }
+    
+    public void setCompareMetadataAddress(boolean pCompareMetadataAddress){
+	    compareMetadataAddress = pCompareMetadataAddress;
+    }
+    
+    /**
+     * @return True if the content of equal sized files should be compared
+     * byte by byte instead of comparing their md5 hashes.
+     */
+    public boolean isDirectCompare(){
+	    return directCompare;
+    }
+    
+    public void setDirectCompare(boolean pDirectCompare){
+	    directCompare = pDirectCompare;
+    }
+    
+    /**
+     * @return True if the md5 hash of compared files should be recorded as
+     * well. In the direct compare mode, digests are only computed if this is
+     * enabled.
+     */
+    public boolean isRecordDigests(){
+	    return recordDigests;
+    }
+    
+    public void setRecordDigests(boolean pRecordDigests){
+	    recordDigests = pRecordDigests;
+    }
+    
+    /**
+     * @return The algorithm the digests of the files are compared with.
+     */
+    DigestAlgorithm getDigestAlgorithm(){
+	    return digestAlgorithm != null ? digestAlgorithm : DEFAULT_DIGEST_ALGORITHM;
+    }
+    
+    void setDigestAlgorithm(DigestAlgorithm pDigestAlgorithm){
+	    digestAlgorithm = pDigestAlgorithm;
+    }
+    
+    /**
+     * @return The algorithms which are computed in one pass when a file is
+     * hashed. The first one is the algorithm the files are compared with.
+     */
+    List<DigestAlgorithm> getDigestAlgorithms(){
+	    return getDigestAlgorithms(getDigestAlgorithm());
+    }
+    
+    /**
+     * @return The algorithms which are computed in one pass when a file is
+     * compared with the given algorithm (e.g. the one of a baseline snapshot).
+     */
+    List<DigestAlgorithm> getDigestAlgorithms(DigestAlgorithm pComparisonAlgorithm){
+	    List<DigestAlgorithm> algorithms = new ArrayList<>();
+	    algorithms.add(pComparisonAlgorithm);
+	    if(recordDigests && pComparisonAlgorithm != DigestAlgorithm.MD5){
+		    algorithms.add(DigestAlgorithm.MD5);
+	    }
+	    return algorithms;
+    }
+    
+    /**
+     * @return The size in bytes from which on files are hashed in parallel
+     * blocks and compared by their Merkle root.
+     */
+    public long getLargeFileThreshold(){
+	    return largeFileThreshold > 0 ? largeFileThreshold : DEFAULT_LARGE_FILE_THRESHOLD;
+    }
+    
+    public void setLargeFileThreshold(long pLargeFileThreshold){
+	    largeFileThreshold = pLargeFileThreshold;
+    }
+    
+    /**
+     * @return The size in bytes of the blocks large files are split into.
+     */
+    public long getBlockSize(){
+	    return blockSize > 0 ? blockSize : DEFAULT_BLOCK_SIZE;
+    }
+    
+    public void setBlockSize(long pBlockSize){
+	    blockSize = pBlockSize;
+    }
+    
+    /**
+     * @return The amount of threads which read the content of the files.
+     */
+    public int getReadThreads(){
+	    return readThreads > 0 ? readThreads : DEFAULT_READ_THREADS;
+    }
+    
+    public void setReadThreads(int pReadThreads){
+	    readThreads = pReadThreads;
+    }
+    
+    /**
+     * @return The amount of threads which hash or compare the read content.
+     */
+    public int getDigestThreads(){
+	    return digestThreads > 0 ? digestThreads : DEFAULT_DIGEST_THREADS;
+    }
+    
+    public void setDigestThreads(int pDigestThreads){
+	    digestThreads = pDigestThreads;
+    }
+    
+    /**
+     * @return The amount of results which are written to the case database
+     * at once.
+     */
+    public int getResultBatchSize(){
+	    return resultBatchSize > 0 ? resultBatchSize : DEFAULT_RESULT_BATCH_SIZE;
+    }
+    
+    public void setResultBatchSize(int pResultBatchSize){
+	    resultBatchSize = pResultBatchSize;
+    }
+    
+    /**
+     * @return The maximum time in milliseconds a result is buffered before it
+     * is written, even if the batch isn't full.
+     */
+    public long getResultFlushInterval(){
+	    return resultFlushInterval > 0 ? resultFlushInterval : DEFAULT_RESULT_FLUSH_INTERVAL;
+    }
+    
+    public void setResultFlushInterval(long pResultFlushInterval){
+	    resultFlushInterval = pResultFlushInterval;
+    }
+    
+    /**
+     * @return True if file systems which are identical on both images are
+     * tagged as a whole without comparing their files.
+     */
+    public boolean isSkipIdenticalPartitions(){
+	    return skipIdenticalPartitions;
+    }
+    
+    public void setSkipIdenticalPartitions(boolean pSkipIdenticalPartitions){
+	    skipIdenticalPartitions = pSkipIdenticalPartitions;
+    }
+    
+    /**
+     * @return True if directories whose files all have the same metadata on
+     * both images are tagged as a whole without comparing their content.
+     */
+    public boolean isPruneUnchangedDirectories(){
+	    return pruneUnchangedDirectories;
+    }
+    
+    public void setPruneUnchangedDirectories(boolean pPruneUnchangedDirectories){
+	    pruneUnchangedDirectories = pPruneUnchangedDirectories;
+    }
+    
+    /**
+     * @return True if the content of every file is compared, even if its
+     * metadata suggests that it wasn't changed.
+     */
+    public boolean isStrictVerification(){
+	    return strictVerification;
+    }
+    
+    public void setStrictVerification(boolean pStrictVerification){
+	    strictVerification = pStrictVerification;
+    }
+    
+    /**
+     * @return True if a job resumes where an interrupted job with the same
+     * images and settings stopped.
+     */
+    public boolean isResumeInterruptedJobs(){
+	    return resumeInterruptedJobs;
+    }
+    
+    public void setResumeInterruptedJobs(boolean pResumeInterruptedJobs){
+	    resumeInterruptedJobs = pResumeInterruptedJobs;
+    }
+    
+    /**
+     * @return True if a re-run only compares the files which have no result
+     * yet or whose metadata changed since the last run.
+     */
+    public boolean isIncrementalComparison(){
+	    return incrementalComparison;
+    }
+    
+    public void setIncrementalComparison(boolean pIncrementalComparison){
+	    incrementalComparison = pIncrementalComparison;
+    }
+    
+    /**
+     * @return True if golden image files without a path match are looked up
+     * by their content on the dirty image.
+     */
+    public boolean isDetectMoves(){
+	    return detectMoves;
+    }
+    
+    public void setDetectMoves(boolean pDetectMoves){
+	    detectMoves = pDetectMoves;
+    }
+    
+    /**
+     * @return The memory budget in megabytes for the golden image digests
+     * which are shared between ingest jobs.
+     */
+    public int getGoldenIndexCacheSize(){
+	    return goldenIndexCacheSize > 0 ? goldenIndexCacheSize : DEFAULT_GOLDEN_INDEX_CACHE_SIZE;
+    }
+    
+    public void setGoldenIndexCacheSize(int pGoldenIndexCacheSize){
+	    goldenIndexCacheSize = pGoldenIndexCacheSize;
+    }
+    
+    /**
+     * @return The maximum amount of file pairs which are read or compared at
+     * the same time. Also the capacity of the result buffer.
+     */
+    public int getMaxPairsInFlight(){
+	    return maxPairsInFlight > 0 ? maxPairsInFlight : DEFAULT_MAX_PAIRS_IN_FLIGHT;
+    }
+    
+    public void setMaxPairsInFlight(int pMaxPairsInFlight){
+	    maxPairsInFlight = pMaxPairsInFlight;
+    }
+    
+    /**
+     * @return The maximum amount of 1 MiB chunks which are read ahead of the
+     * digest threads.
+     */
+    public int getReadAheadChunks(){
+	    return readAheadChunks > 0 ? readAheadChunks : DEFAULT_READ_AHEAD_CHUNKS;
+    }
+    
+    public void setReadAheadChunks(int pReadAheadChunks){
+	    readAheadChunks = pReadAheadChunks;
+    }
+    
+    /**
+     * @return True if every read should run on its own virtual thread. Only
+     * supported on Java 21 and later, otherwise the read threads are used.
+     */
+    public boolean isVirtualReadThreads(){
+	    return virtualReadThreads;
+    }
+    
+    public void setVirtualReadThreads(boolean pVirtualReadThreads){
+	    virtualReadThreads = pVirtualReadThreads;
+    }
+    
+    /**
+     * @return True if the reads are ordered by their position in the image,
+     * for images on spinning disks or in compressed E01 files. Costs a query
+     * of the data runs per file.
+     */
+    public boolean isOrderReadsByOffset(){
+	    return orderReadsByOffset;
+    }
+    
+    public void setOrderReadsByOffset(boolean pOrderReadsByOffset){
+	    orderReadsByOffset = pOrderReadsByOffset;
+    }
+    
+    /**
+     * @return True if a baseline snapshot of the golden image should be
+     * written before the comparison.
+     */
+    public boolean isExportBaseline(){
+	    return exportBaseline;
+    }
+    
+    public void setExportBaseline(boolean pExportBaseline){
+	    exportBaseline = pExportBaseline;
+    }
+    
+    /**
+     * @return True if the dirty image should be compared against the
+     * baseline snapshot instead of the golden image.
+     */
+    public boolean isUseBaseline(){
+	    return useBaseline;
+    }
+    
+    public void setUseBaseline(boolean pUseBaseline){
+	    useBaseline = pUseBaseline;
+    }
+    
+    /**
+     * @return The file of the baseline snapshot. If empty, the snapshot of
+     * the selected golden image in the module folder of the case is used.
+     */
+    public String getBaselinePath(){
+	    return baselinePath != null ? baselinePath : "";
+    }
+    
+    public void setBaselinePath(String pBaselinePath){
+	    baselinePath = pBaselinePath;
+    }
+    
+    /**
+     * @return The hash manifest (hashdeep, md5deep or CSV) of the golden
+     * image, which is imported as baseline snapshot. If empty, no manifest is
+     * imported.
+     */
+    public String getManifestPath(){
+	    return manifestPath != null ? manifestPath : "";
+    }
+    
+    public void setManifestPath(String pManifestPath){
+	    manifestPath = pManifestPath;
+    }
+    
+    /**
+     * @return The prefix which is removed from the paths of the manifest,
+     * e.g. the mount point of the golden image when it was hashed.
+     */
+    public String getManifestRootPrefix(){
+	    return manifestRootPrefix != null ? manifestRootPrefix : "";
+    }
+    
+    public void setManifestRootPrefix(String pManifestRootPrefix){
+	    manifestRootPrefix = pManifestRootPrefix;
+    }
+    
+    /**
+     * @return True if the dirty image is compared against a baseline snapshot
+     * (an exported one or an imported manifest) instead of the golden image.
+     */
+    boolean isBaselineComparison(){
+	    return useBaseline || !getManifestPath().isEmpty();
+    }
+    
     public Content getDatasourceById(long pDataSourceId){
 	    Case currentCase = Case.getCurrentCase();
 	    ArrayList<Content> listDS = new ArrayList<>();
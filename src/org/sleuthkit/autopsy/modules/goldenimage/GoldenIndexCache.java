@@ -0,0 +1,465 @@
+/*
+ * GoldenIndexCache
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The digests of golden image files, shared by all ingest jobs of the
+ * factory. Jobs which compare several dirty images against the same golden
+ * image at the same time hash each golden file at most once: The first job
+ * claims the file and hashes it, the other jobs wait for its digests instead
+ * of reading the file again.
+ *
+ * Every job holds a lease on the index of its golden image. An index isn't
+ * evicted while it's leased. Released indexes stay cached for later jobs
+ * until the cached digests exceed the memory budget, then the least recently
+ * used ones are evicted. If the budget is still exceeded, the leased indexes
+ * stop growing: The digests of a file are still passed to the jobs waiting
+ * for them, but they aren't kept for jobs which come later.
+ *
+ * The published digests are kept in tables of primitives, so their memory
+ * usage is the size of the arrays of the tables. Only the files which are
+ * being hashed right now have an object per file.
+ */
+final class GoldenIndexCache {
+
+    // Interval in which a waiting job checks if it was cancelled
+    private static final long WAIT_INTERVAL = 100;
+
+    private final LinkedHashMap<String, GoldenIndex> indexes = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBudget;
+
+    /**
+     * @param pMemoryBudget The size of the cached digests in bytes up to
+     * which released indexes are kept
+     */
+    GoldenIndexCache(long pMemoryBudget) {
+        memoryBudget = pMemoryBudget;
+    }
+
+    /**
+     * Leases the index of a golden image. The lease must be closed when the
+     * job is finished or cancelled.
+     *
+     * @param pCaseDirectory The directory of the case the golden image
+     * belongs to
+     * @param pGoldenImageId The object id of the golden image
+     * @param pAlgorithms The algorithms of the digests
+     * @param pMemoryBudget The memory budget of the job in bytes, it replaces
+     * the budget of the cache
+     */
+    Lease acquire(String pCaseDirectory, long pGoldenImageId, List<DigestAlgorithm> pAlgorithms, long pMemoryBudget) {
+        return acquire(pCaseDirectory + "|" + pGoldenImageId + "|" + pAlgorithms, pMemoryBudget);
+    }
+
+    /**
+     * Leases the block digests of the large files of a golden image, which
+     * are hashed in blocks instead of as a whole. The digests of a file are
+     * the digests of its blocks.
+     *
+     * @param pAlgorithm The algorithm of the block digests
+     * @param pBlockSize The size of the blocks in bytes
+     *
+     * @see #acquire(String, long, List, long)
+     */
+    Lease acquireBlocks(String pCaseDirectory, long pGoldenImageId, DigestAlgorithm pAlgorithm, long pBlockSize, long pMemoryBudget) {
+        return acquire(pCaseDirectory + "|" + pGoldenImageId + "|" + pAlgorithm + "|blocks of " + pBlockSize, pMemoryBudget);
+    }
+
+    private synchronized Lease acquire(String pKey, long pMemoryBudget) {
+        GoldenIndex index = indexes.get(pKey);
+        if (index == null) {
+            index = new GoldenIndex();
+            indexes.put(pKey, index);
+        }
+        index.references++;
+        memoryBudget = pMemoryBudget;
+        evict();
+        return new Lease(index);
+    }
+
+    /**
+     * @return The size of all cached digests in bytes.
+     */
+    synchronized long getMemoryUsage() {
+        long usage = 0;
+        for (GoldenIndex index : indexes.values()) {
+            usage += index.published.getMemoryUsage();
+        }
+        return usage;
+    }
+
+    private synchronized void release(GoldenIndex pIndex) {
+        pIndex.references--;
+        evict();
+    }
+
+    /**
+     * Evicts released indexes, least recently used first, until the cache
+     * fits into the memory budget.
+     */
+    private void evict() {
+        evict(0);
+    }
+
+    /**
+     * Evicts released indexes, least recently used first, until the cache
+     * fits into the memory budget with the given reserve.
+     *
+     * @return True if the reserve fits into the memory budget.
+     */
+    private boolean evict(long pReserve) {
+        long usage = getMemoryUsage() + pReserve;
+        Iterator<GoldenIndex> iterator = indexes.values().iterator();
+        while (usage > memoryBudget && iterator.hasNext()) {
+            GoldenIndex index = iterator.next();
+            if (index.references == 0) {
+                usage -= index.published.getMemoryUsage();
+                iterator.remove();
+            }
+        }
+        return usage <= memoryBudget;
+    }
+
+    /**
+     * Keeps the digests of a file in its index if they fit into the memory
+     * budget.
+     */
+    private synchronized void store(GoldenIndex pIndex, long pObjectId, byte[][] pDigests) {
+        long growth = pIndex.published.getGrowth(pDigests);
+        if (growth < 0 || (growth > 0 && !evict(growth))) {
+            return;
+        }
+        pIndex.published.put(pObjectId, pDigests);
+    }
+
+    /**
+     * The digests of the files of one golden image by object id.
+     */
+    private static final class GoldenIndex {
+
+        final DigestTable published = new DigestTable();
+        // The files which are hashed right now
+        final ConcurrentHashMap<Long, Entry> claimed = new ConcurrentHashMap<>();
+        int references;
+    }
+
+    /**
+     * A claimed file. Its digests are null while it's hashed by the job which
+     * claimed it, and stay null if it couldn't be hashed.
+     */
+    private static final class Entry {
+
+        final CountDownLatch hashed = new CountDownLatch(1);
+        volatile byte[][] digests;
+    }
+
+    /**
+     * The published digests of one golden image, in a hash table with open
+     * addressing. The digests of all files are packed into one array, each
+     * as its count followed by the length and bytes of every digest.
+     */
+    private static final class DigestTable {
+
+        private static final int INITIAL_CAPACITY = 1024;
+        private static final int INITIAL_DATA_CAPACITY = 64 * 1024;
+        // Largest array the JVMs allocate
+        private static final int MAX_DATA_CAPACITY = Integer.MAX_VALUE - 8;
+
+        private long[] keys = new long[0];
+        // One more than the offset of the digests of a key, 0 for a free slot
+        private int[] offsets = new int[0];
+        private byte[] data = new byte[0];
+        private int size;
+        private int dataLength;
+
+        synchronized long getMemoryUsage() {
+            return memoryUsage(keys.length, data.length);
+        }
+
+        /**
+         * Copies the digests of a file.
+         *
+         * @return True if the file is in the table and its digests have the
+         * lengths of the given arrays.
+         */
+        synchronized boolean get(long pKey, byte[][] pDigests) {
+            int slot = find(pKey);
+            if (slot < 0 || offsets[slot] == 0) {
+                return false;
+            }
+            int offset = offsets[slot] - 1;
+            if ((data[offset] & 0xFF) != pDigests.length) {
+                return false;
+            }
+            int position = offset + 1;
+            for (byte[] digest : pDigests) {
+                if ((data[position] & 0xFF) != digest.length) {
+                    return false;
+                }
+                position += 1 + digest.length;
+            }
+            position = offset + 1;
+            for (byte[] digest : pDigests) {
+                System.arraycopy(data, position + 1, digest, 0, digest.length);
+                position += 1 + digest.length;
+            }
+            return true;
+        }
+
+        /**
+         * @return The amount of bytes by which put() would enlarge the table,
+         * or -1 if it can't hold the digests.
+         */
+        synchronized long getGrowth(byte[][] pDigests) {
+            long dataCapacity = dataCapacity(recordLength(pDigests));
+            long capacity = capacity();
+            if (dataCapacity > MAX_DATA_CAPACITY || capacity > Integer.MAX_VALUE / 2) {
+                return -1;
+            }
+            return memoryUsage(capacity, dataCapacity) - memoryUsage(keys.length, data.length);
+        }
+
+        /**
+         * Adds the digests of a file, unless it's in the table already.
+         */
+        synchronized void put(long pKey, byte[][] pDigests) {
+            int slot = find(pKey);
+            if ((slot >= 0 && offsets[slot] != 0) || getGrowth(pDigests) < 0) {
+                return;
+            }
+            if (capacity() != keys.length) {
+                resize((int) capacity());
+                slot = find(pKey);
+            }
+            int recordLength = recordLength(pDigests);
+            if (dataCapacity(recordLength) != data.length) {
+                data = Arrays.copyOf(data, (int) dataCapacity(recordLength));
+            }
+
+            keys[slot] = pKey;
+            offsets[slot] = dataLength + 1;
+            size++;
+            data[dataLength++] = (byte) pDigests.length;
+            for (byte[] digest : pDigests) {
+                data[dataLength++] = (byte) digest.length;
+                System.arraycopy(digest, 0, data, dataLength, digest.length);
+                dataLength += digest.length;
+            }
+        }
+
+        /**
+         * @return The amount of slots after one more key was added, at most
+         * half of them are used.
+         */
+        private long capacity() {
+            return size + 1 > keys.length / 2 ? Math.max(INITIAL_CAPACITY, keys.length * 2L) : keys.length;
+        }
+
+        /**
+         * @return The length of the data array after a record was added.
+         */
+        private long dataCapacity(int pRecordLength) {
+            long dataCapacity = data.length;
+            while (dataLength + pRecordLength > dataCapacity) {
+                dataCapacity = Math.max(INITIAL_DATA_CAPACITY, dataCapacity * 2);
+            }
+            return dataCapacity;
+        }
+
+        /**
+         * @return The slot of a key or the free slot where it belongs, -1 if
+         * the table is empty.
+         */
+        private int find(long pKey) {
+            if (keys.length == 0) {
+                return -1;
+            }
+            int mask = keys.length - 1;
+            int slot = mix(pKey) & mask;
+            while (offsets[slot] != 0 && keys[slot] != pKey) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void resize(int pCapacity) {
+            long[] oldKeys = keys;
+            int[] oldOffsets = offsets;
+            keys = new long[pCapacity];
+            offsets = new int[pCapacity];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldOffsets[i] != 0) {
+                    int slot = find(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    offsets[slot] = oldOffsets[i];
+                }
+            }
+        }
+
+        private static int recordLength(byte[][] pDigests) {
+            int length = 1;
+            for (byte[] digest : pDigests) {
+                length += 1 + digest.length;
+            }
+            return length;
+        }
+
+        private static long memoryUsage(long pCapacity, long pDataCapacity) {
+            return pCapacity * (Long.BYTES + Integer.BYTES) + pDataCapacity;
+        }
+
+        //Spreads object ids which are close to each other over the table (finalizer of MurmurHash3)
+        private static int mix(long pKey) {
+            long hash = pKey;
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            return (int) hash;
+        }
+    }
+
+    /**
+     * The access of one job to the index of its golden image.
+     */
+    final class Lease implements AutoCloseable {
+
+        private final GoldenIndex index;
+        private final Set<Long> claims = new HashSet<>();
+        private boolean closed = false;
+
+        private Lease(GoldenIndex pIndex) {
+            index = pIndex;
+        }
+
+        /**
+         * Returns the digests of a golden file or claims it. If another job
+         * hashes the file right now, waits until it's finished. A claimed
+         * file must be published or abandoned by this lease.
+         *
+         * @param pObjectId The object id of the golden file
+         * @param pDigests Receives the digests if they are cached
+         * @param pCancelled Stops waiting if it returns true
+         *
+         * @return True if the digests were copied, false if the file was
+         * claimed or the wait was cancelled.
+         */
+        boolean getOrClaim(long pObjectId, byte[][] pDigests, BooleanSupplier pCancelled) throws InterruptedException {
+            while (true) {
+                if (index.published.get(pObjectId, pDigests)) {
+                    return true;
+                }
+                Entry entry = index.claimed.get(pObjectId);
+                if (entry == null) {
+                    Entry claim = new Entry();
+                    if (index.claimed.putIfAbsent(pObjectId, claim) == null) {
+                        //The file may have been published since it was looked up
+                        if (index.published.get(pObjectId, pDigests)) {
+                            index.claimed.remove(pObjectId, claim);
+                            claim.hashed.countDown();
+                            return true;
+                        }
+                        synchronized (this) {
+                            claims.add(pObjectId);
+                        }
+                        return false;
+                    }
+                    continue;
+                }
+
+                //Wait for the job which hashes the file
+                while (!entry.hashed.await(WAIT_INTERVAL, TimeUnit.MILLISECONDS)) {
+                    if (pCancelled.getAsBoolean()) {
+                        return false;
+                    }
+                }
+                byte[][] digests = entry.digests;
+                if (digests != null) {
+                    for (int i = 0; i < pDigests.length; i++) {
+                        System.arraycopy(digests[i], 0, pDigests[i], 0, pDigests[i].length);
+                    }
+                    return true;
+                }
+                //The other job failed, so the file is claimed again
+            }
+        }
+
+        /**
+         * Copies the digests of a golden file if they are cached, without
+         * claiming the file or waiting for the job which hashes it.
+         *
+         * @return True if the digests were copied.
+         */
+        boolean get(long pObjectId, byte[][] pDigests) {
+            return index.published.get(pObjectId, pDigests);
+        }
+
+        /**
+         * Publishes the digests of a file this lease claimed. They are passed
+         * to the jobs waiting for them, and kept in the index if they fit
+         * into the memory budget.
+         */
+        void publish(long pObjectId, byte[][] pDigests) {
+            if (!unclaim(pObjectId)) {
+                return;
+            }
+            Entry entry = index.claimed.get(pObjectId);
+            byte[][] digests = new byte[pDigests.length][];
+            for (int i = 0; i < pDigests.length; i++) {
+                digests[i] = pDigests[i].clone();
+            }
+            entry.digests = digests;
+            //Stored before the claim is removed, so a job looking the file up in between finds it
+            store(index, pObjectId, digests);
+            index.claimed.remove(pObjectId, entry);
+            entry.hashed.countDown();
+        }
+
+        /**
+         * Gives up the claim of a file which couldn't be hashed, so another
+         * job hashes it.
+         */
+        void abandon(long pObjectId) {
+            if (unclaim(pObjectId)) {
+                Entry entry = index.claimed.get(pObjectId);
+                index.claimed.remove(pObjectId, entry);
+                entry.hashed.countDown();
+            }
+        }
+
+        private synchronized boolean unclaim(long pObjectId) {
+            return claims.remove(pObjectId);
+        }
+
+        /**
+         * Abandons all files which are still claimed and releases the index.
+         */
+        @Override
+        public void close() {
+            Long[] remaining;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                remaining = claims.toArray(new Long[claims.size()]);
+            }
+            for (Long objectId : remaining) {
+                abandon(objectId);
+            }
+            release(index);
+        }
+    }
+}
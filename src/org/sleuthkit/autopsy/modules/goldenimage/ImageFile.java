@@ -0,0 +1,62 @@
+/*
+ * ImageFile
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * A file of an image as the comparison sees it: its key (parent path and
+ * name), object id, metadata and content. The DiffEngine, the
+ * ComparisonPipeline and the stages behind it only work on this view.
+ * Implemented by the CaseFile over the files of the case database and by the
+ * in-memory stand-ins of the benchmarks.
+ */
+interface ImageFile {
+
+    long getId();
+
+    /**
+     * @return The object id of the image the file belongs to.
+     */
+    long getDataSourceObjectId();
+
+    String getParentPath();
+
+    String getName();
+
+    long getSize();
+
+    long getMtime();
+
+    long getCrtime();
+
+    long getCtime();
+
+    long getMetaAddr();
+
+    boolean canRead();
+
+    /**
+     * Reads content of the file.
+     *
+     * @return The amount of bytes read.
+     *
+     * @throws TskCoreException If the content couldn't be read.
+     */
+    int read(byte[] pBuffer, long pOffset, long pLength) throws TskCoreException;
+
+    /**
+     * @return The byte offset of the first data run of the file in its image,
+     * or 0 if it isn't known.
+     */
+    long getImageOffset();
+
+    /**
+     * @return The file of the case database or null if the file isn't part of
+     * a case (the stand-ins of the benchmarks).
+     */
+    AbstractFile getAbstractFile();
+}
@@ -0,0 +1,325 @@
+/*
+ * ManifestImporter
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.sleuthkit.autopsy.coreutils.Logger;
+
+/**
+ * Converts a hash manifest of a golden image into a baseline snapshot, so a
+ * dirty image can be compared against it without ingesting the golden image.
+ * Supported formats:
+ * <ul>
+ * <li>hashdeep: "%%%% size,md5,sha256,filename" header and CSV lines</li>
+ * <li>md5deep / md5sum / sha256sum: "[size] digest [*]path" lines</li>
+ * <li>CSV with a header row naming the path, size and digest columns (md5,
+ * sha256, xxhash64 or digest/hash)</li>
+ * </ul>
+ * The paths are converted to the paths of the case database: Backslashes
+ * become slashes and the root prefix (e.g. the mount point the manifest was
+ * created at) is removed. The manifest is streamed: Its entries are sorted
+ * externally by the snapshot writer, so the heap doesn't grow with the
+ * manifest.
+ *
+ * The manifest, its modification time and the import options are recorded
+ * next to the snapshot, so a manifest which didn't change isn't imported
+ * again by the next job.
+ */
+final class ManifestImporter {
+
+    private static final Logger logger = Logger.getLogger(ManifestImporter.class.getName());
+
+    private static final String SOURCE_EXTENSION = ".source";
+
+    private static final Pattern DEEP_LINE = Pattern.compile("^(?:(\\d+)\\s+)?([0-9a-fA-F]{16,64})\\s+\\*?(.+)$");
+
+    private final DigestAlgorithm preferredAlgorithm;
+    private final String rootPrefix;
+
+    /**
+     * @param pPreferredAlgorithm The algorithm to use if the manifest contains
+     * more than one digest per file
+     * @param pRootPrefix The prefix which is removed from the paths of the
+     * manifest
+     */
+    ManifestImporter(DigestAlgorithm pPreferredAlgorithm, String pRootPrefix) {
+        preferredAlgorithm = pPreferredAlgorithm;
+        rootPrefix = trimTrailingSlash(normalizeSeparators(pRootPrefix == null ? "" : pRootPrefix.trim()));
+    }
+
+    /**
+     * Imports the manifest unless the snapshot was already imported from the
+     * same manifest with the same options.
+     *
+     * @return True if the manifest was imported.
+     */
+    boolean importIfChanged(Path pManifest, Path pTarget) throws IOException {
+        String source = describeSource(pManifest);
+        Path sourceFile = pTarget.resolveSibling(pTarget.getFileName() + SOURCE_EXTENSION);
+        if (Files.exists(pTarget) && Files.exists(sourceFile)
+                && new String(Files.readAllBytes(sourceFile), StandardCharsets.UTF_8).equals(source)) {
+            return false;
+        }
+        //The record is only written once the snapshot is complete
+        Files.deleteIfExists(sourceFile);
+        importManifest(pManifest, pTarget);
+        Files.write(sourceFile, source.getBytes(StandardCharsets.UTF_8));
+        return true;
+    }
+
+    /**
+     * @return Describes the manifest and the options of the import, changes
+     * if the manifest is modified or replaced.
+     */
+    String describeSource(Path pManifest) throws IOException {
+        return pManifest.toAbsolutePath() + "@" + Files.getLastModifiedTime(pManifest).toMillis() + "/" + Files.size(pManifest)
+                + "|prefix:" + rootPrefix + "|" + preferredAlgorithm;
+    }
+
+    /**
+     * Reads the manifest line by line and writes the baseline snapshot.
+     *
+     * @param pManifest The manifest file
+     * @param pTarget The snapshot file, an existing one is replaced
+     *
+     * @return The digest algorithm of the snapshot.
+     *
+     * @throws IOException If the manifest can't be read or doesn't contain
+     * any files.
+     */
+    DigestAlgorithm importManifest(Path pManifest, Path pTarget) throws IOException {
+        BaselineSnapshot.Writer writer = null;
+        try (BufferedReader reader = Files.newBufferedReader(pManifest, StandardCharsets.UTF_8)) {
+            Columns columns = null;
+            DigestAlgorithm algorithm = null;
+            int invalidLines = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (line.startsWith("%%%%")) {
+                    //hashdeep header: The column line starts with the size
+                    String header = line.substring(4).trim();
+                    if (header.toLowerCase(Locale.ROOT).startsWith("size,")) {
+                        columns = Columns.fromHeader(splitCsv(header), preferredAlgorithm);
+                    }
+                    continue;
+                }
+                if (columns == null && writer == null && !DEEP_LINE.matcher(line).matches()) {
+                    //First line of a CSV manifest is its header
+                    columns = Columns.fromHeader(splitCsv(line), preferredAlgorithm);
+                    if (columns == null) {
+                        throw new IOException("Unknown manifest format: " + pManifest);
+                    }
+                    continue;
+                }
+
+                BaselineEntry entry = columns != null ? parseCsvLine(line, columns) : parseDeepLine(line);
+                if (entry == null) {
+                    invalidLines++;
+                    continue;
+                }
+                if (writer == null) {
+                    algorithm = columns != null ? columns.algorithm : algorithmOf(entry.getDigest().length);
+                    writer = new BaselineSnapshot.Writer(algorithm, BaselineEntry.NO_OBJECT_ID);
+                }
+                try {
+                    writer.add(entry);
+                } catch (IllegalArgumentException ex) {
+                    //A digest of another algorithm than the first line
+                    invalidLines++;
+                }
+            }
+
+            if (writer == null || writer.size() == 0) {
+                throw new IOException("The manifest doesn't contain any files: " + pManifest);
+            }
+            if (invalidLines > 0) {
+                logger.log(Level.WARNING, "{0} lines of the manifest {1} couldn''t be read.", new Object[]{invalidLines, pManifest});
+            }
+            writer.write(pTarget);
+            return algorithm;
+        } finally {
+            //Deletes the spilled runs if the import failed
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private BaselineEntry parseDeepLine(String pLine) {
+        Matcher matcher = DEEP_LINE.matcher(pLine);
+        if (!matcher.matches()) {
+            return null;
+        }
+        DigestAlgorithm algorithm = algorithmOf(matcher.group(2).length() / 2);
+        if (algorithm == null) {
+            return null;
+        }
+        byte[] digest = new byte[matcher.group(2).length() / 2];
+        DigestAlgorithm.fromHex(matcher.group(2), digest);
+        long size = matcher.group(1) != null ? Long.parseLong(matcher.group(1)) : BaselineEntry.UNKNOWN;
+        return createEntry(matcher.group(3), size, digest);
+    }
+
+    private BaselineEntry parseCsvLine(String pLine, Columns pColumns) {
+        List<String> values = splitCsv(pLine);
+        if (values.size() < pColumns.count) {
+            return null;
+        }
+        //hashdeep doesn't quote the file name, so it may contain commas
+        String path = pColumns.path == pColumns.count - 1 && values.size() > pColumns.count
+                ? String.join(",", values.subList(pColumns.path, values.size())) : values.get(pColumns.path);
+
+        long size = BaselineEntry.UNKNOWN;
+        if (pColumns.size >= 0) {
+            try {
+                size = Long.parseLong(values.get(pColumns.size).trim());
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+
+        byte[] digest = new byte[pColumns.digestLength];
+        if (!DigestAlgorithm.fromHex(values.get(pColumns.digest).trim().toLowerCase(Locale.ROOT), digest)) {
+            return null;
+        }
+        return createEntry(path, size, digest);
+    }
+
+    private BaselineEntry createEntry(String pPath, long pSize, byte[] pDigest) {
+        String path = normalizeSeparators(pPath);
+        if (path.startsWith("./")) {
+            path = path.substring(1);
+        } else if (!rootPrefix.isEmpty() && path.startsWith(rootPrefix + "/")) {
+            path = path.substring(rootPrefix.length());
+        }
+        if (!path.startsWith("/")) {
+            path = "/" + path;
+        }
+        return new BaselineEntry(path, pSize, BaselineEntry.UNKNOWN, BaselineEntry.UNKNOWN, BaselineEntry.UNKNOWN,
+                BaselineEntry.NO_OBJECT_ID, pDigest);
+    }
+
+    private static String normalizeSeparators(String pPath) {
+        return pPath.replace('\\', '/');
+    }
+
+    private static String trimTrailingSlash(String pPath) {
+        return pPath.endsWith("/") ? pPath.substring(0, pPath.length() - 1) : pPath;
+    }
+
+    /**
+     * @return The algorithm of a digest length or null.
+     */
+    private static DigestAlgorithm algorithmOf(int pDigestLength) {
+        for (DigestAlgorithm algorithm : DigestAlgorithm.values()) {
+            if (algorithm.createDigester().getLength() == pDigestLength) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Splits a CSV line, values may be quoted with double quotes.
+     */
+    private static List<String> splitCsv(String pLine) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < pLine.length(); i++) {
+            char c = pLine.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < pLine.length() && pLine.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * The column indexes of a CSV or hashdeep manifest.
+     */
+    private static final class Columns {
+
+        int count;
+        int path = -1;
+        int size = -1;
+        int digest = -1;
+        int digestLength;
+        DigestAlgorithm algorithm;
+
+        /**
+         * @return The columns or null if the header doesn't name a path and
+         * a supported digest column.
+         */
+        static Columns fromHeader(List<String> pHeader, DigestAlgorithm pPreferredAlgorithm) {
+            Columns columns = new Columns();
+            columns.count = pHeader.size();
+            for (int i = 0; i < pHeader.size(); i++) {
+                String name = pHeader.get(i).trim().toLowerCase(Locale.ROOT).replace("-", "");
+                DigestAlgorithm algorithm = null;
+                switch (name) {
+                    case "path":
+                    case "filename":
+                    case "file":
+                    case "name":
+                        columns.path = i;
+                        break;
+                    case "size":
+                        columns.size = i;
+                        break;
+                    case "md5":
+                        algorithm = DigestAlgorithm.MD5;
+                        break;
+                    case "sha256":
+                        algorithm = DigestAlgorithm.SHA256;
+                        break;
+                    case "xxhash64":
+                        algorithm = DigestAlgorithm.XXHASH64;
+                        break;
+                    case "digest":
+                    case "hash":
+                        //Digests without a named algorithm are expected to be of the job's algorithm
+                        algorithm = pPreferredAlgorithm;
+                        break;
+                    default:
+                        break;
+                }
+                if (algorithm != null && (columns.algorithm == null || algorithm == pPreferredAlgorithm)) {
+                    columns.digest = i;
+                    columns.algorithm = algorithm;
+                }
+            }
+            if (columns.path < 0 || columns.digest < 0) {
+                return null;
+            }
+            columns.digestLength = columns.algorithm.createDigester().getLength();
+            return columns;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * MetadataFilter
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+
+/**
+ * Pre-filter stage of the comparison. It compares the metadata of a golden
+ * image file and its equivalent on the dirty image, which is already loaded
+ * from the case database. A pair which differs in its metadata is changed
+ * and doesn't have to be hashed at all; only pairs which pass the filter go
+ * on to the content comparison.
+ */
+final class MetadataFilter {
+
+    private final boolean compareTimestamps;
+    private final boolean compareMetadataAddress;
+
+    MetadataFilter(GoldenImageModuleIngestJobSettings pSettings) {
+        compareTimestamps = pSettings.isCompareTimestamps();
+        compareMetadataAddress = pSettings.isCompareMetadataAddress();
+    }
+
+    /**
+     * Compares the metadata of two files. The size is always compared, the
+     * timestamps and the metadata address only if enabled in the settings.
+     *
+     * @param pGoldenImageFile The file on the golden image
+     * @param pDirtyImageFile The file on the dirty image
+     *
+     * @return A description of the first difference or null if the metadata
+     * is equal and the content has to be compared.
+     */
+    String findDifference(ImageFile pGoldenImageFile, ImageFile pDirtyImageFile) {
+        return findDifference(pGoldenImageFile.getSize(), pGoldenImageFile.getMtime(), pGoldenImageFile.getCrtime(),
+                pGoldenImageFile.getMetaAddr(), pDirtyImageFile);
+    }
+
+    /**
+     * Compares the metadata of a golden image file in a baseline snapshot
+     * with the file on the dirty image. Metadata which is unknown in the
+     * snapshot isn't compared.
+     *
+     * @see #findDifference(ImageFile, ImageFile)
+     */
+    String findDifference(BaselineEntry pBaselineEntry, ImageFile pDirtyImageFile) {
+        return findDifference(pBaselineEntry.getSize(), pBaselineEntry.getMtime(), pBaselineEntry.getCrtime(),
+                pBaselineEntry.getMetaAddr(), pDirtyImageFile);
+    }
+
+    private String findDifference(long pSize, long pMtime, long pCrtime, long pMetaAddr, ImageFile pDirtyImageFile) {
+        if (pSize != BaselineEntry.UNKNOWN && pSize != pDirtyImageFile.getSize()) {
+            return "The size of this file is different from it's equivalent on the golden image.";
+        }
+
+        if (compareTimestamps && ((pMtime != BaselineEntry.UNKNOWN && pMtime != pDirtyImageFile.getMtime())
+                || (pCrtime != BaselineEntry.UNKNOWN && pCrtime != pDirtyImageFile.getCrtime()))) {
+            return "The timestamps of this file are different from it's equivalent on the golden image.";
+        }
+
+        if (compareMetadataAddress && pMetaAddr != BaselineEntry.UNKNOWN && pMetaAddr != pDirtyImageFile.getMetaAddr()) {
+            return "The metadata address of this file is different from it's equivalent on the golden image.";
+        }
+
+        return null;
+    }
+}
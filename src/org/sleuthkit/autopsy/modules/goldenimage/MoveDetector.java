@@ -0,0 +1,188 @@
+/*
+ * MoveDetector
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.Arrays;
+
+/**
+ * Finds golden image files which were moved or renamed on the dirty image.
+ * The files which only exist on the dirty image are indexed by their content
+ * while the images are compared. Afterwards every golden image file without
+ * a path match is looked up by its digest; if a dirty image file of the same
+ * size and digest exists, the file was moved instead of deleted and the
+ * dirty image file isn't new.
+ *
+ * The index is a multimap from the first 64 bits of the digest to the dirty
+ * image files, stored in primitive arrays (open addressing for the keys,
+ * chained entries), so it takes about 40 bytes per file no matter how many
+ * files are indexed. Every dirty image file is matched to at most one golden
+ * image file.
+ */
+final class MoveDetector {
+
+    private static final int NO_ENTRY = -1;
+
+    //Hash table of the keys, pointing to the first entry of the key
+    private long[] tableKeys = new long[1024];
+    private int[] tableHeads = new int[1024];
+    private int usedSlots = 0;
+
+    //Entries, chained by key
+    private int[] next = new int[1024];
+    private long[] sizes = new long[1024];
+    private long[] objectIds = new long[1024];
+    private long[] matched = new long[16];
+    private int entryCount = 0;
+
+    //Golden image files without a path match
+    private long[] goldenImageFiles = new long[1024];
+    private int goldenImageFileCount = 0;
+
+    MoveDetector() {
+        Arrays.fill(tableHeads, NO_ENTRY);
+    }
+
+    /**
+     * Files without content can't be told apart, so they are never matched.
+     */
+    static boolean isCandidate(long pSize) {
+        return pSize > 0;
+    }
+
+    /**
+     * Indexes a file which only exists on the dirty image.
+     *
+     * @param pDigest The digest of the content
+     */
+    synchronized void addDirtyImageFile(byte[] pDigest, long pSize, long pObjectId) {
+        if (entryCount == next.length) {
+            int capacity = next.length * 2;
+            next = Arrays.copyOf(next, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            objectIds = Arrays.copyOf(objectIds, capacity);
+        }
+        if ((entryCount >> 6) >= matched.length) {
+            matched = Arrays.copyOf(matched, matched.length * 2);
+        }
+        if ((usedSlots + 1) * 4L > tableKeys.length * 3L) {
+            rehash(tableKeys.length * 2);
+        }
+
+        long key = key(pDigest);
+        int slot = findSlot(tableKeys, tableHeads, key);
+        if (tableHeads[slot] == NO_ENTRY) {
+            tableKeys[slot] = key;
+            usedSlots++;
+        }
+        next[entryCount] = tableHeads[slot];
+        sizes[entryCount] = pSize;
+        objectIds[entryCount] = pObjectId;
+        tableHeads[slot] = entryCount;
+        entryCount++;
+    }
+
+    /**
+     * Finds a dirty image file with the same content as a golden image file
+     * and marks it as matched.
+     *
+     * @param pDigest The digest of the golden image file
+     *
+     * @return The object id of the dirty image file or
+     * BaselineEntry.NO_OBJECT_ID if none was found.
+     */
+    synchronized long match(byte[] pDigest, long pSize) {
+        long key = key(pDigest);
+        int slot = findSlot(tableKeys, tableHeads, key);
+        for (int entry = tableHeads[slot]; entry != NO_ENTRY; entry = next[entry]) {
+            if (sizes[entry] == pSize && !isMatched(entry)) {
+                matched[entry >> 6] |= 1L << entry;
+                return objectIds[entry];
+            }
+        }
+        return BaselineEntry.NO_OBJECT_ID;
+    }
+
+    /**
+     * Remembers a golden image file without a path match, to look it up once
+     * all dirty image files are indexed.
+     */
+    synchronized void addGoldenImageFile(long pObjectId) {
+        if (goldenImageFileCount == goldenImageFiles.length) {
+            goldenImageFiles = Arrays.copyOf(goldenImageFiles, goldenImageFileCount * 2);
+        }
+        goldenImageFiles[goldenImageFileCount++] = pObjectId;
+    }
+
+    synchronized int getGoldenImageFileCount() {
+        return goldenImageFileCount;
+    }
+
+    synchronized long getGoldenImageFile(int pIndex) {
+        return goldenImageFiles[pIndex];
+    }
+
+    synchronized int getDirtyImageFileCount() {
+        return entryCount;
+    }
+
+    /**
+     * @return The index of the next dirty image file which wasn't matched, or
+     * -1.
+     */
+    synchronized int nextUnmatched(int pFromIndex) {
+        for (int entry = pFromIndex; entry < entryCount; entry++) {
+            if (!isMatched(entry)) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    synchronized long getDirtyImageFile(int pIndex) {
+        return objectIds[pIndex];
+    }
+
+    private boolean isMatched(int pEntry) {
+        return (matched[pEntry >> 6] & (1L << pEntry)) != 0;
+    }
+
+    private void rehash(int pCapacity) {
+        long[] keys = new long[pCapacity];
+        int[] heads = new int[pCapacity];
+        Arrays.fill(heads, NO_ENTRY);
+        for (int slot = 0; slot < tableKeys.length; slot++) {
+            if (tableHeads[slot] != NO_ENTRY) {
+                int newSlot = findSlot(keys, heads, tableKeys[slot]);
+                keys[newSlot] = tableKeys[slot];
+                heads[newSlot] = tableHeads[slot];
+            }
+        }
+        tableKeys = keys;
+        tableHeads = heads;
+    }
+
+    /**
+     * @return The slot of the key or the empty slot it belongs into.
+     */
+    private static int findSlot(long[] pKeys, int[] pHeads, long pKey) {
+        int mask = pKeys.length - 1;
+        int slot = (int) (pKey ^ (pKey >>> 32)) & mask;
+        while (pHeads[slot] != NO_ENTRY && pKeys[slot] != pKey) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * @return The first 64 bits of a digest.
+     */
+    private static long key(byte[] pDigest) {
+        long key = 0;
+        for (int i = 0; i < Math.min(Long.BYTES, pDigest.length); i++) {
+            key = (key << 8) | (pDigest[i] & 0xFF);
+        }
+        return key;
+    }
+}
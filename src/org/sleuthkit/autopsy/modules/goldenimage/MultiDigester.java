@@ -0,0 +1,80 @@
+/*
+ * MultiDigester
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.List;
+
+/**
+ * Computes the digests of several algorithms in one pass over the content of
+ * a file. The first algorithm is the one the files are compared with, the
+ * others are only recorded. Not thread safe.
+ */
+final class MultiDigester {
+
+    private final DigestAlgorithm[] algorithms;
+    private final Digester[] digesters;
+
+    MultiDigester(List<DigestAlgorithm> pAlgorithms) {
+        algorithms = pAlgorithms.toArray(new DigestAlgorithm[pAlgorithms.size()]);
+        digesters = new Digester[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) {
+            digesters[i] = algorithms[i].createDigester();
+        }
+    }
+
+    void update(byte[] pBuffer, int pOffset, int pLength) {
+        for (Digester digester : digesters) {
+            digester.update(pBuffer, pOffset, pLength);
+        }
+    }
+
+    /**
+     * Allocates buffers for the digests of all algorithms, which can be
+     * reused for every file.
+     */
+    byte[][] createDigestBuffers() {
+        byte[][] buffers = new byte[digesters.length][];
+        for (int i = 0; i < digesters.length; i++) {
+            buffers[i] = new byte[digesters[i].getLength()];
+        }
+        return buffers;
+    }
+
+    /**
+     * Completes the digests and resets the digesters for the next file.
+     *
+     * @param pTarget The buffers from createDigestBuffers the digests are
+     * written to, in the order of the algorithms.
+     */
+    void digest(byte[][] pTarget) {
+        for (int i = 0; i < digesters.length; i++) {
+            digesters[i].digest(pTarget[i], 0);
+        }
+    }
+
+    void reset() {
+        for (Digester digester : digesters) {
+            digester.reset();
+        }
+    }
+
+    DigestAlgorithm[] getAlgorithms() {
+        return algorithms;
+    }
+
+    /**
+     * Formats digests as "Algorithm: digest" list, e.g. for tag comments.
+     */
+    static String describe(DigestAlgorithm[] pAlgorithms, byte[][] pDigests) {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < pAlgorithms.length; i++) {
+            if (i > 0) {
+                description.append(", ");
+            }
+            description.append(pAlgorithms[i]).append(": ").append(DigestAlgorithm.toHex(pDigests[i]));
+        }
+        return description.toString();
+    }
+}
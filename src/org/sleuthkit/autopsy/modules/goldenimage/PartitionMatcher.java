@@ -0,0 +1,154 @@
+/*
+ * PartitionMatcher
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import org.sleuthkit.datamodel.Content;
+import org.sleuthkit.datamodel.FileSystem;
+import org.sleuthkit.datamodel.Image;
+import org.sleuthkit.datamodel.TskCoreException;
+import org.sleuthkit.datamodel.Volume;
+import org.sleuthkit.datamodel.VolumeSystem;
+
+/**
+ * Finds the file systems which are byte-identical on both images, so their
+ * files don't have to be compared one by one. The file systems are paired by
+ * their position in the volume system and their geometry. A pair is
+ * identical if the md5 hashes of both images are equal, otherwise blocks
+ * sampled evenly over the file system are compared. With strict verification
+ * the sampled blocks only rule out differing file systems; the others are
+ * compared completely. Without it, a sampled match is only likely, not
+ * certain, which describeMatch() states in the tags.
+ */
+final class PartitionMatcher {
+
+    // Amount and size of the blocks sampled per file system
+    private static final int SAMPLES = 64;
+    private static final int SAMPLE_SIZE = 64 * 1024;
+
+    private final boolean strictVerification;
+    private final byte[][] buffers = {new byte[Chunk.SIZE], new byte[Chunk.SIZE]};
+    private boolean identicalImages = false;
+
+    PartitionMatcher(boolean pStrictVerification) {
+        strictVerification = pStrictVerification;
+    }
+
+    /**
+     * Compares the partition layout and content of both images.
+     *
+     * @param pCancelled Stops comparing if it returns true
+     *
+     * @return The file systems of the dirty image which are identical to
+     * their equivalent on the golden image, mapped to the equivalent, or null
+     * if it was cancelled.
+     */
+    Map<FileSystem, FileSystem> findIdenticalFileSystems(Content pGoldenImage, Content pDirtyImage, BooleanSupplier pCancelled) throws TskCoreException {
+        Map<String, FileSystem> goldenImageFileSystems = listFileSystems(pGoldenImage);
+        Map<String, FileSystem> dirtyImageFileSystems = listFileSystems(pDirtyImage);
+        identicalImages = haveSameMd5(pGoldenImage, pDirtyImage);
+
+        Map<FileSystem, FileSystem> identical = new HashMap<>();
+        for (Map.Entry<String, FileSystem> dirtyImageFileSystem : dirtyImageFileSystems.entrySet()) {
+            if (pCancelled.getAsBoolean()) {
+                return null;
+            }
+            FileSystem goldenImageFileSystem = goldenImageFileSystems.get(dirtyImageFileSystem.getKey());
+            if (goldenImageFileSystem != null
+                    && (identicalImages || isIdentical(goldenImageFileSystem, dirtyImageFileSystem.getValue(), pCancelled))) {
+                identical.put(dirtyImageFileSystem.getValue(), goldenImageFileSystem);
+            }
+        }
+        return pCancelled.getAsBoolean() ? null : identical;
+    }
+
+    /**
+     * @return How the file systems found by the last call of
+     * findIdenticalFileSystems() were matched.
+     */
+    String describeMatch() {
+        if (identicalImages) {
+            return "The md5 hashes of both images are equal";
+        }
+        if (strictVerification) {
+            return "Its content was compared completely";
+        }
+        return "Only " + SAMPLES + " blocks of " + SAMPLE_SIZE / 1024 + " KiB sampled over the file system were compared, so the match is likely but not verified";
+    }
+
+    /**
+     * Lists the file systems of an image by their layout: The volume they are
+     * on (address, start, length and description), their offset in the image
+     * and their size.
+     */
+    private static Map<String, FileSystem> listFileSystems(Content pImage) throws TskCoreException {
+        Map<String, FileSystem> fileSystems = new HashMap<>();
+        List<Content> pending = new ArrayList<>(pImage.getChildren());
+        while (!pending.isEmpty()) {
+            Content content = pending.remove(pending.size() - 1);
+            if (content instanceof FileSystem) {
+                FileSystem fileSystem = (FileSystem) content;
+                Content parent = fileSystem.getParent();
+                String volume = parent instanceof Volume
+                        ? ((Volume) parent).getAddr() + ":" + ((Volume) parent).getStart() + ":" + ((Volume) parent).getLength() + ":" + ((Volume) parent).getDescription()
+                        : "-";
+                fileSystems.put(volume + "|" + fileSystem.getImageOffset() + "|" + fileSystem.getSize(), fileSystem);
+            } else if (content instanceof VolumeSystem || content instanceof Volume) {
+                pending.addAll(content.getChildren());
+            }
+        }
+        return fileSystems;
+    }
+
+    private static boolean haveSameMd5(Content pGoldenImage, Content pDirtyImage) throws TskCoreException {
+        if (!(pGoldenImage instanceof Image) || !(pDirtyImage instanceof Image)) {
+            return false;
+        }
+        String goldenImageMd5 = ((Image) pGoldenImage).getMd5();
+        return goldenImageMd5 != null && !goldenImageMd5.isEmpty() && goldenImageMd5.equalsIgnoreCase(((Image) pDirtyImage).getMd5());
+    }
+
+    private boolean isIdentical(FileSystem pGoldenImageFileSystem, FileSystem pDirtyImageFileSystem, BooleanSupplier pCancelled) throws TskCoreException {
+        long size = pGoldenImageFileSystem.getSize();
+        if (size != pDirtyImageFileSystem.getSize()) {
+            return false;
+        }
+
+        //Sampled blocks, including the first and the last one
+        for (int sample = 0; sample < SAMPLES; sample++) {
+            long offset = size <= SAMPLE_SIZE ? 0 : (size - SAMPLE_SIZE) * sample / (SAMPLES - 1);
+            if (!equalRanges(pGoldenImageFileSystem, pDirtyImageFileSystem, offset, Math.min(SAMPLE_SIZE, size))) {
+                return false;
+            }
+        }
+        if (!strictVerification) {
+            return true;
+        }
+
+        for (long offset = 0; offset < size; offset += Chunk.SIZE) {
+            if (pCancelled.getAsBoolean() || !equalRanges(pGoldenImageFileSystem, pDirtyImageFileSystem, offset, Math.min(Chunk.SIZE, size - offset))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean equalRanges(Content pFirst, Content pSecond, long pOffset, long pLength) throws TskCoreException {
+        int length = (int) Math.min(pLength, Chunk.SIZE);
+        if (pFirst.read(buffers[0], pOffset, length) != length || pSecond.read(buffers[1], pOffset, length) != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffers[0][i] != buffers[1][i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * PipelineMetrics
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the stages of a comparison, so a slow run can be traced to the
+ * stage which limits it: the file queries, the waits for a free pair slot,
+ * the digest lookups, the reads, the hashing or the tag writes. Per stage it
+ * counts the operations, their bytes and their latency in a histogram with
+ * power-of-two buckets, and the errors by stage and exception type. The
+ * depths of the queues between the stages and the used heap are sampled
+ * while the job runs. The written results are counted by tag, so runs of the
+ * same images can be checked against each other.
+ *
+ * All counters are LongAdders, so the worker threads don't contend on them.
+ * The summary is written to the log and the module folder of the case when
+ * the job ends.
+ */
+final class PipelineMetrics {
+
+    /**
+     * The measured stages, in the order of the pipeline.
+     */
+    enum Stage {
+        QUERY("File queries"),
+        PAIR_WAIT("Waits for pairs in flight"),
+        RESOLVE("Digest lookups"),
+        READ("Reads"),
+        DIGEST("Digests"),
+        WRITE("Tag writes");
+
+        private final String displayName;
+
+        Stage(String pDisplayName) {
+            displayName = pDisplayName;
+        }
+
+        String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    /**
+     * The sampled queues between the stages.
+     */
+    enum Queue {
+        PAIRS("Pairs in flight"),
+        CHUNKS("Chunks in use"),
+        RESULTS("Buffered results");
+
+        private final String displayName;
+
+        Queue(String pDisplayName) {
+            displayName = pDisplayName;
+        }
+    }
+
+    // Latencies from 1 microsecond up to 2^40 microseconds (about 12 days)
+    private static final int BUCKETS = 41;
+
+    private final StageMetrics[] stages = new StageMetrics[Stage.values().length];
+    private final QueueMetrics[] queues = new QueueMetrics[Queue.values().length];
+    private final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> results = new ConcurrentHashMap<>();
+    private final LongAccumulator peakHeap = new LongAccumulator(Math::max, 0);
+    private final long startTime = System.nanoTime();
+
+    PipelineMetrics() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new StageMetrics();
+        }
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new QueueMetrics();
+        }
+    }
+
+    /**
+     * Records one operation of a stage which started at pStartTime.
+     *
+     * @param pStartTime System.nanoTime() when the operation started
+     * @param pBytes The bytes the operation processed
+     */
+    void record(Stage pStage, long pStartTime, long pBytes) {
+        stages[pStage.ordinal()].record(System.nanoTime() - pStartTime, pBytes);
+    }
+
+    /**
+     * Counts an error of a stage by the type of its cause.
+     */
+    void error(Stage pStage, Throwable pCause) {
+        errors.computeIfAbsent(pStage.getDisplayName() + ": " + pCause.getClass().getSimpleName(), key -> new LongAdder()).increment();
+    }
+
+    void sample(Queue pQueue, long pDepth) {
+        queues[pQueue.ordinal()].sample(pDepth);
+    }
+
+    /**
+     * Samples the used heap of the JVM, which includes the other modules.
+     */
+    void sampleHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        peakHeap.accumulate(runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    /**
+     * Counts a result which was written.
+     */
+    void result(String pTagName) {
+        results.computeIfAbsent(pTagName, key -> new LongAdder()).increment();
+    }
+
+    long getCount(Stage pStage) {
+        return stages[pStage.ordinal()].count.sum();
+    }
+
+    long getErrorCount() {
+        long count = 0;
+        for (LongAdder adder : errors.values()) {
+            count += adder.sum();
+        }
+        return count;
+    }
+
+    /**
+     * @return One line per stage, queue, tag and error cause.
+     */
+    String summary() {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startTime) / 1e9);
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Elapsed: %s%n", ComparisonProgress.formatDuration((long) seconds)));
+        for (Stage stage : Stage.values()) {
+            StageMetrics metrics = stages[stage.ordinal()];
+            long count = metrics.count.sum();
+            if (count == 0) {
+                continue;
+            }
+            long bytes = metrics.bytes.sum();
+            summary.append(String.format("%s: %d, mean %s, p50 %s, p99 %s, max %s, busy %s", stage.getDisplayName(), count,
+                    formatLatency(metrics.nanos.sum() / count), formatLatency(metrics.percentile(0.5)), formatLatency(metrics.percentile(0.99)),
+                    formatLatency(metrics.maxNanos.get()), ComparisonProgress.formatDuration(metrics.nanos.sum() / 1_000_000_000L)));
+            if (bytes > 0) {
+                summary.append(String.format(", %s, %s/s", ComparisonProgress.formatBytes(bytes), ComparisonProgress.formatBytes((long) (bytes / seconds))));
+            }
+            summary.append(String.format("%n"));
+        }
+        for (Queue queue : Queue.values()) {
+            QueueMetrics metrics = queues[queue.ordinal()];
+            long samples = metrics.samples.sum();
+            if (samples > 0) {
+                summary.append(String.format("%s: mean %.1f, max %d%n", queue.displayName, (double) metrics.total.sum() / samples, metrics.max.get()));
+            }
+        }
+        if (peakHeap.get() > 0) {
+            summary.append(String.format("Peak heap: %s%n", ComparisonProgress.formatBytes(peakHeap.get())));
+        }
+        for (Map.Entry<String, LongAdder> result : new TreeMap<>(results).entrySet()) {
+            summary.append(String.format("Results tagged %s: %d%n", result.getKey(), result.getValue().sum()));
+        }
+        for (Map.Entry<String, LongAdder> error : new TreeMap<>(errors).entrySet()) {
+            summary.append(String.format("Errors of %s: %d%n", error.getKey(), error.getValue().sum()));
+        }
+        return summary.toString();
+    }
+
+    private static String formatLatency(long pNanos) {
+        if (pNanos < 1_000_000L) {
+            return String.format("%.1f us", pNanos / 1e3);
+        }
+        if (pNanos < 1_000_000_000L) {
+            return String.format("%.1f ms", pNanos / 1e6);
+        }
+        return String.format("%.1f s", pNanos / 1e9);
+    }
+
+    private static final class StageMetrics {
+
+        final LongAdder count = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        // Bucket i counts the latencies from 2^(i-1) up to 2^i microseconds
+        final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+        StageMetrics() {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+
+        void record(long pNanos, long pBytes) {
+            count.increment();
+            nanos.add(pNanos);
+            maxNanos.accumulate(pNanos);
+            if (pBytes > 0) {
+                bytes.add(pBytes);
+            }
+            histogram[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(pNanos / 1000))].increment();
+        }
+
+        /**
+         * @return The upper bound of the bucket of the percentile in
+         * nanoseconds, at most the maximum latency.
+         */
+        long percentile(double pPercentile) {
+            long total = 0;
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram[i].sum();
+                total += counts[i];
+            }
+            long rank = (long) Math.ceil(total * pPercentile);
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulative += counts[i];
+                if (cumulative >= rank) {
+                    return Math.min((1L << i) * 1000, maxNanos.get());
+                }
+            }
+            return maxNanos.get();
+        }
+    }
+
+    private static final class QueueMetrics {
+
+        final LongAdder samples = new LongAdder();
+        final LongAdder total = new LongAdder();
+        final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void sample(long pDepth) {
+            samples.increment();
+            total.add(pDepth);
+            max.accumulate(pDepth);
+        }
+    }
+}
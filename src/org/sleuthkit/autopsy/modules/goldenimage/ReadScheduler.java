@@ -0,0 +1,156 @@
+/*
+ * ReadScheduler
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Orders the reads of the read stage by their position in the image, so a
+ * spinning disk or a compressed E01 image is read in long sequential sweeps
+ * instead of seeking back and forth in the order of the case database.
+ *
+ * Every read is placed by the offset of the first data run of its file. The
+ * pending reads of each image form an elevator: The next read is the one with
+ * the lowest offset behind the last read of the image. Once the sweep reaches
+ * the end of an image, the scheduler switches to the next image with pending
+ * reads, so the golden and the dirty image aren't read alternately. The read
+ * threads take the next read when they become free; the bounded amount of
+ * pairs in flight limits how far ahead the scheduler can look.
+ *
+ * If the reads aren't ordered, they are passed to the read stage as they
+ * come, without looking up the data runs.
+ */
+final class ReadScheduler {
+
+    private final ExecutorService readStage;
+    private final boolean ordered;
+
+    // Pending reads by image, in the order the images were seen
+    private final Map<Long, Sweep> sweeps = new LinkedHashMap<>();
+    private Sweep currentSweep = null;
+    private long sequence = 0;
+
+    /**
+     * @param pReadStage Runs the reads
+     * @param pOrdered False if the reads are run in the order they are
+     * submitted
+     */
+    ReadScheduler(ExecutorService pReadStage, boolean pOrdered) {
+        readStage = pReadStage;
+        ordered = pOrdered;
+    }
+
+    /**
+     * Schedules the read of a file by its position in its image.
+     */
+    void execute(ImageFile pFile, Runnable pRead) {
+        execute(pFile.getDataSourceObjectId(), getOffset(pFile), pRead);
+    }
+
+    /**
+     * Schedules a read by its position in an image.
+     *
+     * @param pImageId The object id of the image
+     * @param pOffset The byte offset of the read in the image
+     */
+    void execute(long pImageId, long pOffset, Runnable pRead) {
+        if (!ordered) {
+            readStage.execute(pRead);
+            return;
+        }
+        synchronized (this) {
+            Sweep sweep = sweeps.get(pImageId);
+            if (sweep == null) {
+                sweep = new Sweep();
+                sweeps.put(pImageId, sweep);
+            }
+            sweep.pending.add(new Read(pOffset, sequence++, pRead));
+        }
+        //Every submitted task runs the read which is next at that time, not necessarily this one
+        readStage.execute(() -> next().run());
+    }
+
+    /**
+     * @return The byte offset of the first data run of a file in its image,
+     * or 0 if it isn't known or the reads aren't ordered.
+     */
+    long getOffset(ImageFile pFile) {
+        return ordered ? pFile.getImageOffset() : 0;
+    }
+
+    private synchronized Runnable next() {
+        Read read = currentSweep != null ? currentSweep.pending.ceiling(new Read(currentSweep.position, 0, null)) : null;
+        if (read == null) {
+            //The sweep of the current image is finished, continue with the next image
+            currentSweep = nextSweep();
+            read = currentSweep.pending.ceiling(new Read(currentSweep.position, 0, null));
+            if (read == null) {
+                read = currentSweep.pending.first();
+            }
+        }
+        currentSweep.pending.remove(read);
+        currentSweep.position = read.offset;
+        return read.task;
+    }
+
+    /**
+     * @return The first image with pending reads after the current one.
+     */
+    private Sweep nextSweep() {
+        Sweep first = null;
+        boolean afterCurrent = currentSweep == null;
+        for (Iterator<Sweep> iterator = sweeps.values().iterator(); iterator.hasNext();) {
+            Sweep sweep = iterator.next();
+            if (sweep == currentSweep) {
+                afterCurrent = true;
+            } else if (!sweep.pending.isEmpty()) {
+                if (afterCurrent) {
+                    return sweep;
+                }
+                if (first == null) {
+                    first = sweep;
+                }
+            }
+        }
+        //There is only one image with pending reads, it starts over at its lowest offset
+        if (first == null) {
+            currentSweep.position = 0;
+            return currentSweep;
+        }
+        return first;
+    }
+
+    /**
+     * The pending reads of one image, ordered by offset.
+     */
+    private static final class Sweep {
+
+        final TreeSet<Read> pending = new TreeSet<>();
+        long position = 0;
+    }
+
+    private static final class Read implements Comparable<Read> {
+
+        final long offset;
+        final long sequence;
+        final Runnable task;
+
+        Read(long pOffset, long pSequence, Runnable pTask) {
+            offset = pOffset;
+            sequence = pSequence;
+            task = pTask;
+        }
+
+        @Override
+        public int compareTo(Read pOther) {
+            int order = Long.compare(offset, pOther.offset);
+            return order != 0 ? order : Long.compare(sequence, pOther.sequence);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * ResultSink
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.List;
+import org.sleuthkit.datamodel.ContentTag;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Receives the tags the ResultWriter writes. Implemented by the
+ * CaseResultSink over the tags manager of the case and by the stand-ins of
+ * the benchmarks. The tags are named by the display names of their tag
+ * names (e.g. GoldenImageIngestModuleFactory.giTagChangedName).
+ */
+interface ResultSink {
+
+    /**
+     * Adds a tag to a file.
+     *
+     * @throws TskCoreException If the tag couldn't be added.
+     */
+    void addTag(ImageFile pFile, String pTagName, String pComment) throws TskCoreException;
+
+    /**
+     * @return The tags of a file.
+     *
+     * @throws TskCoreException If the tags couldn't be loaded.
+     */
+    List<ContentTag> getTags(ImageFile pFile) throws TskCoreException;
+
+    /**
+     * Removes a tag of a file.
+     *
+     * @throws TskCoreException If the tag couldn't be removed.
+     */
+    void deleteTag(ContentTag pTag) throws TskCoreException;
+}
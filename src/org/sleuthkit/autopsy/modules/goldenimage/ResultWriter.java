@@ -0,0 +1,228 @@
+/*
+ * ResultWriter
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.sleuthkit.datamodel.ContentTag;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Result write stage of the ComparisonPipeline. The other stages put their
+ * results into a bounded buffer, which is flushed in batches by a single
+ * thread: as soon as a batch is full or the flush interval elapsed. So the
+ * case database sees one writer at a time instead of one per worker thread.
+ * The tags are written to a ResultSink, in an ingest job the tags manager of
+ * the case.
+ * The files of every written batch are recorded in the ComparisonJournal and
+ * the ComparisonState. If the dirty image was compared before, the tags of
+ * the earlier comparison are replaced instead of tagging the files twice.
+ * Only the tags of this comparison are replaced: the tags of dirty image
+ * files and the deleted tag of this dirty image, not the deleted tags other
+ * dirty images left on the same golden image files.
+ * The hashes computed by the job are written by the same thread after every
+ * batch.
+ */
+final class ResultWriter {
+
+    private final ResultSink resultSink;
+    private final ComparisonJournal journal;
+    private final ComparisonState state;
+    private final DigestResolver digestResolver;
+    private final PipelineMetrics metrics;
+    private final String deletedTag;
+    private final boolean replaceTags;
+    private final BlockingQueue<ComparisonResult> buffer;
+    private final int batchSize;
+    private final long flushInterval;
+    private final Thread flusher;
+    private final AtomicLong failedWrites = new AtomicLong();
+    private final AtomicLong writtenResults = new AtomicLong();
+    private volatile boolean finishing = false;
+
+    /**
+     * @param pResultSink Receives the tags
+     * @param pBatchSize The amount of results which are written at once
+     * @param pFlushInterval The maximum time in milliseconds a result waits
+     * in the buffer
+     * @param pCapacity The maximum amount of buffered results
+     * @param pJournal The journal of the job or null
+     * @param pState The results of the job for the next run or null
+     * @param pDigestResolver The computed hashes to write or null
+     * @param pMetrics Receives the latencies and errors of the writes
+     * @param pDeletedTag The name of the tag of golden image files which don't exist on
+     * this dirty image
+     */
+    ResultWriter(ResultSink pResultSink, int pBatchSize, long pFlushInterval, int pCapacity, ComparisonJournal pJournal, ComparisonState pState,
+            DigestResolver pDigestResolver, PipelineMetrics pMetrics, String pDeletedTag) {
+        resultSink = pResultSink;
+        journal = pJournal;
+        state = pState;
+        digestResolver = pDigestResolver;
+        metrics = pMetrics;
+        deletedTag = pDeletedTag;
+        //Only files which were compared before can have tags of this module
+        replaceTags = (pState != null && pState.hasPreviousRun()) || (pJournal != null && pJournal.isResumed());
+        batchSize = Math.max(1, pBatchSize);
+        flushInterval = Math.max(1, pFlushInterval);
+        buffer = new ArrayBlockingQueue<>(Math.max(batchSize, pCapacity));
+        flusher = ComparisonPipeline.threadFactory("GoldenImage-write").newThread(this::flushBatches);
+        flusher.start();
+    }
+
+    /**
+     * Buffers a result, waits while the buffer is full.
+     */
+    void write(ComparisonResult pResult) throws InterruptedException {
+        buffer.put(pResult);
+        if (buffer.size() >= batchSize) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Flushes the remaining results and stops the flush thread. Can be called
+     * again if the timeout elapsed.
+     *
+     * @return True if all results were written within the timeout.
+     */
+    boolean finish(long pTimeout, TimeUnit pUnit) throws InterruptedException {
+        requestFinish();
+        flusher.join(pUnit.toMillis(pTimeout));
+        return !flusher.isAlive();
+    }
+
+    /**
+     * Stops the flush thread after the results which are already buffered
+     * are flushed (the final flush on cancellation), without waiting for it.
+     * Results written afterwards are discarded.
+     */
+    void shutdownNow() {
+        requestFinish();
+    }
+
+    long getFailedWrites() {
+        return failedWrites.get();
+    }
+
+    long getWrittenResults() {
+        return writtenResults.get();
+    }
+
+    /**
+     * @return The amount of results waiting to be written.
+     */
+    int getBufferedResults() {
+        return buffer.size();
+    }
+
+    private synchronized void requestFinish() {
+        finishing = true;
+        notifyAll();
+    }
+
+    private void flushBatches() {
+        List<ComparisonResult> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                long deadline = System.currentTimeMillis() + flushInterval;
+                synchronized (this) {
+                    long remaining;
+                    while (!finishing && buffer.size() < batchSize && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                        wait(remaining);
+                    }
+                }
+
+                buffer.drainTo(batch, batchSize);
+                if (batch.isEmpty() && finishing) {
+                    if (digestResolver != null) {
+                        digestResolver.flush();
+                    }
+                    return;
+                }
+                writeBatch(batch);
+                batch.clear();
+                if (digestResolver != null && digestResolver.isFlushDue()) {
+                    digestResolver.flush();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeBatch(List<ComparisonResult> pBatch) {
+        for (ComparisonResult result : pBatch) {
+            long startTime = System.nanoTime();
+            try {
+                if (!replaceTags || removeEarlierTags(result)) {
+                    resultSink.addTag(result.getFile(), result.getTagName(), result.getComment());
+                }
+                writtenResults.incrementAndGet();
+                if (journal != null) {
+                    journal.recordCompleted(result.getFile().getId());
+                    if (result.getRelatedFileId() != BaselineEntry.NO_OBJECT_ID) {
+                        journal.recordCompleted(result.getRelatedFileId());
+                    }
+                }
+                if (state != null) {
+                    state.record(result);
+                }
+                metrics.record(PipelineMetrics.Stage.WRITE, startTime, 0);
+                metrics.result(result.getTagName());
+            } catch (TskCoreException ex) {
+                failedWrites.incrementAndGet();
+                metrics.error(PipelineMetrics.Stage.WRITE, ex);
+            }
+        }
+        if (journal != null) {
+            journal.flush();
+        }
+    }
+
+    /**
+     * @return True if the tag may have been added to the file of the result
+     * by an earlier comparison of this dirty image.
+     */
+    private boolean isComparisonTag(String pTagName, ComparisonResult pResult) {
+        if (isDeletedTag(pResult.getTagName())) {
+            //A golden image file, it only carries the deleted tag of this dirty image
+            return isDeletedTag(pTagName);
+        }
+        return GoldenImageIngestModuleFactory.isDirtyImageTag(pTagName);
+    }
+
+    private boolean isDeletedTag(String pTagName) {
+        return pTagName.equals(deletedTag);
+    }
+
+    /**
+     * Removes the tags an earlier comparison of this dirty image added to
+     * the file of a result. A tag which equals the result is kept.
+     *
+     * @return False if the file already has the tag of the result.
+     */
+    private boolean removeEarlierTags(ComparisonResult pResult) throws TskCoreException {
+        boolean tagged = false;
+        for (ContentTag tag : resultSink.getTags(pResult.getFile())) {
+            if (!isComparisonTag(tag.getName().getDisplayName(), pResult)) {
+                continue;
+            }
+            if (!tagged && tag.getName().getDisplayName().equals(pResult.getTagName()) && Objects.equals(tag.getComment(), pResult.getComment())) {
+                tagged = true;
+            } else {
+                resultSink.deleteTag(tag);
+            }
+        }
+        return !tagged;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * XxHash64Digester
+ *
+ */
+package org.sleuthkit.autopsy.modules.goldenimage;
+
+/**
+ * Streaming implementation of the 64-bit xxHash algorithm (seed 0). The
+ * digest is the canonical (big endian) representation of the hash value.
+ */
+final class XxHash64Digester implements Digester {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    private long totalLength;
+
+    // Input which doesn't fill a whole 32 byte stripe yet
+    private final byte[] pending = new byte[32];
+    private int pendingLength;
+
+    XxHash64Digester() {
+        reset();
+    }
+
+    @Override
+    public void update(byte[] pBuffer, int pOffset, int pLength) {
+        int offset = pOffset;
+        int end = pOffset + pLength;
+        totalLength += pLength;
+
+        if (pendingLength > 0) {
+            int fill = Math.min(32 - pendingLength, pLength);
+            System.arraycopy(pBuffer, offset, pending, pendingLength, fill);
+            pendingLength += fill;
+            offset += fill;
+            if (pendingLength < 32) {
+                return;
+            }
+            processStripe(pending, 0);
+            pendingLength = 0;
+        }
+
+        while (end - offset >= 32) {
+            processStripe(pBuffer, offset);
+            offset += 32;
+        }
+
+        if (offset < end) {
+            pendingLength = end - offset;
+            System.arraycopy(pBuffer, offset, pending, 0, pendingLength);
+        }
+    }
+
+    @Override
+    public int getLength() {
+        return 8;
+    }
+
+    @Override
+    public void digest(byte[] pTarget, int pOffset) {
+        long hash;
+        if (totalLength >= 32) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = PRIME5;
+        }
+        hash += totalLength;
+
+        int offset = 0;
+        while (pendingLength - offset >= 8) {
+            hash ^= round(0, readLong(pending, offset));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            offset += 8;
+        }
+        if (pendingLength - offset >= 4) {
+            hash ^= (readInt(pending, offset) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            offset += 4;
+        }
+        while (offset < pendingLength) {
+            hash ^= (pending[offset] & 0xFFL) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+            offset++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+
+        for (int i = 7; i >= 0; i--) {
+            pTarget[pOffset + i] = (byte) hash;
+            hash >>>= 8;
+        }
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        v1 = PRIME1 + PRIME2;
+        v2 = PRIME2;
+        v3 = 0;
+        v4 = -PRIME1;
+        totalLength = 0;
+        pendingLength = 0;
+    }
+
+    private void processStripe(byte[] pBuffer, int pOffset) {
+        v1 = round(v1, readLong(pBuffer, pOffset));
+        v2 = round(v2, readLong(pBuffer, pOffset + 8));
+        v3 = round(v3, readLong(pBuffer, pOffset + 16));
+        v4 = round(v4, readLong(pBuffer, pOffset + 24));
+    }
+
+    private static long round(long pAcc, long pInput) {
+        return Long.rotateLeft(pAcc + pInput * PRIME2, 31) * PRIME1;
+    }
+
+    private static long mergeRound(long pAcc, long pValue) {
+        return (pAcc ^ round(0, pValue)) * PRIME1 + PRIME4;
+    }
+
+    private static long readLong(byte[] pBuffer, int pOffset) {
+        return (pBuffer[pOffset] & 0xFFL)
+                | (pBuffer[pOffset + 1] & 0xFFL) << 8
+                | (pBuffer[pOffset + 2] & 0xFFL) << 16
+                | (pBuffer[pOffset + 3] & 0xFFL) << 24
+                | (pBuffer[pOffset + 4] & 0xFFL) << 32
+                | (pBuffer[pOffset + 5] & 0xFFL) << 40
+                | (pBuffer[pOffset + 6] & 0xFFL) << 48
+                | (pBuffer[pOffset + 7] & 0xFFL) << 56;
+    }
+
+    private static int readInt(byte[] pBuffer, int pOffset) {
+        return (pBuffer[pOffset] & 0xFF)
+                | (pBuffer[pOffset + 1] & 0xFF) << 8
+                | (pBuffer[pOffset + 2] & 0xFF) << 16
+                | (pBuffer[pOffset + 3] & 0xFF) << 24;
+    }
+}